@@ -1,14 +1,18 @@
 package TourCatGUI.Catalog;
 
 import TourCatGUI.HomePage;
-import TourCatSystem.DatabaseManager;
-// Assuming FileManager might still be used for *finding* the writable path, or replaced by a new manager
-import TourCatSystem.Filter;
+import TourCatSystem.BatchResult;
+import TourCatSystem.DatabaseWatcher;
+import TourCatSystem.Facets;
+import TourCatSystem.LandmarkCatalog;
+import TourCatSystem.LandmarkRepository;
 import TourCatSystem.LocationReader;
-import com.opencsv.exceptions.CsvException;
+import TourCatSystem.Query;
+import TourCatSystem.RowSet;
+import TourCatSystem.StorageConfig;
+import TourCatSystem.StringPool;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 import javax.swing.text.TableView;
 import java.io.*;
@@ -17,16 +21,20 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.*; // Import NIO for file operations
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List; // Use List interface
+import java.util.Set;
 
 public class CatalogLogic {
 
     private CatalogView gui; // Reference to the GUI
     private String username;
     private File writableDatabaseFile; // Path to the database file the user can modify
-    private DefaultTableModel tableModel;
+    private CatalogTableModel tableModel; // Shows row numbers of the repository's catalog, see RowSet
     private FuzzyFinder fuzzyFinder;
-    private Filter filter; // Reusable filter object
+    private LandmarkRepository repository; // Backend chosen by StorageConfig, opened once
+    private DatabaseWatcher databaseWatcher; // Pushes changes made by other windows/processes into the table
+    private final StringPool tableValues = new StringPool(); // Shares repeated City/Province/Category values across appended rows
 
     // Constants for resource paths inside the JAR
     private static final String INTERNAL_DB_PATH = "/database.csv";
@@ -35,9 +43,13 @@ public class CatalogLogic {
     // Name for the external database file
     private static final String WRITABLE_DB_FILENAME = "userdata_database.csv";
 
+    // Facets shown as multi-select lists, in display order
+    private static final int[] FACET_COLUMNS = {LandmarkCatalog.PROVINCE_COLUMN, LandmarkCatalog.CATEGORY_COLUMN, LandmarkCatalog.CITY_COLUMN};
+
     // Filter state
-    private String selectedProvince = null;
-    private String selectedType = null;
+    private Facets facets; // Selected facet values, over the rows matching the search text
+    private String searchText = null;
+    private Query shownQuery = Query.all(); // What the table currently shows
 
     public CatalogLogic(String username) {
         this.username = username;
@@ -46,15 +58,15 @@ public class CatalogLogic {
             // 1. Determine and prepare the writable database file location
             this.writableDatabaseFile = initializeWritableDatabase();
 
-            // 2. Initialize Filter and DatabaseManager (using the writable file)
-            // Assuming Filter is updated to work with the provided File path
-            this.filter = new Filter(writableDatabaseFile);
+            // 2. Open the configured storage backend (the CSV file itself by default)
+            this.repository = LandmarkRepository.open(writableDatabaseFile);
 
-            // 3. Load initial data from the *writable* database
-            loadInitialTableData(); // Uses writableDatabaseFile internally
+            // 3. Load initial data from the repository
+            loadInitialTableData();
 
             // 4. Create the GUI, passing the model and this logic instance
             this.gui = new CatalogView(username, this, tableModel);
+            refreshFacetCounts();
 
             // 5. Initialize components requiring GUI elements (like FuzzyFinder)
             this.fuzzyFinder = new FuzzyFinder(gui.getTable());
@@ -62,6 +74,9 @@ public class CatalogLogic {
             // 6. Make the GUI visible
             this.gui.setVisible(true);
 
+            // 7. Keep the table current when the file is changed elsewhere
+            startWatchingDatabase();
+
         } catch (IOException | URISyntaxException e) {
             // Handle critical initialization errors
             System.err.println("FATAL: Could not initialize database. " + e.getMessage());
@@ -150,93 +165,149 @@ public class CatalogLogic {
     // --- Data Loading and Management ---
 
     /**
-     * Loads data from the *writable* database file into the table model.
+     * Shows every record of the repository in the table model.
      */
     private void loadInitialTableData() throws IOException { // Propagate potential IO errors
-        // Assuming LocationReader is updated to read from a File path correctly
-        LocationReader reader = new LocationReader(writableDatabaseFile);
-        this.tableModel = reader.getTableModel();
+        this.tableModel = new CatalogTableModel(repository.getHeader());
+        RowSet all = repository.select(shownQuery);
+        this.facets = new Facets(all);
+        tableModel.show(all);
     }
 
-    // Called by GUI after JTable is created
-    public void hideIdColumn(TableColumnModel columnModel) {
-        // Assuming LocationReader provides a static method for this
-        LocationReader.hideColumns(columnModel, new int[]{0}); // Assuming column 0 is ID
+    /**
+     * Starts the file watcher. Appended rows are added to the table directly; anything else
+     * (a rewrite, a compaction, an edit) reloads the table with the current filters.
+     * Live updates are a convenience, so failing to start the watcher is only logged.
+     * Only the CSV backend keeps its records in the watched file.
+     */
+    private void startWatchingDatabase() {
+        if (StorageConfig.storageBackend() != LandmarkRepository.Backend.CSV) {
+            return;
+        }
+        try {
+            databaseWatcher = DatabaseWatcher.start(writableDatabaseFile, new DatabaseWatcher.Listener() {
+                @Override
+                public void rowsAppended(List<String[]> rows, Set<String> deletedIds) {
+                    SwingUtilities.invokeLater(() -> applyAppendedRows(rows, deletedIds));
+                }
+
+                @Override
+                public void fileReplaced() {
+                    SwingUtilities.invokeLater(() -> showRows());
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Warning: Live catalog updates unavailable: " + e.getMessage());
+        }
     }
 
     /**
-     * Updates the table model with the given list of CSV data lines.
-     * @param results List of strings, each representing a row from the CSV.
+     * Applies rows appended to the database by someone else (or by this window, in which case
+     * the deletes are already reflected and removing them again is a no-op). The rows are
+     * normalized like the catalog's, so a province shows and counts under one spelling.
      */
-    private void updateTableModel(List<String> results) { // Use List interface
-        // Clear existing data (important!)
-        tableModel.setRowCount(0);
-
-        if (results != null) {
-            for (String resultLine : results) {
-                if (resultLine != null && !resultLine.trim().isEmpty()) {
-                    // Use a more robust CSV parser if possible, but stick to split for now
-                    String[] rowData = resultLine.split(","); // Potential issue with commas in fields
-                    // Basic validation: Ensure enough columns exist
-                    if (rowData.length >= tableModel.getColumnCount()) {
-                        tableModel.addRow(rowData);
-                    } else {
-                        System.err.println("Skipping malformed row: " + resultLine);
-                        // Handle potentially malformed rows (e.g., pad, log, ignore)
-                    }
+    private void applyAppendedRows(List<String[]> rows, Set<String> deletedIds) {
+        tableModel.removeIds(deletedIds);
+        Query search = Query.search(searchText);
+        List<String[]> found = new ArrayList<>();
+        for (String[] appended : rows) {
+            String[] row = LandmarkCatalog.normalizeRow(appended);
+            if (row.length >= tableModel.getColumnCount() && search.matches(row)) {
+                String[] pooled = tableValues.internColumns(row);
+                found.add(pooled);
+                if (shownQuery.matches(pooled)) {
+                    tableModel.addRow(pooled);
                 }
             }
         }
-        // No need to call fireTableDataChanged if using addRow/setRowCount on DefaultTableModel
+        // The facet counts cover every row matching the search, shown or not
+        facets.applyChanges(found, deletedIds);
+        refreshFacetCounts();
+    }
+
+    private void stopWatchingDatabase() {
+        if (databaseWatcher != null) {
+            try {
+                databaseWatcher.close();
+            } catch (IOException e) {
+                System.err.println("Warning: Could not stop database watcher: " + e.getMessage());
+            }
+            databaseWatcher = null;
+        }
+    }
+
+    private void closeRepository() {
+        if (repository != null) {
+            try {
+                repository.close();
+            } catch (IOException e) {
+                System.err.println("Warning: Could not close database: " + e.getMessage());
+            }
+            repository = null;
+        }
+    }
+
+    // Called by GUI after JTable is created
+    public void hideIdColumn(TableColumnModel columnModel) {
+        // Assuming LocationReader provides a static method for this
+        LocationReader.hideColumns(columnModel, new int[]{0}); // Assuming column 0 is ID
     }
 
     /**
-     * Reads all data lines (excluding header) from the *writable* database file.
-     * @return A List of strings, each representing a data row.
+     * Reads the rows matching the search text from the repository and shows those the facets
+     * select. The repository answers with row numbers into its catalog, which the table model
+     * displays directly; no record is parsed or copied.
+     * @return The rows shown, or null if the repository could not be read (the table is left as it was).
      */
-    private List<String> readAllDataFromWritableFile() { // Renamed for clarity
-        ArrayList<String> allResults = new ArrayList<>();
-        // Use the writableDatabaseFile instance variable
-        try (BufferedReader br = new BufferedReader(new FileReader(writableDatabaseFile))) {
-            String line;
-            boolean isFirstLine = true; // Assuming header row
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false;
-                    continue; // Skip the header line
-                }
-                if (!line.trim().isEmpty()) { // Avoid adding blank lines
-                    allResults.add(line);
-                }
-            }
+    private RowSet showRows() {
+        try {
+            facets.setUniverse(repository.select(Query.search(searchText)));
+            return showFacetedRows();
         } catch (IOException ex) {
             // Show error to the user via the GUI if available
             if(gui != null) {
-                gui.showError("Error reading database file: " + ex.getMessage());
+                gui.showError("Error reading database: " + ex.getMessage());
             } else {
-                System.err.println("Error reading database file: " + ex.getMessage());
+                System.err.println("Error reading database: " + ex.getMessage());
             }
             ex.printStackTrace(); // Log for debugging
+            return null;
+        }
+    }
+
+    /**
+     * Shows the rows the facets select from the last rows read, and updates the facet counts.
+     * Only bitmap indexes are consulted, so this is cheap enough to run on every click.
+     */
+    private RowSet showFacetedRows() {
+        RowSet rows = facets.rows();
+        shownQuery = Query.and(Query.search(searchText), facets.query());
+        tableModel.show(rows);
+        refreshFacetCounts();
+        return rows;
+    }
+
+    private void refreshFacetCounts() {
+        if (gui != null) {
+            for (int column : FACET_COLUMNS) {
+                gui.showFacetCounts(column, facets.counts(column), facets.selected(column));
+            }
         }
-        return allResults;
     }
 
 
     // --- Action Handlers (Called by GUI listeners) ---
 
     public void handleSearch(String searchText) {
-        if (searchText != null && !searchText.isEmpty() && !searchText.equals("Search here:")) {
-            fuzzyFinder.performFuzzySearch(searchText);
-        } else {
-            // If search text is empty/placeholder, reset filtering/searching
-            handleFilterAction(); // Re-apply filters or show all if no filters active
-            // Optionally clear the sorter filter directly:
-            // fuzzyFinder.clearFilter();
-        }
+        // Search narrows the filtered rows; empty text/placeholder shows all of them again
+        this.searchText = searchText == null || searchText.equals("Search here:") ? null : searchText;
+        showRows();
     }
 
     public void handleReturnAction() {
         // Consider passing the username back correctly
+        stopWatchingDatabase();
+        closeRepository();
         new HomePage(username); // Assuming HomePage constructor handles username
         gui.dispose();
     }
@@ -304,33 +375,53 @@ public class CatalogLogic {
     }
 
     public void handleDeleteAction() {
-        int selectedRow = gui.getSelectedRow();
-        if (selectedRow != -1) {
+        int[] selectedRows = gui.getTable().getSelectedRows();
+        if (selectedRows.length > 0) {
+            String prompt = selectedRows.length == 1
+                    ? "Are you sure you want to delete this location?\n" + tableModel.getValueAt(gui.getTable().convertRowIndexToModel(selectedRows[0]), 1)
+                    : "Are you sure you want to delete these " + selectedRows.length + " locations?";
             int confirmation = JOptionPane.showConfirmDialog(
                     gui.frame,
-                    "Are you sure you want to delete this location?\n" + tableModel.getValueAt(gui.getTable().convertRowIndexToModel(selectedRow), 1),
+                    prompt,
                     "Confirm Deletion",
                     JOptionPane.YES_NO_OPTION,
                     JOptionPane.WARNING_MESSAGE
             );
 
             if (confirmation == JOptionPane.YES_OPTION) {
-                int modelRow = gui.getSelectedRow();
-                String selectedRowID = (String) tableModel.getValueAt(modelRow, 0);
+                // Convert to model indices (the table may be sorted/filtered) and collect the IDs
+                List<String> selectedIds = new ArrayList<>();
+                for (int selectedRow : selectedRows) {
+                    selectedIds.add((String) tableModel.getValueAt(gui.getTable().convertRowIndexToModel(selectedRow), 0));
+                }
 
                 try {
-                    // DatabaseManager needs to use the writable file
-                    // It should ideally be an instance variable or re-created safely
-                    DatabaseManager databaseManager = new DatabaseManager(writableDatabaseFile); // Pass the correct file
-                    databaseManager.deleteById(selectedRowID);
-
-                    // If deleteById throws no exception, assume success
-                    tableModel.removeRow(modelRow); // Update the view
-                    gui.showMessage("Location deleted successfully.");
-
-                } catch (DatabaseManager.RecordNotFoundException e) {
-                    gui.showError("Could not delete: Record not found (ID: " + selectedRowID + ")");
-                } catch (IOException | CsvException e) {
+                    // One pass over storage for the whole selection
+                    BatchResult result = repository.deleteByIds(selectedIds);
+
+                    // Remove deleted rows from the view in one pass
+                    tableModel.removeIds(new HashSet<>(result.idsWith(BatchResult.Outcome.DELETED)));
+
+                    int notFound = result.count(BatchResult.Outcome.NOT_FOUND);
+                    int invalid = result.count(BatchResult.Outcome.INVALID);
+                    if (notFound == 0 && invalid == 0) {
+                        gui.showMessage(result.count(BatchResult.Outcome.DELETED) == 1
+                                ? "Location deleted successfully."
+                                : result.count(BatchResult.Outcome.DELETED) + " locations deleted successfully.");
+                    } else {
+                        StringBuilder message = new StringBuilder("Deleted " + result.count(BatchResult.Outcome.DELETED) + " location(s)");
+                        if (notFound > 0) {
+                            message.append("; ").append(notFound).append(" could not be found: ")
+                                    .append(result.idsWith(BatchResult.Outcome.NOT_FOUND));
+                        }
+                        if (invalid > 0) {
+                            message.append("; ").append(invalid).append(" had an invalid ID: ")
+                                    .append(result.idsWith(BatchResult.Outcome.INVALID));
+                        }
+                        gui.showError(message.toString());
+                    }
+
+                } catch (IOException e) {
                     gui.showError("Error deleting location from database: " + e.getMessage());
                     e.printStackTrace(); // Log for debugging
                 } catch (RuntimeException e) { // Catch unexpected runtime errors
@@ -344,51 +435,32 @@ public class CatalogLogic {
     }
 
     public void handleFilterAction() {
-        // Assuming Filter class reads correctly from the file path provided in its constructor
-        filter.reset();
-
-        boolean provinceSelected = selectedProvince != null && !selectedProvince.isEmpty();
-        boolean typeSelected = selectedType != null && !selectedType.isEmpty();
-
-        // Determine which filter method to call based on selections
-        if (provinceSelected && typeSelected) {
-            filter.filterBoth(selectedProvince, selectedType);
-        } else if (provinceSelected) {
-            filter.filterProvince(selectedProvince);
-        } else if (typeSelected) {
-            filter.filterType(selectedType);
-        } else {
-            // No filters selected, show all data from the writable file
-            List<String> allData = readAllDataFromWritableFile();
-            updateTableModel(allData);
-            return; // Exit after showing all data
-        }
+        // Facets apply as they are clicked; this re-reads the repository with them
+        RowSet results = showRows();
 
-        // Get results from the filter object and update the table model
-        ArrayList<String> results = filter.getResults(); // Filter should hold results internally
-        updateTableModel(results);
-
-        if (results.isEmpty() && (provinceSelected || typeSelected)) { // Only show if filters were active
+        boolean facetSelected = false;
+        for (int column : FACET_COLUMNS) {
+            facetSelected |= !facets.selected(column).isEmpty();
+        }
+        if (results != null && results.isEmpty() && facetSelected) { // Only show if filters were active
             gui.showMessage("No locations match the selected filters.");
         }
     }
 
 
     public void handleResetAction() {
-        // 1. Clear filter state in logic
-        selectedProvince = null;
-        selectedType = null;
+        // 1. Clear filter and search state in logic
+        facets.clear();
+        searchText = null;
 
-        // 2. Tell GUI to reset combo boxes
+        // 2. Tell GUI to reset combo boxes and the search field
         gui.resetFilters();
+        gui.setSearchText("");
 
-        // 3. Reload all data from the *writable* file
-        List<String> allResults = readAllDataFromWritableFile();
+        // 3. Show every row of the repository's catalog
+        showRows();
 
-        // 4. Update the table model
-        updateTableModel(allResults);
-
-        // 5. Clear any active JTable sorting/filtering via FuzzyFinder
+        // 4. Clear any active JTable sorting/filtering via FuzzyFinder
         if (fuzzyFinder != null) {
             fuzzyFinder.clearFilter();
         } else {
@@ -404,11 +476,13 @@ public class CatalogLogic {
 
     // --- State Update Methods (Called by GUI listeners) ---
 
-    public void updateSelectedProvince(String province) {
-        this.selectedProvince = province;
-    }
-
-    public void updateSelectedType(String type) {
-        this.selectedType = type;
+    /**
+     * Selects values of a facet and shows the result at once, without reading the repository.
+     * @param column The facet's column, e.g. {@link LandmarkCatalog#PROVINCE_COLUMN}.
+     * @param values The selected values; empty for any value.
+     */
+    public void updateFacetSelection(int column, List<String> values) {
+        facets.select(column, values);
+        showFacetedRows();
     }
 }
\ No newline at end of file
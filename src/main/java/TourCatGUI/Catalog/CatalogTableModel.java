@@ -0,0 +1,116 @@
+package TourCatGUI.Catalog;
+
+import TourCatSystem.LandmarkCatalog;
+import TourCatSystem.RowSet;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Table model showing a {@link RowSet} straight from its catalog.
+ * <p>
+ * The model holds the selected row numbers (one int per row) and reads each cell from the
+ * catalog when the table asks for it, so showing a new filter result re-parses and copies no
+ * records. Rows appended after the set was taken (e.g. by another window, see
+ * {@link TourCatSystem.DatabaseWatcher}) are kept as records after the catalog rows until the
+ * next {@link #show(RowSet)}.
+ */
+public class CatalogTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String[] header;
+    private LandmarkCatalog catalog;
+    private int[] rows = new int[0];  // Catalog row numbers, in the order shown
+    private int rowCount = 0;         // Rows in use; removals compact the array
+    private final List<String[]> appended = new ArrayList<>();
+
+    public CatalogTableModel(String[] header) {
+        this.header = header.clone();
+    }
+
+    /**
+     * Replaces the table's contents with the given rows.
+     */
+    public void show(RowSet selection) {
+        catalog = selection.catalog();
+        rows = selection.toArray();
+        rowCount = rows.length;
+        appended.clear();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Adds a record that is not in the current catalog after the last row.
+     */
+    public void addRow(String[] row) {
+        appended.add(row);
+        int index = getRowCount() - 1;
+        fireTableRowsInserted(index, index);
+    }
+
+    /**
+     * Removes every row holding one of the IDs, compacting the row numbers in a single pass.
+     *
+     * @return true if any row was removed.
+     */
+    public boolean removeIds(Set<String> ids) {
+        if (ids.isEmpty()) {
+            return false;
+        }
+        int kept = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (!ids.contains(catalog.getId(rows[i]))) {
+                rows[kept++] = rows[i];
+            }
+        }
+        boolean removed = appended.removeIf(row -> ids.contains(row[LandmarkCatalog.ID_COLUMN])) || kept < rowCount;
+        rowCount = kept;
+        if (removed) {
+            fireTableDataChanged();
+        }
+        return removed;
+    }
+
+    /**
+     * @return The number of rows shown from the catalog plus those appended since.
+     */
+    @Override
+    public int getRowCount() {
+        return rowCount + appended.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return header.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return header[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return String.class;
+    }
+
+    @Override
+    public Object getValueAt(int index, int column) {
+        if (index >= rowCount) {
+            String[] row = appended.get(index - rowCount);
+            return column < row.length ? row[column] : null;
+        }
+        int row = rows[index];
+        return switch (column) {
+            case LandmarkCatalog.ID_COLUMN -> catalog.getId(row);
+            case LandmarkCatalog.NAME_COLUMN -> catalog.getName(row);
+            case LandmarkCatalog.CITY_COLUMN -> catalog.getCity(row);
+            case LandmarkCatalog.PROVINCE_COLUMN -> catalog.getProvince(row);
+            case LandmarkCatalog.CATEGORY_COLUMN -> catalog.getCategory(row);
+            default -> null;
+        };
+    }
+}
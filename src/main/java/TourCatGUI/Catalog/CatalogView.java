@@ -1,7 +1,8 @@
 package TourCatGUI.Catalog;
 
+import TourCatSystem.LandmarkCatalog;
+
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
@@ -9,6 +10,10 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 // Removed: import java.io.File; // No longer needed here
 import java.net.URL; // Import URL for image loading
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class CatalogView {
 
@@ -18,23 +23,43 @@ public class CatalogView {
     // --- GUI Components ---
     JFrame frame;
     JTable table;
-    DefaultTableModel tableModel; // Model managed by logic, but GUI needs reference
+    CatalogTableModel tableModel; // Model managed by logic, but GUI needs reference
     JTextField searchField;
     JButton viewButton;
     JButton returnButton;
     JButton deleteButton;
     JButton filterButton;
     JButton resetButton;
-    JComboBox<String> provinceComboBox;
-    JComboBox<String> typeComboBox;
+    JList<FacetEntry> provinceList; // Multi-select facets, filled with live counts by logic
+    JList<FacetEntry> typeList;
+    JList<FacetEntry> cityList;
     JScrollPane scrollPane;
     JPanel rightPanel;
     JPanel filterPanel;
     JPanel topPanel;
     JLabel filterBy;
+    private boolean updatingFacets = false; // Set while logic refills the facet lists, so no selection events reach it
+
+    /**
+     * One value of a facet list, shown with the number of locations it would match.
+     */
+    static class FacetEntry {
+        final String value;
+        final int count;
+
+        FacetEntry(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%,d)", value, count); // e.g. "Ontario (12,431)"
+        }
+    }
 
     // Constructor takes username, logic instance, and the table model
-    CatalogView(String username, CatalogLogic logic, DefaultTableModel tableModel) {
+    CatalogView(String username, CatalogLogic logic, CatalogTableModel tableModel) {
         this.username = username;
         this.logic = logic;
         this.tableModel = tableModel; // Use the model created by logic
@@ -64,29 +89,24 @@ public class CatalogView {
         topPanel = new JPanel(new BorderLayout());
         filterBy = new JLabel("Filter By:");
 
-        // Province ComboBox Setup
-        provinceComboBox = new JComboBox<>();
-        provinceComboBox.addItem("Select Province");
-        provinceComboBox.addItem("Ontario");
-        provinceComboBox.addItem("Quebec");
-        provinceComboBox.addItem("British Columbia");
-        provinceComboBox.addItem("Alberta");
-        provinceComboBox.addItem("Manitoba");
-        provinceComboBox.addItem("Saskatchewan");
-        provinceComboBox.addItem("Nova Scotia");
-        provinceComboBox.addItem("New Brunswick");
-        provinceComboBox.addItem("Prince Edward Island");
-        provinceComboBox.addItem("Newfoundland and Labrador");
-        // Add more provinces as needed
-
-        // Type ComboBox Setup
-        typeComboBox = new JComboBox<>();
-        typeComboBox.addItem("Select Type");
-        typeComboBox.addItem("Park");
-        typeComboBox.addItem("Waterfall");
-        typeComboBox.addItem("Historic Site");
-        typeComboBox.addItem("Landmark");
-        // Add more types as needed
+        // Facet lists; their values and counts come from the logic once the data is loaded
+        provinceList = newFacetList();
+        typeList = newFacetList();
+        cityList = newFacetList();
+    }
+
+    private static JList<FacetEntry> newFacetList() {
+        JList<FacetEntry> list = new JList<>(new DefaultListModel<>());
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        list.setVisibleRowCount(4);
+        return list;
+    }
+
+    private static JScrollPane facetPane(String title, JList<FacetEntry> list) {
+        JScrollPane pane = new JScrollPane(list);
+        pane.setBorder(BorderFactory.createTitledBorder(title));
+        pane.setPreferredSize(new Dimension(190, 100));
+        return pane;
     }
 
     // --- Layout Helper ---
@@ -105,8 +125,9 @@ public class CatalogView {
 
         // Filter Panel
         filterPanel.add(filterBy);
-        filterPanel.add(provinceComboBox);
-        filterPanel.add(typeComboBox);
+        filterPanel.add(facetPane("Province", provinceList));
+        filterPanel.add(facetPane("Type", typeList));
+        filterPanel.add(facetPane("City", cityList));
         filterPanel.add(filterButton);
         filterPanel.add(resetButton);
         filterPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5)); // Padding
@@ -172,19 +193,60 @@ public class CatalogView {
         filterButton.addActionListener(e -> logic.handleFilterAction());
         resetButton.addActionListener(e -> logic.handleResetAction());
 
-        // ComboBox listeners
-        provinceComboBox.addActionListener(e -> {
-            String selection = (String) provinceComboBox.getSelectedItem();
-            logic.updateSelectedProvince(selection.equals("Select Province") ? null : selection);
-        });
-        typeComboBox.addActionListener(e -> {
-            String selection = (String) typeComboBox.getSelectedItem();
-            logic.updateSelectedType(selection.equals("Select Type") ? null : selection);
+        // Facet listeners: every change is applied at once
+        addFacetListener(provinceList, LandmarkCatalog.PROVINCE_COLUMN);
+        addFacetListener(typeList, LandmarkCatalog.CATEGORY_COLUMN);
+        addFacetListener(cityList, LandmarkCatalog.CITY_COLUMN);
+    }
+
+    private void addFacetListener(JList<FacetEntry> list, int column) {
+        list.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && !updatingFacets) {
+                List<String> values = new ArrayList<>();
+                for (FacetEntry entry : list.getSelectedValuesList()) {
+                    values.add(entry.value);
+                }
+                logic.updateFacetSelection(column, values);
+            }
         });
     }
 
+    private JList<FacetEntry> facetList(int column) {
+        return switch (column) {
+            case LandmarkCatalog.PROVINCE_COLUMN -> provinceList;
+            case LandmarkCatalog.CATEGORY_COLUMN -> typeList;
+            case LandmarkCatalog.CITY_COLUMN -> cityList;
+            default -> throw new IllegalArgumentException("No facet list for column " + column);
+        };
+    }
+
     // --- Methods called by Logic to update GUI ---
 
+    /**
+     * Refills a facet list, keeping its selection.
+     * @param column   The facet's column.
+     * @param counts   Each value with its count, in display order.
+     * @param selected The values to show as selected.
+     */
+    public void showFacetCounts(int column, Map<String, Integer> counts, Set<String> selected) {
+        JList<FacetEntry> list = facetList(column);
+        DefaultListModel<FacetEntry> model = new DefaultListModel<>();
+        List<Integer> selectedIndices = new ArrayList<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (selected.contains(count.getKey())) {
+                selectedIndices.add(model.size());
+            }
+            model.addElement(new FacetEntry(count.getKey(), count.getValue()));
+        }
+        updatingFacets = true;
+        try {
+            list.setModel(model);
+            list.setSelectedIndices(selectedIndices.stream().mapToInt(Integer::intValue).toArray());
+        } finally {
+            updatingFacets = false;
+        }
+    }
+
     public void setVisible(boolean visible) {
         frame.setVisible(visible);
     }
@@ -229,8 +291,14 @@ public class CatalogView {
     }
 
     public void resetFilters() {
-        provinceComboBox.setSelectedIndex(0);
-        typeComboBox.setSelectedIndex(0);
+        updatingFacets = true;
+        try {
+            provinceList.clearSelection();
+            typeList.clearSelection();
+            cityList.clearSelection();
+        } finally {
+            updatingFacets = false;
+        }
     }
 
     public void showMessage(String message) {
@@ -1,7 +1,7 @@
 package TourCatGUI.Catalog;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
 import java.util.List;
@@ -10,7 +10,7 @@ import java.util.regex.PatternSyntaxException;
 public class FuzzyFinder { // Renaming might be good later if not using fuzzy logic
 
     private final JTable table;
-    private final TableRowSorter<DefaultTableModel> sorter;
+    private final TableRowSorter<TableModel> sorter;
     // Define which columns are searchable (using their MODEL indices)
     // Example: Assuming 0=ID, 1=Name, 2=City, 3=Province, 4=Category
     private final List<Integer> searchableColumns = List.of(1, 2, 3, 4); // Exclude ID column (index 0)
@@ -23,11 +23,7 @@ public class FuzzyFinder { // Renaming might be good later if not using fuzzy lo
      */
     public FuzzyFinder(JTable table) {
         this.table = table;
-        if (!(table.getModel() instanceof DefaultTableModel)) {
-            throw new IllegalArgumentException("FuzzyFinder requires a DefaultTableModel for the JTable.");
-        }
-        DefaultTableModel model = (DefaultTableModel) table.getModel();
-        this.sorter = new TableRowSorter<>(model);
+        this.sorter = new TableRowSorter<>(table.getModel());
         this.table.setRowSorter(sorter);
     }
 
@@ -47,9 +43,9 @@ public class FuzzyFinder { // Renaming might be good later if not using fuzzy lo
         } else {
             try {
                 // Create a RowFilter that checks designated columns for the query substring
-                RowFilter<DefaultTableModel, Integer> rowFilter = new RowFilter<>() {
+                RowFilter<TableModel, Integer> rowFilter = new RowFilter<>() {
                     @Override
-                    public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
+                    public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
                         // Iterate only through the searchable columns defined earlier
                         for (int colIndex : searchableColumns) {
                             // Ensure the column index is valid for the current row entry
@@ -95,9 +91,9 @@ public class FuzzyFinder { // Renaming might be good later if not using fuzzy lo
                 // We escape the query to treat it literally unless you intend regex features
                 Pattern pattern = Pattern.compile(Pattern.quote(preparedQuery), Pattern.CASE_INSENSITIVE);
 
-                RowFilter<DefaultTableModel, Integer> rowFilter = new RowFilter<>() {
+                RowFilter<TableModel, Integer> rowFilter = new RowFilter<>() {
                     @Override
-                    public boolean include(Entry<? extends DefaultTableModel, ? extends Integer> entry) {
+                    public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
                         for (int colIndex : searchableColumns) {
                             if (colIndex >= 0 && colIndex < entry.getValueCount()) {
                                 Object value = entry.getValue(colIndex);
@@ -149,7 +145,7 @@ public class FuzzyFinder { // Renaming might be good later if not using fuzzy lo
                 {"7", "Signal Hill", "St. John's", "Historic Site"}
         };
 
-        DefaultTableModel model = new DefaultTableModel(data, columnNames);
+        TableModel model = new javax.swing.table.DefaultTableModel(data, columnNames);
         JTable table = new JTable(model);
         JScrollPane scrollPane = new JScrollPane(table);
 
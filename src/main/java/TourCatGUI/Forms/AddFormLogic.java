@@ -2,6 +2,7 @@ package TourCatGUI.Forms;
 
 import TourCatGUI.HomePage;
 import TourCatSystem.DatabaseManager;
+import TourCatSystem.LandmarkRepository;
 // Assuming FileManager might be replaced or adapted for writable paths
 // import TourCatSystem.FileManager;
 import org.apache.commons.io.FilenameUtils; // Ensure this dependency is present
@@ -24,7 +25,7 @@ public class AddFormLogic {
     private final Path writableImageDirectory; // Path to the writable image folder
     private File selectedImage = null; // Holds the currently selected image file (from file chooser)
 
-    private final DatabaseManager databaseManager; // Instance initialized once
+    private final LandmarkRepository repository; // Backend chosen by StorageConfig, opened once
 
     // Constants (should match CatalogLogic if shared)
     private static final String INTERNAL_DB_PATH = "/database.csv";
@@ -45,8 +46,8 @@ public class AddFormLogic {
             Files.createDirectories(this.writableImageDirectory);
             System.out.println("Using writable image directory: " + this.writableImageDirectory);
 
-            // 3. Initialize DatabaseManager *once* with the writable file path
-            this.databaseManager = new DatabaseManager(writableDatabaseFile);
+            // 3. Open the configured storage backend *once* for the writable database
+            this.repository = LandmarkRepository.open(writableDatabaseFile);
 
             // 4. Create the GUI, passing this logic instance
             this.gui = new AddFormGUI(username, this);
@@ -194,7 +195,7 @@ public class AddFormLogic {
         String nextIdStr;
         try {
             nextIdStr = generateNextId(); // Use the correctly initialized dbManager
-        } catch (RuntimeException e) { // Catch potential errors from getMaxId/formatting
+        } catch (RuntimeException e) { // Catch potential errors from the ID generator
             gui.showError("Error generating next ID: " + e.getMessage());
             e.printStackTrace();
             return;
@@ -209,13 +210,16 @@ public class AddFormLogic {
 
         // 4. Attempt to add data to the CSV file (using the member dbManager)
         try {
-            this.databaseManager.addRecord(newLocationData);
+            this.repository.addRecord(newLocationData);
             // If addRecord succeeds, proceed to image saving
         } catch (IOException e) {
             gui.showError("Error saving location data: " + e.getMessage());
             e.printStackTrace();
             // Don't proceed to image saving if data saving failed
             return; // Stop the submission process
+        } catch (DatabaseManager.DuplicateIdException e) {
+            gui.showError("Could not save location: " + e.getMessage());
+            return;
         } catch (RuntimeException e) { // Catch other potential errors from addRecord
             gui.showError("An unexpected error occurred saving data: " + e.getMessage());
             e.printStackTrace();
@@ -246,6 +250,11 @@ public class AddFormLogic {
      * Handles the action when the 'Cancel' button is clicked.
      */
     public void handleCancelAction () {
+        try {
+            repository.close(); // Releases the embedded database, if that backend is in use
+        } catch (IOException e) {
+            System.err.println("Warning: Could not close database: " + e.getMessage());
+        }
         new HomePage(username); // Navigate back
         gui.dispose(); // Close the AddForm window
     }
@@ -254,14 +263,14 @@ public class AddFormLogic {
     // --- Helper Methods ---
 
     /**
-     * Generates the next sequential ID based on the current max ID in the database.
+     * Generates the ID for a new location (a time-ordered ID, see LandmarkId).
      *
-     * @return The formatted ID string (e.g., "00015").
-     * @throws RuntimeException if max ID cannot be determined.
+     * @return The formatted ID string (e.g., "0CQ6J0T2G000A").
+     * @throws RuntimeException if no ID can be generated.
      */
     private String generateNextId () {
-        // Use the instance variable databaseManager initialized with the correct path
-        return this.databaseManager.getNextID();
+        // Use the repository opened for the writable database
+        return this.repository.getNextID();
     }
 
     /**
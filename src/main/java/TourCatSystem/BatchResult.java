@@ -0,0 +1,77 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-record outcome of a batch operation such as {@link DatabaseManager#addRecords}
+ * or {@link DatabaseManager#deleteByIds}. Entries are kept in the order the records
+ * were passed in.
+ */
+public class BatchResult {
+
+    /**
+     * What happened to a single record of the batch.
+     */
+    public enum Outcome {
+        ADDED,
+        DELETED,
+        NOT_FOUND,
+        INVALID,
+        DUPLICATE
+    }
+
+    private final List<String> ids = new ArrayList<>();
+    private final List<Outcome> outcomes = new ArrayList<>();
+
+    void record (String id, Outcome outcome) {
+        ids.add(id);
+        outcomes.add(outcome);
+    }
+
+    /**
+     * @return Number of records in the batch.
+     */
+    public int size () {
+        return outcomes.size();
+    }
+
+    /**
+     * @param index Position of the record in the batch.
+     * @return The record's ID, or null if the record had none (e.g. it was invalid).
+     */
+    public String getId (int index) {
+        return ids.get(index);
+    }
+
+    /**
+     * @param index Position of the record in the batch.
+     * @return What happened to the record.
+     */
+    public Outcome getOutcome (int index) {
+        return outcomes.get(index);
+    }
+
+    /**
+     * @param outcome The outcome to count.
+     * @return How many records of the batch ended with that outcome.
+     */
+    public int count (Outcome outcome) {
+        return Collections.frequency(outcomes, outcome);
+    }
+
+    /**
+     * @param outcome The outcome to look for.
+     * @return The IDs of the records that ended with that outcome, in batch order.
+     */
+    public List<String> idsWith (Outcome outcome) {
+        List<String> matching = new ArrayList<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            if (outcomes.get(i) == outcome) {
+                matching.add(ids.get(i));
+            }
+        }
+        return matching;
+    }
+}
@@ -0,0 +1,162 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Value indexes over a {@link LandmarkCatalog}: for each of the City, Province and Category
+ * columns, the column's distinct values and one {@link RowBitmap} of row numbers per value.
+ * <p>
+ * Province and Category values are the catalog's dictionaries, so a value's position is its
+ * code. Equal cities already share one {@link StringArena} reference, which is how the
+ * distinct cities are found while indexing.
+ * <p>
+ * A comparison on an indexed column is answered by testing each distinct value once and
+ * ORing the bitmaps of those that match; the catalog's rows are only visited to materialize
+ * a result. Building the index is one pass over three int columns; an index belongs to one
+ * catalog and is never updated.
+ */
+final class BitmapIndex {
+
+    private final LandmarkCatalog catalog;
+    private final String[][] values;     // Per column: the distinct values, or null if the column is not indexed
+    private final RowBitmap[][] bitmaps; // Per column: the rows holding each value
+    private RowBitmap all;               // Every row, created on first use
+
+    private BitmapIndex (LandmarkCatalog catalog, String[][] values, RowBitmap[][] bitmaps) {
+        this.catalog = catalog;
+        this.values = values;
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * @param catalog The catalog to index.
+     * @return Its index.
+     */
+    static BitmapIndex build (LandmarkCatalog catalog) {
+        List<RowBitmap.Builder> provinces = builders(catalog.provinceDictionary().length);
+        List<RowBitmap.Builder> categories = builders(catalog.categoryDictionary().length);
+        List<RowBitmap.Builder> cities = new ArrayList<>();
+        List<String> cityValues = new ArrayList<>();
+        int[] cityOfRef = new int[catalog.arena().size()];
+        Arrays.fill(cityOfRef, -1);
+
+        for (int row = 0; row < catalog.getRowCount(); row++) {
+            provinces.get(catalog.provinceCode(row)).add(row);
+            categories.get(catalog.categoryCode(row)).add(row);
+            int ref = catalog.cityRef(row);
+            if (cityOfRef[ref] < 0) {
+                cityOfRef[ref] = cities.size();
+                cities.add(new RowBitmap.Builder());
+                cityValues.add(catalog.arena().get(ref));
+            }
+            cities.get(cityOfRef[ref]).add(row);
+        }
+
+        String[][] values = new String[LandmarkCatalog.COLUMN_COUNT][];
+        RowBitmap[][] bitmaps = new RowBitmap[LandmarkCatalog.COLUMN_COUNT][];
+        values[LandmarkCatalog.CITY_COLUMN] = cityValues.toArray(new String[0]);
+        values[LandmarkCatalog.PROVINCE_COLUMN] = catalog.provinceDictionary();
+        values[LandmarkCatalog.CATEGORY_COLUMN] = catalog.categoryDictionary();
+        bitmaps[LandmarkCatalog.CITY_COLUMN] = build(cities);
+        bitmaps[LandmarkCatalog.PROVINCE_COLUMN] = build(provinces);
+        bitmaps[LandmarkCatalog.CATEGORY_COLUMN] = build(categories);
+        return new BitmapIndex(catalog, values, bitmaps);
+    }
+
+    LandmarkCatalog catalog () {
+        return catalog;
+    }
+
+    /**
+     * @return Every row of the catalog.
+     */
+    RowBitmap all () {
+        if (all == null) {
+            all = RowBitmap.range(catalog.getRowCount());
+        }
+        return all;
+    }
+
+    boolean isIndexed (int column) {
+        return values[column] != null;
+    }
+
+    /**
+     * @param compare A comparison on an indexed column.
+     * @return Flags indexed by value number, true where the value satisfies the comparison.
+     */
+    boolean[] valuesMatching (Query.Compare compare) {
+        String[] distinct = values[compare.column];
+        boolean[] matches = new boolean[distinct.length];
+        for (int i = 0; i < distinct.length; i++) {
+            matches[i] = compare.testValue(distinct[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return Number of rows holding one of the flagged values; exact, and found without
+     * combining any bitmaps.
+     */
+    int count (int column, boolean[] matching) {
+        int count = 0;
+        for (int i = 0; i < matching.length; i++) {
+            if (matching[i]) {
+                count += bitmaps[column][i].cardinality();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The column's distinct values, numbered as in {@link #valuesMatching(Query.Compare)};
+     * not to be modified.
+     */
+    String[] values (int column) {
+        return values[column];
+    }
+
+    /**
+     * @param within The rows to count, or null for all of them.
+     * @return Per value number, how many of those rows hold the value; found by intersecting
+     * bitmaps, without visiting any row.
+     */
+    int[] counts (int column, RowBitmap within) {
+        int[] counts = new int[values[column].length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = within == null ? bitmaps[column][i].cardinality() : bitmaps[column][i].andCardinality(within);
+        }
+        return counts;
+    }
+
+    /**
+     * @return The rows holding one of the flagged values.
+     */
+    RowBitmap rows (int column, boolean[] matching) {
+        RowBitmap result = RowBitmap.empty();
+        for (int i = 0; i < matching.length; i++) {
+            if (matching[i]) {
+                result = result.or(bitmaps[column][i]);
+            }
+        }
+        return result;
+    }
+
+    private static List<RowBitmap.Builder> builders (int count) {
+        List<RowBitmap.Builder> builders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            builders.add(new RowBitmap.Builder());
+        }
+        return builders;
+    }
+
+    private static RowBitmap[] build (List<RowBitmap.Builder> builders) {
+        RowBitmap[] bitmaps = new RowBitmap[builders.size()];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = builders.get(i).build();
+        }
+        return bitmaps;
+    }
+}
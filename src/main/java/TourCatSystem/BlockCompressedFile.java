@@ -0,0 +1,274 @@
+package TourCatSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Read access to a file stored as independently compressed blocks, and the writer for that format.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int    magic, int version
+ * bytes  every block, zlib-compressed, back to back
+ * footer per block: long file offset, int compressed length, int uncompressed length
+ * int    block count, long footer offset, int magic
+ * </pre>
+ * Blocks are located through the footer, so reading one byte of the original file only
+ * decompresses the block it lies in. {@link DatabaseManager#pack()} cuts CSV blocks at line
+ * boundaries, which lets a row be read from a single block.
+ * <p>
+ * Like {@link MappedCsvReader}, an instance maps (or reads) the file once and keeps seeing
+ * that content even if the file is replaced afterwards. Not thread-safe: the most recently
+ * decompressed block is cached.
+ */
+final class BlockCompressedFile {
+
+    static final int MAGIC = 0x5443425A; // "TCBZ"
+
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int TRAILER_BYTES = 16;
+    private static final int FOOTER_ENTRY_BYTES = 16;
+
+    private final ByteBuffer data;
+    private final long[] blockStarts; // Uncompressed offset of each block, then the total length
+    private final long[] fileOffsets;
+    private final int[] compressedLengths;
+
+    private int cachedBlock = -1;
+    private byte[] cachedBytes;
+
+    private BlockCompressedFile (ByteBuffer data) throws IOException {
+        this.data = data;
+        int size = data.limit();
+        if (size < HEADER_BYTES + TRAILER_BYTES || data.getInt(0) != MAGIC || data.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not a block-compressed file");
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported block-compressed file version " + data.getInt(4));
+        }
+
+        int blockCount = data.getInt(size - TRAILER_BYTES);
+        long footerOffset = data.getLong(size - TRAILER_BYTES + 4);
+        if (blockCount < 0 || footerOffset < HEADER_BYTES || footerOffset + (long) blockCount * FOOTER_ENTRY_BYTES != size - TRAILER_BYTES) {
+            throw new IOException("Corrupt block index");
+        }
+
+        blockStarts = new long[blockCount + 1];
+        fileOffsets = new long[blockCount];
+        compressedLengths = new int[blockCount];
+        int entry = (int) footerOffset;
+        for (int i = 0; i < blockCount; i++, entry += FOOTER_ENTRY_BYTES) {
+            fileOffsets[i] = data.getLong(entry);
+            compressedLengths[i] = data.getInt(entry + 8);
+            blockStarts[i + 1] = blockStarts[i] + data.getInt(entry + 12);
+            if (fileOffsets[i] < HEADER_BYTES || fileOffsets[i] + compressedLengths[i] > footerOffset) {
+                throw new IOException("Corrupt block index");
+            }
+        }
+    }
+
+    /**
+     * @param file A file in any format.
+     * @return The block-compressed file, or null if the file is in another format.
+     * @throws IOException If the file cannot be read, or claims to be block-compressed but is corrupt.
+     */
+    static BlockCompressedFile openIfCompressed (File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return openIfCompressed(channel);
+        }
+    }
+
+    /**
+     * @param channel An open file in any format; it may be closed once this returns.
+     * @return The block-compressed file, or null if the file is in another format.
+     * @throws IOException If the file cannot be read, or claims to be block-compressed but is corrupt.
+     */
+    static BlockCompressedFile openIfCompressed (FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer magic = ByteBuffer.allocate(4);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // Keep reading until the magic is complete or the file ends
+        }
+        if (magic.hasRemaining() || magic.getInt(0) != MAGIC) {
+            return null;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Block-compressed file is too large to map");
+        }
+        // Packed databases are replaced by rename as well, so they are mapped under the same rule
+        return new BlockCompressedFile(MappedCsvReader.contents(channel, size));
+    }
+
+    /**
+     * @param contents The full contents of a file already in memory.
+     * @return The block-compressed file, or null if the contents are in another format.
+     * @throws IOException If the contents claim to be block-compressed but are corrupt.
+     */
+    static BlockCompressedFile wrapIfCompressed (ByteBuffer contents) throws IOException {
+        if (contents.limit() < 4 || contents.getInt(0) != MAGIC) {
+            return null;
+        }
+        return new BlockCompressedFile(contents);
+    }
+
+    /**
+     * @return The uncompressed length.
+     */
+    long length () {
+        return blockStarts[blockStarts.length - 1];
+    }
+
+    /**
+     * @param offset An uncompressed offset, {@code 0 <= offset < length()}.
+     * @return The index of the block holding that byte.
+     */
+    int blockContaining (long offset) {
+        if (offset < 0 || offset >= length()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " is outside the file");
+        }
+        int found = Arrays.binarySearch(blockStarts, offset);
+        if (found < 0) {
+            return -found - 2; // Insertion point minus one: the block that starts before offset
+        }
+        while (blockStarts[found + 1] == offset) {
+            found++; // Skip empty blocks
+        }
+        return found;
+    }
+
+    /**
+     * @return The uncompressed offset the given block starts at.
+     */
+    long blockStart (int block) {
+        return blockStarts[block];
+    }
+
+    /**
+     * Decompresses one block. The result is shared with the next call for the same block,
+     * so callers must not modify it.
+     *
+     * @throws IOException If the block is corrupt.
+     */
+    byte[] block (int block) throws IOException {
+        if (block != cachedBlock) {
+            byte[] bytes = new byte[(int) (blockStarts[block + 1] - blockStarts[block])];
+            inflate(block, bytes, 0);
+            cachedBytes = bytes;
+            cachedBlock = block;
+        }
+        return cachedBytes;
+    }
+
+    /**
+     * @return The whole uncompressed file.
+     * @throws IOException If a block is corrupt or the file is too large for one array.
+     */
+    byte[] readAll () throws IOException {
+        if (length() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Uncompressed file is too large to read into memory");
+        }
+        byte[] all = new byte[(int) length()];
+        for (int i = 0; i < compressedLengths.length; i++) {
+            inflate(i, all, (int) blockStarts[i]);
+        }
+        return all;
+    }
+
+    private void inflate (int block, byte[] target, int targetOffset) throws IOException {
+        int length = (int) (blockStarts[block + 1] - blockStarts[block]);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice((int) fileOffsets[block], compressedLengths[block]));
+            byte[] spare = new byte[1]; // Catches blocks that inflate to more than the footer says
+            int done = 0;
+            while (!inflater.finished()) {
+                int n = done < length ? inflater.inflate(target, targetOffset + done, length - done) : inflater.inflate(spare);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || done >= length)) {
+                    break;
+                }
+                done += n;
+            }
+            if (done != length || !inflater.finished()) {
+                throw new IOException("Corrupt compressed block " + block);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block " + block + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compresses {@code data} in blocks of about {@code blockSize} bytes, cut anywhere.
+     *
+     * @throws IOException If the target cannot be written.
+     */
+    static void write (ByteBuffer data, int blockSize, File target) throws IOException {
+        int size = data.limit();
+        int blocks = Math.max(1, (int) Math.ceil((double) size / blockSize));
+        int[] bounds = new int[blocks + 1];
+        for (int i = 0; i <= blocks; i++) {
+            bounds[i] = (int) Math.min(size, (long) i * blockSize);
+        }
+        write(data, bounds, target);
+    }
+
+    /**
+     * Compresses {@code data} into the given blocks.
+     *
+     * @param data   The bytes from 0 to the buffer's limit.
+     * @param bounds Ascending block start offsets, beginning with 0, followed by the limit.
+     * @param target The file to write; an existing file is overwritten.
+     * @throws IOException If the target cannot be written.
+     */
+    static void write (ByteBuffer data, int[] bounds, File target) throws IOException {
+        int blockCount = bounds.length - 1;
+        long[] fileOffsets = new long[blockCount];
+        int[] compressedLengths = new int[blockCount];
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] chunk = new byte[64 * 1024];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long position = HEADER_BYTES;
+
+            for (int i = 0; i < blockCount; i++) {
+                deflater.reset();
+                deflater.setInput(data.slice(bounds[i], bounds[i + 1] - bounds[i]));
+                deflater.finish();
+                int compressed = 0;
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(chunk);
+                    out.write(chunk, 0, n);
+                    compressed += n;
+                }
+                fileOffsets[i] = position;
+                compressedLengths[i] = compressed;
+                position += compressed;
+            }
+
+            for (int i = 0; i < blockCount; i++) {
+                out.writeLong(fileOffsets[i]);
+                out.writeInt(compressedLengths[i]);
+                out.writeInt(bounds[i + 1] - bounds[i]);
+            }
+            out.writeInt(blockCount);
+            out.writeLong(position);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+    }
+}
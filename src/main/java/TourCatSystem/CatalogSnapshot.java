@@ -0,0 +1,290 @@
+package TourCatSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary, columnar snapshot of a {@link LandmarkCatalog}, kept next to the CSV database
+ * (e.g. {@code userdata_database.csv.snap}) so catalog windows can open without parsing text.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int    magic, int version
+ * long   source CSV length, long source CSV last-modified time
+ * long   source version, long source layout version  (the {@link DatabaseLock} stamp)
+ * int    row count
+ * list   header, province dictionary, category dictionary  (int count, then int length + UTF-8 bytes each)
+ * pad    zero bytes up to a multiple of 4
+ * int    arena coder (1 Latin-1, 2 UTF-16), int string count, int character count
+ * column ID, Name, City arena references, Province, Category codes  (int[rowCount] each)
+ * int[string count + 1] arena string starts
+ * chars  the arena's characters, one byte (Latin-1) or two (UTF-16) each
+ * </pre>
+ * Every column has a fixed width and therefore a fixed offset, so the loaded catalog does not
+ * decode anything: its columns are views of the snapshot bytes, which sit in a heap array, a
+ * direct buffer or the mapped file depending on {@link StorageConfig#CATALOG_MEMORY}. The
+ * names and cities are the variable-length region at the end.
+ * <p>
+ * With {@link StorageConfig#SNAPSHOT_COMPRESSED} set the snapshot is written block-compressed
+ * ({@link BlockCompressedFile}); reading accepts either form (a compressed snapshot cannot be
+ * mapped and is decompressed into a direct buffer instead).
+ * A snapshot is only used while the recorded length, modification time and version stamp
+ * still match the CSV; otherwise the CSV is re-parsed and the snapshot rewritten. The stamp
+ * catches what the other two miss: an in-place update of the same length within the file
+ * system's timestamp resolution. It is read before the CSV, so a snapshot never claims a
+ * newer stamp than the rows it holds.
+ */
+public final class CatalogSnapshot {
+
+    public static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final int MAGIC = 0x54435350; // "TCSP"
+    private static final int VERSION = 5; // 2: province codes are Landmark.PROVINCE ordinals, 3: string arena, 4: fixed-width columns, 5: version stamp
+    private static final int LATIN1 = 1;
+    private static final int UTF16 = 2;
+
+    private CatalogSnapshot () {
+    }
+
+    /**
+     * Loads the catalog for a CSV database, preferring an up-to-date snapshot.
+     * If the snapshot is missing, stale or unreadable, the CSV is parsed and a new
+     * snapshot is written for next time.
+     *
+     * @param csvFile The CSV database file.
+     * @return The catalog.
+     * @throws IOException If the CSV itself cannot be read.
+     */
+    public static LandmarkCatalog load (File csvFile) throws IOException {
+        File snapshotFile = snapshotFileFor(csvFile);
+        long[] sourceStamp = DatabaseLock.stampOf(csvFile); // First, see the class comment
+        long sourceLength = csvFile.length();
+        long sourceLastModified = csvFile.lastModified();
+
+        if (snapshotFile.isFile()) {
+            LandmarkCatalog catalog = readIfValid(snapshotFile, sourceLength, sourceLastModified, sourceStamp);
+            if (catalog != null) {
+                return catalog;
+            }
+        }
+
+        LandmarkCatalog catalog = LandmarkCatalog.fromCsv(csvFile);
+        try {
+            write(catalog, snapshotFile, sourceLength, sourceLastModified, sourceStamp);
+        } catch (IOException e) {
+            // Not fatal: the catalog is still usable, it just has to be parsed again next time
+            System.err.println("Warning: Could not write catalog snapshot " + snapshotFile.getName() + ": " + e.getMessage());
+            return catalog;
+        }
+        if (StorageConfig.catalogMemory() != LandmarkCatalog.Memory.HEAP) {
+            // Serve the rows from the snapshot, so the parsed copy can leave the heap
+            LandmarkCatalog stored = readIfValid(snapshotFile, sourceLength, sourceLastModified, sourceStamp);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        return catalog;
+    }
+
+    private static LandmarkCatalog readIfValid (File snapshotFile, long sourceLength, long sourceLastModified, long[] sourceStamp) {
+        try {
+            return read(snapshotFile, sourceLength, sourceLastModified, sourceStamp);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println("Warning: Ignoring unreadable catalog snapshot " + snapshotFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param csvFile The CSV database file.
+     * @return The snapshot file that belongs next to it.
+     */
+    public static File snapshotFileFor (File csvFile) {
+        return new File(csvFile.getAbsolutePath() + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Reads a snapshot if it still matches the given source file state.
+     *
+     * @param sourceStamp The source's {@link DatabaseLock#stampOf(File) version stamp}.
+     * @return The catalog, or null if the snapshot is stale.
+     */
+    static LandmarkCatalog read (File snapshotFile, long sourceLength, long sourceLastModified, long[] sourceStamp) throws IOException {
+        ByteBuffer buffer = contents(snapshotFile, StorageConfig.catalogMemory());
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a catalog snapshot (or an older format)");
+        }
+        if (buffer.getLong() != sourceLength || buffer.getLong() != sourceLastModified
+                || buffer.getLong() != sourceStamp[0] || buffer.getLong() != sourceStamp[1]) {
+            return null; // CSV changed since the snapshot was taken
+        }
+
+        int rowCount = buffer.getInt();
+        String[] header = readStringList(buffer);
+        String[] provinces = readStringList(buffer);
+        String[] categories = readStringList(buffer);
+        buffer.position((buffer.position() + Integer.BYTES - 1) & -Integer.BYTES);
+
+        int coder = buffer.getInt();
+        int stringCount = buffer.getInt();
+        int charCount = buffer.getInt();
+        IntBuffer[] columns = new IntBuffer[LandmarkCatalog.COLUMN_COUNT];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = intRegion(buffer, rowCount);
+        }
+        IntBuffer starts = intRegion(buffer, stringCount + 1);
+        StringArena arena = switch (coder) {
+            case LATIN1 -> new StringArena(region(buffer, charCount), null, starts);
+            case UTF16 -> new StringArena(null, region(buffer, charCount * Character.BYTES).asCharBuffer(), starts);
+            default -> throw new IllegalArgumentException("Unknown string arena coder " + coder);
+        };
+
+        return new LandmarkCatalog(header, rowCount, arena, columns[0], columns[1], columns[2], columns[3], columns[4], provinces, categories);
+    }
+
+    /**
+     * @return The snapshot's bytes, in the kind of memory asked for.
+     */
+    private static ByteBuffer contents (File snapshotFile, LandmarkCatalog.Memory memory) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            BlockCompressedFile packed = BlockCompressedFile.openIfCompressed(channel);
+            if (packed != null) {
+                byte[] bytes = packed.readAll();
+                return memory == LandmarkCatalog.Memory.HEAP ? ByteBuffer.wrap(bytes) : ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            }
+
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Catalog snapshot is too large: " + snapshotFile.getName());
+            }
+            if (memory == LandmarkCatalog.Memory.MAPPED) {
+                // The mapping stays valid after the channel is closed, and after the file is replaced
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = memory == LandmarkCatalog.Memory.OFF_HEAP ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the buffer is full or EOF
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * @return The next {@code length} bytes as their own buffer; the position moves past them.
+     */
+    private static ByteBuffer region (ByteBuffer buffer, int length) {
+        ByteBuffer region = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return region;
+    }
+
+    private static IntBuffer intRegion (ByteBuffer buffer, int count) {
+        return region(buffer, count * Integer.BYTES).asIntBuffer();
+    }
+
+    /**
+     * Writes a snapshot to a temporary file and moves it into place. Every reader that finds
+     * a stale snapshot rewrites it, without holding any lock, so each write gets a temporary
+     * file of its own; the last move wins, and every candidate is a complete snapshot.
+     */
+    static void write (LandmarkCatalog catalog, File snapshotFile, long sourceLength, long sourceLastModified, long[] sourceStamp) throws IOException {
+        Path directory = snapshotFile.getAbsoluteFile().getParentFile().toPath();
+        Path tempFile = Files.createTempFile(directory, snapshotFile.getName(), ".tmp");
+        Path packedFile = null;
+        try {
+            writeTo(tempFile, catalog, sourceLength, sourceLastModified, sourceStamp);
+            if (StorageConfig.snapshotCompressed()) {
+                packedFile = Files.createTempFile(directory, snapshotFile.getName(), ".ztmp");
+                BlockCompressedFile.write(ByteBuffer.wrap(Files.readAllBytes(tempFile)), StorageConfig.compressionBlockSize(), packedFile.toFile());
+                Files.move(packedFile, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.move(tempFile, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            // Nothing is left once moved; after a failure, do not leave a partial file behind
+            Files.deleteIfExists(tempFile);
+            if (packedFile != null) {
+                Files.deleteIfExists(packedFile);
+            }
+        }
+    }
+
+    private static void writeTo (Path file, LandmarkCatalog catalog, long sourceLength, long sourceLastModified, long[] sourceStamp) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceLastModified);
+            out.writeLong(sourceStamp[0]);
+            out.writeLong(sourceStamp[1]);
+            out.writeInt(catalog.getRowCount());
+            writeStringList(out, catalog.getHeader());
+            writeStringList(out, catalog.provinceDictionary());
+            writeStringList(out, catalog.categoryDictionary());
+            while (out.size() % Integer.BYTES != 0) {
+                out.writeByte(0);
+            }
+
+            StringArena arena = catalog.arena();
+            IntBuffer starts = arena.starts();
+            out.writeInt(arena.isLatin1() ? LATIN1 : UTF16);
+            out.writeInt(arena.size());
+            out.writeInt(starts.get(starts.limit() - 1));
+            for (IntBuffer column : catalog.columns()) {
+                writeInts(out, column);
+            }
+            writeInts(out, starts);
+            if (arena.isLatin1()) {
+                ByteBuffer chars = arena.latin1();
+                while (chars.hasRemaining()) {
+                    out.writeByte(chars.get());
+                }
+            } else {
+                CharBuffer chars = arena.utf16();
+                while (chars.hasRemaining()) {
+                    out.writeChar(chars.get());
+                }
+            }
+        }
+    }
+
+    // --- Encoding helpers ---
+
+    private static void writeStringList (DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String[] readStringList (ByteBuffer buffer) {
+        String[] values = new String[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            values[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    private static void writeInts (DataOutputStream out, IntBuffer values) throws IOException {
+        while (values.hasRemaining()) {
+            out.writeInt(values.get());
+        }
+    }
+}
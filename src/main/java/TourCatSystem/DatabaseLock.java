@@ -0,0 +1,246 @@
+package TourCatSystem;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes writers to a CSV database across threads and processes, and carries the
+ * database's version stamp.
+ * <p>
+ * The lock lives in {@code <database>.lock}: writers hold an exclusive {@link FileLock} on
+ * it for the duration of one write, behind a {@link ReentrantLock} for the threads of this
+ * JVM (file locks are held per process, so they cannot tell two managers of the same
+ * process apart). Readers never wait for it (only a watcher does, see
+ * {@link #committedStampOf(File)}; a reader's {@link PrimaryKeyIndex} merely takes it when it
+ * is free, see {@link #tryAcquire()}); they rely on writers replacing the file by atomic
+ * rename and touching existing records only line by line.
+ * <p>
+ * The file also stores two counters that every writer bumps before unlocking:
+ * <ul>
+ *     <li>{@code version} counts committed writes of any kind.</li>
+ *     <li>{@code layoutVersion} counts writes that changed bytes already in the file
+ *     (rewrites, in-place updates). Appends leave it alone, so a reader that only sees
+ *     {@code version} move can catch up by reading the tail.</li>
+ * </ul>
+ * The stamp can be read lock-free at any time; a torn read only ever looks like a change.
+ * After it, a third counter hands out node numbers for {@link LandmarkId} generation.
+ * <p>
+ * One instance exists per database file and JVM, and its channel stays open: closing any
+ * channel on the lock file would drop every lock this process holds on it.
+ */
+final class DatabaseLock {
+
+    static final String LOCK_SUFFIX = ".lock";
+
+    private static final int STAMP_BYTES = 16;
+    private static final int NODE_COUNTER_OFFSET = STAMP_BYTES;
+    private static final Map<String, DatabaseLock> OPEN = new HashMap<>();
+
+    private final FileChannel channel;
+    private final ReentrantLock local = new ReentrantLock();
+    private FileLock fileLock; // Held while local's outermost hold is
+    private LandmarkId.Generator idGenerator; // Created on first use, see idGenerator()
+
+    private DatabaseLock (File lockFile) throws IOException {
+        this.channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * @param databaseFile The CSV database.
+     * @return The lock shared by every manager of that database in this JVM.
+     * @throws IOException If the lock file cannot be created or opened.
+     */
+    static DatabaseLock forDatabase (File databaseFile) throws IOException {
+        String key = databaseFile.getCanonicalPath();
+        synchronized (OPEN) {
+            DatabaseLock lock = OPEN.get(key);
+            if (lock == null) {
+                lock = new DatabaseLock(new File(key + LOCK_SUFFIX));
+                OPEN.put(key, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Reads a database's stamp without locking, for caches that have to notice writes which
+     * kept the file's length and modification time (an in-place update of the same length,
+     * within the file system's timestamp resolution). Read it before the file: a cache
+     * stamped that way can only look older than it is, never newer.
+     *
+     * @param databaseFile The CSV database.
+     * @return {version, layoutVersion}; {0, 0} if the lock file cannot be opened (e.g. a
+     * read-only directory), where only length and modification time tell versions apart.
+     */
+    static long[] stampOf (File databaseFile) {
+        try {
+            return forDatabase(databaseFile).readStamp();
+        } catch (IOException e) {
+            return new long[]{0, 0};
+        }
+    }
+
+    /**
+     * Like {@link #stampOf(File)}, but first waits for a write in progress to commit, so the
+     * stamp and the file agree unless another write starts right after. For a watcher, which
+     * would otherwise report a write once for the new bytes and again for the bumped stamp.
+     */
+    static long[] committedStampOf (File databaseFile) {
+        try (Hold hold = forDatabase(databaseFile).acquire()) {
+            return new long[]{hold.version(), hold.layoutVersion()};
+        } catch (IOException e) {
+            return new long[]{0, 0};
+        }
+    }
+
+    /**
+     * Reads the stamp without locking.
+     *
+     * @return {version, layoutVersion}; both 0 for a database nobody has written under lock yet.
+     * @throws IOException If the lock file cannot be read.
+     */
+    long[] readStamp () throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(STAMP_BYTES);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // Keep reading until the stamp is complete or the file ends
+        }
+        if (buffer.position() < STAMP_BYTES) {
+            return new long[]{0, 0};
+        }
+        buffer.flip();
+        return new long[]{buffer.getLong(), buffer.getLong()};
+    }
+
+    /**
+     * Returns the ID generator of this database for this JVM. Its node number is leased from a
+     * counter in the lock file the first time, so processes sharing the database generate
+     * from disjoint ranges (up to {@value LandmarkId#NODES} processes at a time).
+     *
+     * @return The generator.
+     * @throws IOException If the lock file cannot be locked, read or written.
+     */
+    synchronized LandmarkId.Generator idGenerator () throws IOException {
+        if (idGenerator == null) {
+            Hold hold = acquire();
+            try {
+                ByteBuffer counter = ByteBuffer.allocate(Long.BYTES);
+                while (counter.hasRemaining() && channel.read(counter, NODE_COUNTER_OFFSET + counter.position()) > 0) {
+                    // Keep reading until the counter is complete or the file ends
+                }
+                long leases = counter.hasRemaining() ? 0 : counter.getLong(0);
+                ByteBuffer next = ByteBuffer.allocate(Long.BYTES).putLong(0, leases + 1);
+                while (next.hasRemaining()) {
+                    channel.write(next, NODE_COUNTER_OFFSET + next.position());
+                }
+                idGenerator = new LandmarkId.Generator((int) (leases % LandmarkId.NODES));
+            } finally {
+                hold.close();
+            }
+        }
+        return idGenerator;
+    }
+
+    /**
+     * Blocks until this thread is the only writer, here and in other processes.
+     * A thread that already holds the lock may acquire it again.
+     *
+     * @return The hold; close it to release the lock.
+     * @throws IOException If the file lock cannot be obtained.
+     */
+    Hold acquire () throws IOException {
+        local.lock();
+        try {
+            if (local.getHoldCount() == 1) {
+                fileLock = channel.lock();
+            }
+            return new Hold(readStamp());
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #acquire()}, but gives up instead of waiting when another thread or process
+     * holds the lock.
+     *
+     * @return The hold, or null if the lock is busy.
+     * @throws IOException If the file lock cannot be attempted.
+     */
+    Hold tryAcquire () throws IOException {
+        if (!local.tryLock()) {
+            return null;
+        }
+        try {
+            if (local.getHoldCount() == 1) {
+                fileLock = channel.tryLock();
+                if (fileLock == null) {
+                    local.unlock();
+                    return null;
+                }
+            }
+            return new Hold(readStamp());
+        } catch (IOException | RuntimeException e) {
+            local.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * One acquisition of the lock, with the stamp as it was when the lock was taken.
+     */
+    final class Hold implements Closeable {
+        private long version;
+        private long layoutVersion;
+
+        private Hold (long[] stamp) {
+            this.version = stamp[0];
+            this.layoutVersion = stamp[1];
+        }
+
+        long version () {
+            return version;
+        }
+
+        long layoutVersion () {
+            return layoutVersion;
+        }
+
+        /**
+         * Records a committed write in the stamp; afterwards {@link #version()} and
+         * {@link #layoutVersion()} return the new stamp.
+         *
+         * @param layoutChanged true if the write changed bytes other writers may have indexed.
+         * @throws IOException If the stamp cannot be written.
+         */
+        void bump (boolean layoutChanged) throws IOException {
+            long[] current = readStamp(); // A nested hold of this thread may have bumped already
+            version = current[0] + 1;
+            layoutVersion = layoutChanged ? current[1] + 1 : current[1];
+            ByteBuffer buffer = ByteBuffer.allocate(STAMP_BYTES).putLong(version).putLong(layoutVersion).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+        }
+
+        @Override
+        public void close () throws IOException {
+            try {
+                if (local.getHoldCount() == 1 && fileLock != null) {
+                    fileLock.release();
+                    fileLock = null;
+                }
+            } finally {
+                local.unlock();
+            }
+        }
+    }
+}
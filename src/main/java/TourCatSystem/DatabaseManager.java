@@ -1,17 +1,66 @@
 package TourCatSystem;
 
 import com.opencsv.*;
-import com.opencsv.exceptions.CsvException; // Use CsvException for broader CSV errors
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
 
 /**
  * Manages interaction with a location database stored in a CSV file.
  * Provides methods to read, add, delete, and query location records.
- * Each instance operates on a specific database file.
+ * Each instance operates on a specific database file. This is the CSV backend of
+ * {@link LandmarkRepository}.
+ * <p>
+ * Records are located through a persistent {@link PrimaryKeyIndex} ({@code <database>.idx})
+ * mapping each ID to its line in the file, so {@link #getById}, {@link #containsId} and
+ * duplicate checks on insert never scan. The index is brought up to date incrementally after
+ * every add and delete. The full set of rows is only parsed into a resident
+ * {@link LandmarkStore} when something needs all of them (e.g. {@link #readAllRecords()} or a
+ * rewrite). If another manager (or process) modifies the file, the index catches up and the
+ * store is dropped on the next call.
+ * <p>
+ * Edits made with {@link #updateRecord} are written in place: each record's line is a slot
+ * that a shorter or equally long row simply overwrites (see {@link SlotAllocator}), so an
+ * edit touches the page holding the record rather than the whole file.
+ * <p>
+ * Deletes are persisted according to the {@link StorageMode}: either by rewriting the file
+ * or by appending a tombstone (see {@link Tombstones}) that a background compaction later
+ * folds away once enough dead lines have built up.
+ * <p>
+ * Several managers, in this process or others, may share a file. Every write runs under the
+ * file's {@link DatabaseLock} ({@code <database>.lock}), which serializes writers and carries a
+ * version stamp they check and bump: a writer that finds the stamp moved re-reads what changed
+ * before applying its own write, so a rewrite never drops a record appended by someone else.
+ * Reads take no lock and see the last committed state.
+ * <p>
+ * Results of {@link #find(Query)} are kept in a {@link QueryCache} of
+ * {@link StorageConfig#QUERY_CACHE_SIZE} entries. A write through this manager drops only the
+ * entries its rows could change; a write by anyone else empties the cache.
+ * <p>
+ * When {@link StorageConfig#WAL_ENABLED} is set, adds go through a {@link WriteAheadLog}
+ * ({@code <database>.wal}) that group-commits concurrent adds with one sync per batch.
+ * The log is replayed when a manager is created and truncated at each checkpoint.
  * <p>
  * CSV Structure Expected:
  * - Column 0: ID (String, unique, typically numeric format like "00001")
@@ -22,13 +71,13 @@ import java.util.UUID;
  * <p>
  * Dependencies: OpenCSV library.
  * <p>
- * Error Handling: Methods throw IOExceptions or CsvExceptions on failure.
+ * Error Handling: Methods throw IOExceptions on failure.
  * <p>
  * Author: Garrett (Refactored by AI Assistant)
  * Version: 2.0
  * Date
  */
-public class DatabaseManager {
+public class DatabaseManager implements LandmarkRepository {
 
     // --- Constants for CSV Column Indices ---
     private static final int ID_COLUMN = 0;
@@ -38,20 +87,78 @@ public class DatabaseManager {
     private static final int CATEGORY_COLUMN = 4;
     // Add more if needed, ensure this matches your actual file structure
 
+    static final String[] DEFAULT_HEADER = {"ID", "Name", "City", "Province", "Category"};
+
+    // Single background thread shared by all managers; daemon so it never keeps the app alive
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TourCat-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * How deletes are written to the database file.
+     */
+    public enum StorageMode {
+        /** Each delete rewrites the whole file without the deleted row. */
+        REWRITE,
+        /** Each delete appends a tombstone; the file is compacted in the background. */
+        APPEND_LOG
+    }
+
     private final File databaseFile;
-    private final CSVParser csvParser; // Reusable parser configuration
+    private final StorageMode storageMode;
+    private final PrimaryKeyIndex index;
+    private LandmarkStore store; // Every live row, parsed only once something needs them all
+    private MappedCsvReader rowReader; // Serves index lookups; dropped whenever the file changes. A heap copy where mapped files cannot be replaced
+    private BlockCompressedFile packedFile; // Serves them instead while the file is packed, see pack()
+    private final SlotAllocator slots;
+    private final DatabaseLock lock;
+    private long knownVersion; // Stamp of the last committed write this instance has caught up with
+    private long knownLayoutVersion;
+    private Filter filter; // Serves findRows from the catalog snapshot, created on first use
+    private final QueryCache queryCache = new QueryCache(StorageConfig.queryCacheSize());
+
+    private final WriteAheadLog writeAheadLog; // Null unless the WAL is enabled
+
+    // Once the log grows past this, the CSV is synced and the log emptied
+    private static final long WAL_CHECKPOINT_BYTES = 1 << 20;
+
+    private final Set<String> pendingIds = new HashSet<>(); // Submitted to the WAL, not yet applied
+    private boolean compactionPending = false;
+
+    private String[] header = DEFAULT_HEADER; // Header row as found in the file
 
     /**
-     * Creates a DatabaseManager instance for the specified CSV file.
+     * Creates a DatabaseManager instance for the specified CSV file,
+     * using the storage mode configured in {@link StorageConfig}.
      *
      * @param databaseFile The CSV file to manage. Must not be null.
      * @throws IllegalArgumentException if databaseFile is null or not a file.
      * @throws IOException              if the file cannot be created or accessed appropriately.
      */
     public DatabaseManager (File databaseFile) throws IOException {
+        this(databaseFile, StorageConfig.storageMode());
+    }
+
+    /**
+     * Creates a DatabaseManager instance for the specified CSV file.
+     *
+     * @param databaseFile The CSV file to manage. Must not be null.
+     * @param storageMode  How deletes are persisted. Must not be null.
+     * @throws IllegalArgumentException if databaseFile is null or not a file.
+     * @throws IOException              if the file cannot be created or accessed appropriately.
+     */
+    public DatabaseManager (File databaseFile, StorageMode storageMode) throws IOException {
         if (databaseFile == null) {
             throw new IllegalArgumentException("Database file cannot be null.");
         }
+        if (storageMode == null) {
+            throw new IllegalArgumentException("Storage mode cannot be null.");
+        }
+        this.databaseFile = databaseFile;
+        this.storageMode = storageMode;
+
         // Ensure the directory exists
         File parentDir = databaseFile.getParentFile();
         if (parentDir != null && !parentDir.exists()) {
@@ -77,13 +184,210 @@ public class DatabaseManager {
             throw new IllegalArgumentException("Database path does not point to a valid file: " + databaseFile.getAbsolutePath());
         }
 
-        this.databaseFile = databaseFile;
+        this.lock = DatabaseLock.forDatabase(databaseFile);
+        long[] stamp = lock.readStamp(); // Read before the index, so a write in between is caught up with later
+        this.knownVersion = stamp[0];
+        this.knownLayoutVersion = stamp[1];
+        this.index = PrimaryKeyIndex.open(databaseFile);
+        this.slots = new SlotAllocator(databaseFile);
+        readHeader();
 
-        // Configure the parser once - assuming standard CSV, no quotes needed based on original code
-        this.csvParser = new CSVParserBuilder()
-                .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
-                // .withQuoteChar(CSVWriter.NO_QUOTE_CHARACTER) // Let parser handle quotes if they exist
-                .build();
+        if (StorageConfig.walEnabled()) {
+            this.writeAheadLog = new WriteAheadLog(new File(databaseFile.getAbsolutePath() + ".wal"),
+                    StorageConfig.walBatchSize(), StorageConfig.walFlushIntervalMillis(), this::applyLogBatch);
+            recoverFromWriteAheadLog();
+        } else {
+            this.writeAheadLog = null;
+        }
+    }
+
+    /**
+     * Re-applies records that reached the write-ahead log but may not have reached the CSV
+     * before the application stopped. Records whose ID is already indexed are skipped, so
+     * replaying the same log twice is harmless.
+     *
+     * @throws IOException If the log or the database cannot be accessed.
+     */
+    private synchronized void recoverFromWriteAheadLog () throws IOException {
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            List<String[]> missing = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (String[] row : writeAheadLog.readCommitted()) {
+                if (row.length > ID_COLUMN && !index.contains(row[ID_COLUMN]) && seen.add(row[ID_COLUMN])) {
+                    missing.add(row);
+                }
+            }
+            if (!missing.isEmpty()) {
+                appendBatch(missing);
+                committed(hold, false, missing);
+                System.out.println("Recovered " + missing.size() + " record(s) from write-ahead log.");
+            }
+            checkpoint();
+        }
+    }
+
+    /**
+     * Applies a group commit of the write-ahead log to the CSV.
+     *
+     * @param rows The committed records.
+     * @throws IOException If writing to the file fails.
+     */
+    private synchronized void applyLogBatch (List<String[]> rows) throws IOException {
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            appendBatch(rows);
+            committed(hold, false, rows);
+        }
+    }
+
+    /**
+     * Makes the CSV durable and empties the write-ahead log. Must run before anything
+     * that removes records, otherwise a later replay could resurrect them.
+     *
+     * @throws IOException If the sync or truncation fails.
+     */
+    private void checkpoint () throws IOException {
+        if (writeAheadLog == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(databaseFile.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        writeAheadLog.truncate();
+    }
+
+    /**
+     * @return The resident store, parsing every live row of the file on first use.
+     * @throws IOException If the file cannot be read.
+     */
+    private LandmarkStore residentStore () throws IOException {
+        if (store == null) {
+            LandmarkStore loaded = new LandmarkStore(ID_COLUMN);
+            // Large files are parsed in parallel, see MappedCsvReader#readAllRows
+            for (String[] row : MappedCsvReader.open(databaseFile).readAllRows()) {
+                loaded.put(row); // A later duplicate replaces the earlier one, as in the index
+            }
+            store = loaded;
+        }
+        return store;
+    }
+
+    private void readHeader () throws IOException {
+        String[] fileHeader = databaseFile.length() == 0 ? new String[0] : MappedCsvReader.open(databaseFile).header();
+        header = fileHeader.length > 0 ? fileHeader : DEFAULT_HEADER;
+    }
+
+    /**
+     * Catches up with changes made to the file by someone other than this instance:
+     * the index scans what was appended (or rebuilds), and the resident store is dropped.
+     * Never waits for the write lock.
+     *
+     * @throws IOException If the file cannot be re-read.
+     */
+    private void ensureInSync () throws IOException {
+        long[] stamp = lock.readStamp();
+        syncWith(stamp[0], stamp[1]);
+    }
+
+    /**
+     * Catches up with the given version stamp. Changes that kept the file's length, such as an
+     * in-place update, are invisible to {@link PrimaryKeyIndex#sync()}, so when the stamp says
+     * existing bytes changed the index is rebuilt instead.
+     */
+    private void syncWith (long version, long layoutVersion) throws IOException {
+        boolean changed;
+        if (layoutVersion != knownLayoutVersion) {
+            index.rebuild();
+            changed = true;
+        } else {
+            changed = index.sync(); // Also covers files edited without the lock, e.g. by hand
+        }
+        if (changed) {
+            store = null;
+            dropRowReader();
+            slots.invalidate();
+            readHeader();
+            queryCache.clear(); // The file may have been edited without bumping the stamp
+        }
+        knownVersion = version;
+        knownLayoutVersion = layoutVersion;
+    }
+
+    /**
+     * Takes the write lock and catches up with whatever was committed before it was granted.
+     *
+     * @return The hold; close it once the write is committed.
+     * @throws IOException If the lock cannot be taken or the file cannot be re-read.
+     */
+    private DatabaseLock.Hold lockForWrite () throws IOException {
+        DatabaseLock.Hold hold = lock.acquire();
+        try {
+            syncWith(hold.version(), hold.layoutVersion());
+            unpackIfPacked(hold);
+            return hold;
+        } catch (IOException | RuntimeException e) {
+            hold.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes are made to plain CSV only, so a packed file is turned back into one first.
+     * The bytes are the same as before packing, so every indexed offset stays valid.
+     */
+    private void unpackIfPacked (DatabaseLock.Hold hold) throws IOException {
+        BlockCompressedFile packed = BlockCompressedFile.openIfCompressed(databaseFile);
+        if (packed == null) {
+            return;
+        }
+        File tempFile = new File(databaseFile.getAbsolutePath() + ".tmp");
+        Files.write(tempFile.toPath(), packed.readAll());
+        replaceWith(tempFile);
+        index.coverCurrentState();
+        dropRowReader();
+        slots.invalidate();
+        committed(hold, true, List.of()); // Same bytes, but other managers must not keep the packed layout
+    }
+
+    /**
+     * Publishes a write made under the hold by bumping the version stamp. The write may have
+     * changed any row, so every cached query result is dropped.
+     *
+     * @param layoutChanged true if bytes already in the file changed (rewrite, in-place update).
+     */
+    private void committed (DatabaseLock.Hold hold, boolean layoutChanged) throws IOException {
+        committed(hold, layoutChanged, null);
+    }
+
+    /**
+     * Publishes a write made under the hold by bumping the version stamp.
+     *
+     * @param layoutChanged true if bytes already in the file changed (rewrite, in-place update).
+     * @param changedRows   The rows the write added, removed or replaced (old and new form);
+     *                      cached query results that match none of them stay valid.
+     *                      Null if the write may have changed any row.
+     */
+    private void committed (DatabaseLock.Hold hold, boolean layoutChanged, Collection<String[]> changedRows) throws IOException {
+        long before = knownVersion;
+        hold.bump(layoutChanged);
+        knownVersion = hold.version();
+        knownLayoutVersion = hold.layoutVersion();
+        queryCache.committed(before, knownVersion, changedRows);
+    }
+
+    /**
+     * Brings the index up to date with a write this instance just made. The resident store,
+     * if loaded, has already been updated by the caller.
+     *
+     * @throws IOException If the appended lines cannot be read back.
+     */
+    private void afterWrite () throws IOException {
+        index.sync();
+        dropRowReader();
+    }
+
+    private void dropRowReader () {
+        rowReader = null;
+        packedFile = null;
     }
 
     /**
@@ -103,14 +407,18 @@ public class DatabaseManager {
     /**
      * Helper to create a configured CSVWriter.
      *
-     * @param append true to append to the file, false to overwrite.
+     * @param append true to append to the database file, false to overwrite.
      * @return An configured ICSVWriter instance.
      * @throws IOException If the writer cannot be created.
      */
     private ICSVWriter createCsvWriter (boolean append) throws IOException {
+        return createCsvWriter(databaseFile, append);
+    }
+
+    private ICSVWriter createCsvWriter (File targetFile, boolean append) throws IOException {
         // Based on original code, NO_QUOTE_CHARACTER was used. Be cautious if data might contain commas.
         // If data can contain commas or quotes, use DEFAULT_QUOTE_CHARACTER.
-        return new CSVWriterBuilder(new FileWriter(databaseFile, append))
+        return new CSVWriterBuilder(new FileWriter(targetFile, append))
                 .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
                 .withQuoteChar(CSVWriter.NO_QUOTE_CHARACTER) // Adjust if needed
                 .withEscapeChar(CSVWriter.NO_ESCAPE_CHARACTER) // Adjust if needed
@@ -121,106 +429,694 @@ public class DatabaseManager {
     /**
      * Deletes a record from the CSV file based on its unique ID.
      * This is generally safer and more reliable than deleting by name if IDs are unique.
+     * The record is located through the ID index, so no parsing is needed.
+     * In {@link StorageMode#APPEND_LOG} mode only a tombstone is appended to the file.
      *
      * @param locationIdToDelete The ID of the location record to delete.
      * @throws IOException             If file reading/writing fails.
-     * @throws CsvException            If there's an error processing the CSV data.
      * @throws RecordNotFoundException If no record with the specified ID is found.
      */
-    public void deleteById (String locationIdToDelete) throws IOException, CsvException, RecordNotFoundException {
+    @Override
+    public synchronized void deleteById (String locationIdToDelete) throws IOException, RecordNotFoundException {
         if (locationIdToDelete == null || locationIdToDelete.trim().isEmpty()) {
             throw new IllegalArgumentException("Location ID to delete cannot be null or empty.");
         }
 
-        List<String[]> allRows;
-        try (CSVReader reader = new CSVReaderBuilder(new FileReader(databaseFile)).withCSVParser(csvParser).build()) {
-            allRows = reader.readAll();
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            checkpoint();
+
+            if (!index.contains(locationIdToDelete)) {
+                throw new RecordNotFoundException("Location with ID '" + locationIdToDelete + "' not found for deletion.");
+            }
+            List<String[]> removed = persistDeletes(Collections.singletonList(locationIdToDelete));
+            committed(hold, storageMode == StorageMode.REWRITE, removed);
         }
+    }
 
-        List<String[]> rowsToWrite = new ArrayList<>();
-        boolean found = false;
-        int expectedColumnCount = -1; // Track expected columns from header or first row
+    /**
+     * Deletes many records with a single pass over storage: one rewrite of the file,
+     * or one append of all tombstones in {@link StorageMode#APPEND_LOG} mode.
+     *
+     * @param locationIds The IDs of the records to delete.
+     * @return The outcome for each ID, in the order given (DELETED or NOT_FOUND,
+     * INVALID for null or blank IDs).
+     * @throws IOException If file reading/writing fails.
+     */
+    @Override
+    public synchronized BatchResult deleteByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs to delete cannot be null.");
+        }
 
-        for (String[] row : allRows) {
-            if (row == null || row.length == 0) continue; // Skip empty lines
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            checkpoint();
 
-            if (expectedColumnCount == -1) {
-                expectedColumnCount = row.length; // Set based on first valid row (usually header)
+            BatchResult result = new BatchResult();
+            Set<String> deleted = new LinkedHashSet<>();
+            for (String id : locationIds) {
+                if (id == null || id.trim().isEmpty()) {
+                    result.record(id, BatchResult.Outcome.INVALID);
+                } else if (index.contains(id) && !deleted.contains(id)) {
+                    result.record(id, BatchResult.Outcome.DELETED);
+                    deleted.add(id);
+                } else {
+                    result.record(id, BatchResult.Outcome.NOT_FOUND);
+                }
             }
 
-            // Basic validation - Check against ID column
-            if (row.length > ID_COLUMN && locationIdToDelete.equals(row[ID_COLUMN])) {
-                found = true; // Found the record, don't add it to rowsToWrite
-            } else {
-                // Check for consistent column count if desired, otherwise just write valid rows
-                if (row.length != expectedColumnCount) {
-                    System.err.println("Warning: Row with inconsistent column count encountered: " + String.join(",", row));
-                    // Decide whether to skip or write these malformed rows
+            if (!deleted.isEmpty()) {
+                List<String[]> removed = persistDeletes(new ArrayList<>(deleted));
+                committed(hold, storageMode == StorageMode.REWRITE, removed);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Removes records from the file (and from the resident store, if loaded).
+     *
+     * @param deletedIds IDs of existing records.
+     * @return The removed rows; null if the file was rewritten, which may reorder any row.
+     * @throws IOException If writing fails.
+     */
+    private List<String[]> persistDeletes (List<String> deletedIds) throws IOException {
+        if (storageMode == StorageMode.APPEND_LOG) {
+            List<String[]> removed = new ArrayList<>(deletedIds.size());
+            for (String id : deletedIds) {
+                removed.add(store != null ? store.get(id) : readRowAt(index.offsetOf(id)));
+            }
+            // Constant-cost append; the dead rows stay in the file until compaction
+            try (ICSVWriter writer = createCsvWriter(true)) { // true = append
+                for (String id : deletedIds) {
+                    writer.writeNext(Tombstones.rowFor(id, header.length));
                 }
-                rowsToWrite.add(row);
             }
+            if (store != null) {
+                deletedIds.forEach(store::remove);
+            }
+            afterWrite(); // The index reads the tombstones back and counts the dead lines
+            scheduleCompactionIfNeeded();
+            return removed;
         }
+        // Persist the remaining records
+        LandmarkStore rows = residentStore();
+        deletedIds.forEach(rows::remove);
+        rewriteFromStore();
+        return null;
+    }
 
-        if (!found) {
-            throw new RecordNotFoundException("Location with ID '" + locationIdToDelete + "' not found for deletion.");
+    /**
+     * Rewrites the database file from the resident store, dropping every dead line.
+     * Runs automatically in the background in {@link StorageMode#APPEND_LOG} mode,
+     * but may also be called directly (e.g. before shipping the file elsewhere).
+     *
+     * @throws IOException If the file cannot be rewritten.
+     */
+    public synchronized void compact () throws IOException {
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            if (index.deadRecords() > 0) {
+                residentStore();
+                rewriteFromStore();
+                committed(hold, true);
+            }
         }
+    }
+
+    /**
+     * Compacts the database and stores it block-compressed (see {@link BlockCompressedFile}),
+     * in blocks of {@link StorageConfig#COMPRESSION_BLOCK_SIZE} bytes cut at line boundaries.
+     * Every read keeps working unchanged; a lookup by ID decompresses only the block holding
+     * the row. The first write afterwards unpacks the file again, so this suits databases that
+     * are mostly read, such as the one shipped with the application.
+     *
+     * @throws IOException If the file cannot be rewritten.
+     */
+    public synchronized void pack () throws IOException {
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            checkpoint();
+            if (index.deadRecords() > 0) {
+                residentStore();
+                rewriteFromStore();
+            }
+            MappedCsvReader reader = MappedCsvReader.open(databaseFile);
+            File tempFile = new File(databaseFile.getAbsolutePath() + ".tmp");
+            BlockCompressedFile.write(reader.bytes(), reader.lineAlignedBlocks(StorageConfig.compressionBlockSize()), tempFile);
+            replaceWith(tempFile);
+            index.coverCurrentState(); // Offsets refer to the uncompressed bytes, which did not change
+            dropRowReader();
+            slots.invalidate();
+            committed(hold, true);
+        }
+    }
+
+    /**
+     * @return true if the file is currently stored block-compressed, see {@link #pack()}.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized boolean isPacked () throws IOException {
+        return databaseFile.isFile() && BlockCompressedFile.openIfCompressed(databaseFile) != null;
+    }
+
+    /**
+     * @return The number of lines in the file that no longer hold a live record.
+     */
+    public synchronized int getDeadRecordCount () {
+        return index.deadRecords();
+    }
 
-        // Overwrite the original file with the filtered rows
-        try (ICSVWriter writer = createCsvWriter(false)) { // false = overwrite
-            writer.writeAll(rowsToWrite);
+    /**
+     * Writes header plus all stored records to a temporary file and swaps it in,
+     * so a crash mid-write never leaves a truncated database behind.
+     */
+    private void rewriteFromStore () throws IOException {
+        File tempFile = new File(databaseFile.getAbsolutePath() + ".tmp");
+        try (ICSVWriter writer = createCsvWriter(tempFile, false)) {
+            writer.writeNext(header);
+            writer.writeAll(store.records());
         }
+        replaceWith(tempFile);
+        index.rebuild(); // Every offset moved
+        dropRowReader();
+        slots.invalidate();
+    }
+
+    /**
+     * Moves a fully written temporary file over the database file.
+     */
+    private void replaceWith (File tempFile) throws IOException {
+        try {
+            // A plain REPLACE_EXISTING move deletes the target first, briefly leaving no file for watchers
+            Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), databaseFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void scheduleCompactionIfNeeded () {
+        int deadRecords = index.deadRecords();
+        int totalLines = index.size() + deadRecords;
+        boolean overThreshold = deadRecords >= StorageConfig.compactionMinDeadRecords()
+                && deadRecords >= totalLines * StorageConfig.compactionDeadRatio();
+        if (!overThreshold || compactionPending) {
+            return;
+        }
+
+        compactionPending = true;
+        COMPACTOR.submit(() -> {
+            synchronized (this) {
+                compactionPending = false;
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Warning: Background compaction of " + databaseFile.getName() + " failed: " + e.getMessage());
+                }
+            }
+        });
     }
 
     /**
      * Adds a new location record to the end of the CSV file.
+     * With the write-ahead log enabled, this blocks until the group commit
+     * containing the record has been synced.
      *
      * @param newLocationData An array representing the new location record.
      *                        Must match the expected CSV structure (ID, Name, City, Province, Category).
      * @throws IOException              If writing to the file fails.
-     * @throws IllegalArgumentException If newLocationData is null or has incorrect length.
+     * @throws IllegalArgumentException If newLocationData is null or has incorrect length, or its
+     *                                  ID starts with the tombstone marker.
+     * @throws DuplicateIdException     If a record with the same ID already exists.
      */
+    @Override
     public void addRecord (String[] newLocationData) throws IOException {
         // Basic validation - adjust expected length if columns change
         int expectedColumns = 5;
         if (newLocationData == null || newLocationData.length < expectedColumns) {
             throw new IllegalArgumentException("New location data is invalid or incomplete. Expected " + expectedColumns + " columns.");
         }
+        String id = newLocationData[ID_COLUMN];
+        checkStorableId(id);
+
+        synchronized (this) {
+            try (DatabaseLock.Hold hold = lockForWrite()) {
+                if (isTaken(id)) {
+                    throw new DuplicateIdException("Location with ID '" + id + "' already exists.");
+                }
+                if (writeAheadLog == null) {
+                    List<String[]> rows = Collections.singletonList(newLocationData.clone()); // The store keeps the array
+                    appendBatch(rows);
+                    committed(hold, false, rows);
+                    return;
+                }
+                pendingIds.add(id);
+            }
+        }
+
+        // Not synchronized: the flusher thread needs the lock to apply the batch we wait for
+        try {
+            writeAheadLog.submit(newLocationData.clone()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                pendingIds.remove(id);
+            }
+        }
+    }
+
+    /**
+     * @return false for IDs that cannot be stored: null, or starting with {@link Tombstones#MARKER},
+     * which every reader would take for a tombstone.
+     */
+    private static boolean isStorableId (String id) {
+        return id != null && !Tombstones.isTombstone(id);
+    }
 
+    private static void checkStorableId (String id) {
+        if (!isStorableId(id)) {
+            throw new IllegalArgumentException("Location ID '" + id + "' is invalid: IDs cannot be null or start with '" + Tombstones.MARKER + "'.");
+        }
+    }
+
+    /**
+     * @return true if the ID belongs to a stored record or to one still on its way through the WAL.
+     */
+    private boolean isTaken (String id) {
+        return index.contains(id) || pendingIds.contains(id);
+    }
+
+    /**
+     * Adds many records with a single append to the file (or a single group commit
+     * when the write-ahead log is enabled).
+     *
+     * @param newRecords The records to add, each (ID, Name, City, Province, Category).
+     * @return The outcome for each record, in the order given (ADDED; INVALID for
+     * null or incomplete records or IDs starting with the tombstone marker, DUPLICATE for IDs
+     * that already exist; both skipped).
+     * @throws IOException If writing to the file fails; no outcome is reported then.
+     */
+    @Override
+    public BatchResult addRecords (Collection<String[]> newRecords) throws IOException {
+        if (newRecords == null) {
+            throw new IllegalArgumentException("Records to add cannot be null.");
+        }
+
+        int expectedColumns = 5;
+        BatchResult result = new BatchResult();
+        List<String[]> valid = new ArrayList<>(newRecords.size());
+        Set<String> batchIds = new HashSet<>();
+        synchronized (this) {
+            try (DatabaseLock.Hold hold = lockForWrite()) {
+                for (String[] row : newRecords) {
+                    if (row == null || row.length < expectedColumns || !isStorableId(row[ID_COLUMN])) {
+                        result.record(row == null || row.length == 0 ? null : row[ID_COLUMN], BatchResult.Outcome.INVALID);
+                    } else if (isTaken(row[ID_COLUMN]) || !batchIds.add(row[ID_COLUMN])) {
+                        result.record(row[ID_COLUMN], BatchResult.Outcome.DUPLICATE);
+                    } else {
+                        result.record(row[ID_COLUMN], BatchResult.Outcome.ADDED);
+                        valid.add(row.clone());
+                    }
+                }
+                if (valid.isEmpty()) {
+                    return result;
+                }
+
+                if (writeAheadLog == null) {
+                    appendBatch(valid);
+                    committed(hold, false, valid);
+                    return result;
+                }
+                pendingIds.addAll(batchIds);
+            }
+        }
+
+        // Submit everything first so the records share as few group commits as possible
+        List<CompletableFuture<Void>> commits = new ArrayList<>(valid.size());
+        for (String[] row : valid) {
+            commits.add(writeAheadLog.submit(row));
+        }
+        try {
+            CompletableFuture.allOf(commits.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                pendingIds.removeAll(batchIds);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends rows to the CSV with a single writer, then indexes them. Callers hold the write
+     * lock, have caught up with the file and have already rejected duplicate IDs.
+     *
+     * @param rows The records to append.
+     * @throws IOException If writing to the file fails.
+     */
+    private synchronized void appendBatch (List<String[]> rows) throws IOException {
         // Ensure header exists before appending
         writeHeaderIfNotPresent();
 
         try (ICSVWriter writer = createCsvWriter(true)) { // true = append
-            writer.writeNext(newLocationData);
+            for (String[] row : rows) {
+                writer.writeNext(row);
+            }
+        }
+        if (store != null) {
+            for (String[] row : rows) {
+                store.put(row);
+            }
+        }
+        afterWrite();
+
+        if (writeAheadLog != null && writeAheadLog.size() > WAL_CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Replaces the fields of an existing record. The new row is written over the record's
+     * slot in the file when it fits; otherwise the record moves to free space (or the end of
+     * the file) and its old slot is blanked. Either way only the affected pages are written.
+     *
+     * @param locationId The ID of the record to update.
+     * @param fields     The new record (ID, Name, City, Province, Category); the ID must be unchanged.
+     * @throws IOException              If the file cannot be read or written.
+     * @throws RecordNotFoundException  If no record with the specified ID exists.
+     * @throws IllegalArgumentException If the fields are incomplete or carry a different ID, or the
+     *                                  ID starts with the tombstone marker.
+     */
+    @Override
+    public synchronized void updateRecord (String locationId, String[] fields) throws IOException, RecordNotFoundException {
+        int expectedColumns = 5;
+        if (fields == null || fields.length < expectedColumns) {
+            throw new IllegalArgumentException("Updated location data is invalid or incomplete. Expected " + expectedColumns + " columns.");
+        }
+        checkStorableId(fields[ID_COLUMN]);
+        if (!fields[ID_COLUMN].equals(locationId)) {
+            throw new IllegalArgumentException("Updated location data has ID '" + fields[ID_COLUMN] + "', expected '" + locationId + "'.");
+        }
+
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            checkpoint(); // A WAL replay must not see the old version as missing
+
+            Long offset = index.offsetOf(locationId);
+            if (offset == null) {
+                throw new RecordNotFoundException("Location with ID '" + locationId + "' not found for update.");
+            }
+
+            String[] row = fields.clone();
+            MappedCsvReader.Cursor old = rowAt(offset);
+            String[] oldRow = old.toArray();
+            long newOffset = slots.place(offset, old.nextLineOffset(), formatLine(row));
+            if (newOffset != offset) {
+                index.moved(locationId, newOffset);
+            }
+            index.coverCurrentState();
+            dropRowReader();
+            if (store != null) {
+                store.put(row);
+            }
+            committed(hold, true, List.of(oldRow, row)); // Other managers may hold the old row; they rebuild on seeing this
+        }
+    }
+
+    /**
+     * Formats a row exactly as {@link #createCsvWriter} writes it (no quoting, no escaping).
+     */
+    private static byte[] formatLine (String[] row) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) line.append(CSVWriter.DEFAULT_SEPARATOR);
+            if (row[i] != null) line.append(row[i]);
+        }
+        return line.append(CSVWriter.DEFAULT_LINE_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Looks up a single location record by its unique ID.
+     *
+     * @param locationId The ID of the location record.
+     * @return The record (ID, Name, City, Province, Category).
+     * @throws IOException             If the file changed on disk and could not be re-read.
+     * @throws RecordNotFoundException If no record with the specified ID exists.
+     */
+    @Override
+    public synchronized String[] getById (String locationId) throws IOException, RecordNotFoundException {
+        ensureInSync();
+
+        Long offset = index.offsetOf(locationId);
+        if (offset == null) {
+            throw new RecordNotFoundException("Location with ID '" + locationId + "' not found.");
+        }
+        if (store != null) {
+            return store.get(locationId).clone();
         }
+        return readRowAt(offset);
     }
 
+    /**
+     * Looks up many records at once. The rows are read in file order, so the lookups
+     * walk the file forwards instead of jumping back and forth.
+     *
+     * @param locationIds The IDs to look up.
+     * @return The records found, keyed by ID in the order the IDs were given.
+     * IDs without a record are left out.
+     * @throws IOException If the file changed on disk and could not be re-read.
+     */
+    @Override
+    public synchronized Map<String, String[]> getByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs cannot be null.");
+        }
+        ensureInSync();
+
+        Map<String, String[]> found = new LinkedHashMap<>();
+        List<String> byOffset = new ArrayList<>();
+        for (String id : locationIds) {
+            if (index.contains(id) && !found.containsKey(id)) {
+                found.put(id, null); // Reserve the slot so the result keeps the caller's order
+                byOffset.add(id);
+            }
+        }
+        byOffset.sort(Comparator.comparing(index::offsetOf));
+        for (String id : byOffset) {
+            found.put(id, store != null ? store.get(id).clone() : readRowAt(index.offsetOf(id)));
+        }
+        return found;
+    }
+
+    /**
+     * @param locationId A record ID.
+     * @return true if a record with that ID exists. Answered from the ID index.
+     * @throws IOException If the file changed on disk and could not be re-read.
+     */
+    @Override
+    public synchronized boolean containsId (String locationId) throws IOException {
+        ensureInSync();
+        return index.contains(locationId);
+    }
+
+    private String[] readRowAt (long offset) throws IOException {
+        return rowAt(offset).toArray();
+    }
 
     /**
-     * Finds the maximum numeric ID present in the ID column of the CSV file.
-     * Assumes IDs are stored as strings but represent integers.
+     * @return A cursor on the row that starts at the given offset.
+     */
+    private MappedCsvReader.Cursor rowAt (long offset) throws IOException {
+        if (rowReader == null && packedFile == null) {
+            packedFile = BlockCompressedFile.openIfCompressed(databaseFile);
+            if (packedFile == null) {
+                rowReader = MappedCsvReader.open(databaseFile);
+            }
+        }
+        MappedCsvReader.Cursor cursor;
+        if (packedFile != null) {
+            if (offset >= packedFile.length()) {
+                throw new IOException("ID index points past the end of " + databaseFile.getName());
+            }
+            // Blocks end on line boundaries, so the row lies entirely in one block
+            int block = packedFile.blockContaining(offset);
+            MappedCsvReader lines = MappedCsvReader.ofLines(ByteBuffer.wrap(packedFile.block(block)));
+            cursor = lines.rawCursor(offset - packedFile.blockStart(block));
+        } else {
+            cursor = rowReader.rawCursor(offset);
+        }
+        if (!cursor.next()) {
+            throw new IOException("ID index points past the end of " + databaseFile.getName());
+        }
+        return cursor;
+    }
+
+
+    /**
+     * Generates the ID for a new record: a time-ordered {@link LandmarkId} such as
+     * {@code 0CQ6J0T2G000A}. IDs from one process increase strictly; processes sharing the
+     * file generate with different node numbers, so they never collide.
      *
-     * @return An OptionalInt containing the maximum ID, or empty if the file is empty,
-     * has no valid IDs, or an error occurs.
+     * @return The new ID in text form.
+     * @throws UncheckedIOException If no node number could be leased from the lock file.
      */
+    @Override
     public String getNextID () {
-        return UUID.randomUUID().toString();
+        try {
+            return LandmarkId.format(lock.idGenerator().next());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not lease an ID range for " + databaseFile.getName(), e);
+        }
+    }
+
+    /**
+     * Replaces every legacy ID (anything that is not a compact {@link LandmarkId}, such as the
+     * bundled {@code 0001} style or the random UUIDs older versions generated) with a newly
+     * generated one. Records are renumbered in file order, so their new IDs sort the way they
+     * were inserted.
+     * <p>
+     * Legacy IDs keep working without this. Anything else keyed by the old IDs, such as image
+     * files named after them, has to be renamed by the caller using the returned map.
+     *
+     * @return Old ID to new ID, in file order; empty if there was nothing to migrate.
+     * @throws IOException If the file cannot be rewritten.
+     */
+    public synchronized Map<String, String> migrateLegacyIds () throws IOException {
+        try (DatabaseLock.Hold hold = lockForWrite()) {
+            checkpoint(); // A WAL replay must not bring back records under their old IDs
+
+            Map<String, String> renamed = new LinkedHashMap<>();
+            LandmarkStore migrated = new LandmarkStore(ID_COLUMN);
+            for (String[] row : residentStore().records()) {
+                if (!LandmarkId.isCompact(row[ID_COLUMN])) {
+                    String newId = getNextID();
+                    renamed.put(row[ID_COLUMN], newId);
+                    row = row.clone();
+                    row[ID_COLUMN] = newId;
+                }
+                migrated.put(row);
+            }
+            if (!renamed.isEmpty()) {
+                store = migrated;
+                rewriteFromStore();
+                committed(hold, true);
+            }
+            return renamed;
+        }
     }
 
 
     /**
      * Reads all valid data rows from the CSV file (excluding the header).
+     * Rows are served from the resident store, which is parsed on the first call.
      *
      * @return A List of String arrays, where each array represents a row.
-     * @throws IOException  if file reading fails.
-     * @throws CsvException if CSV parsing fails.
+     * @throws IOException if file reading fails.
      */
-    public List<String[]> readAllRecords () throws IOException, CsvException {
-        try (CSVReader reader = new CSVReaderBuilder(new FileReader(databaseFile))
-                .withCSVParser(csvParser)
-                .withSkipLines(1) // Skip header row
-                .build()) {
-            return reader.readAll();
+    @Override
+    public synchronized List<String[]> readAllRecords () throws IOException {
+        ensureInSync();
+        return residentStore().snapshot();
+    }
+
+    /**
+     * Selects rows by province and/or category from the catalog snapshot (see {@link Filter}),
+     * so repeated queries on an unchanged file never parse the CSV again.
+     */
+    @Override
+    public synchronized List<String[]> findRows (String province, String category) throws IOException {
+        return find(Query.forFilters(province, category));
+    }
+
+    /**
+     * Plans the query over the catalog snapshot's bitmap indexes (see {@link Filter#rows(Query)}),
+     * or answers it from the query cache if nothing it depends on was written since. A result
+     * is only cached if the catalog it came from was loaded at the current version.
+     */
+    @Override
+    public synchronized List<String[]> find (Query query) throws IOException {
+        ensureInSync();
+        List<String[]> cached = queryCache.get(query, knownVersion);
+        if (cached != null) {
+            return cached;
         }
+        if (filter == null) {
+            filter = new Filter(databaseFile);
+        }
+        List<String[]> rows = filter.select(query);
+        if (rows == null) {
+            return new ArrayList<>(); // Unreadable catalog, already reported; not worth caching
+        }
+        if (filter.catalogVersion() == knownVersion) {
+            // Only a catalog loaded at this very version may stand for it; an older one could
+            // miss the write that just invalidated the entry, a newer one a write not caught up with
+            queryCache.put(query, knownVersion, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Plans the query like {@link #find(Query)} but returns row numbers into the catalog
+     * snapshot instead of records. Bypasses the query cache: the bitmap result costs less to
+     * recompute than the records it stands for, and a cached set would keep its catalog alive.
+     */
+    @Override
+    public synchronized RowSet select (Query query) throws IOException {
+        ensureInSync();
+        if (filter == null) {
+            filter = new Filter(databaseFile);
+        }
+        RowSet rows = filter.rowIds(query);
+        if (rows == null) {
+            throw new IOException("Could not read the catalog of " + databaseFile.getName());
+        }
+        return rows;
+    }
+
+    /**
+     * @return Number of {@link #find(Query)} calls answered from the query cache so far.
+     */
+    public synchronized int getQueryCacheHits () {
+        return queryCache.hits();
+    }
+
+    /**
+     * @return The version stamp of the last committed write, see {@link DatabaseLock}.
+     * Changes whenever any manager, in this process or another, commits a write.
+     * @throws IOException If the stamp cannot be read.
+     */
+    public synchronized long getVersion () throws IOException {
+        ensureInSync();
+        return knownVersion;
+    }
+
+    /**
+     * @return A copy of the header row as found in the file.
+     */
+    @Override
+    public synchronized String[] getHeader () {
+        return header.clone();
+    }
+
+    /**
+     * Streams the records of the database file, parsing each row only when the stream
+     * pulls it. Unlike {@link #readAllRecords()} nothing is materialized up front, so memory
+     * stays bounded regardless of catalog size and a consumer that stops early
+     * (e.g. {@code limit(pageSize)}) never parses the remaining rows.
+     * <p>
+     * The stream reflects the file as committed when this method is called; later changes
+     * are not visible to it.
+     *
+     * @return A lazily evaluated, ordered stream of the live records.
+     * @throws IOException If the file cannot be opened.
+     */
+    @Override
+    public synchronized Stream<LandmarkRecord> streamRecords () throws IOException {
+        return MappedCsvReader.open(databaseFile).records();
     }
 
     /**
@@ -231,4 +1127,15 @@ public class DatabaseManager {
             super(message);
         }
     }
+
+    /**
+     * Thrown when adding a record whose ID is already in use.
+     */
+    public static class DuplicateIdException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public DuplicateIdException (String message) {
+            super(message);
+        }
+    }
 }
\ No newline at end of file
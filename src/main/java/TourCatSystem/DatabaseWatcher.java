@@ -0,0 +1,195 @@
+package TourCatSystem;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watches a CSV database for changes made by other windows or processes and reports them
+ * incrementally.
+ * <p>
+ * A {@link WatchService} on the file's directory wakes a background thread whenever the file
+ * is written. If the file only grew (the bytes before the last known end are unchanged), just
+ * the new tail is parsed and reported as appended rows and tombstoned IDs. Any other change -
+ * a truncation, a rewrite or an in-place update - is reported as {@link Listener#fileReplaced()},
+ * upon which the listener should reload everything. A line still being written is left for
+ * the next event.
+ * <p>
+ * Length and modification time alone miss an in-place update of the same length made within
+ * the file system's timestamp resolution, so the {@link DatabaseLock} version stamp is
+ * compared as well; the lock file is watched too, since the stamp is bumped after the write.
+ * Each check waits for a write in progress to commit, so one write is reported once.
+ * <p>
+ * Listener methods run on the watcher thread; GUI code has to hand them over to the event
+ * dispatch thread itself.
+ */
+public class DatabaseWatcher implements Closeable {
+
+    /**
+     * Receives the changes found in the watched file.
+     */
+    public interface Listener {
+        /**
+         * @param rows       Rows appended since the last report, in file order.
+         * @param deletedIds IDs of records tombstoned since the last report (APPEND_LOG mode).
+         */
+        void rowsAppended (List<String[]> rows, Set<String> deletedIds);
+
+        /**
+         * The file changed in a way that cannot be expressed as appended rows.
+         */
+        void fileReplaced ();
+    }
+
+    private final File databaseFile;
+    private final Listener listener;
+    private final WatchService watchService;
+    private volatile boolean running = true;
+
+    // End of the last complete line reported, and the file state at that time
+    private long knownLength;
+    private long knownLastModified;
+    private long tailChecksum;
+    private long[] knownStamp;
+
+    private DatabaseWatcher (File databaseFile, Listener listener, WatchService watchService) throws IOException {
+        this.databaseFile = databaseFile;
+        this.listener = listener;
+        this.watchService = watchService;
+        remember(databaseFile.length(), DatabaseLock.committedStampOf(databaseFile));
+    }
+
+    /**
+     * Starts watching a database file. Changes made before this call are not reported.
+     *
+     * @param databaseFile The CSV database file.
+     * @param listener     Receives the changes.
+     * @return The running watcher; {@link #close()} it when no longer needed.
+     * @throws IOException If the directory cannot be watched.
+     */
+    public static DatabaseWatcher start (File databaseFile, Listener listener) throws IOException {
+        File directory = databaseFile.getAbsoluteFile().getParentFile();
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        try {
+            directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+
+        DatabaseWatcher watcher = new DatabaseWatcher(databaseFile.getAbsoluteFile(), listener, watchService);
+        Thread thread = new Thread(watcher::run, "TourCat-watch-" + databaseFile.getName());
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    private void run () {
+        Path fileName = databaseFile.toPath().getFileName();
+        Path lockName = Path.of(fileName + DatabaseLock.LOCK_SUFFIX);
+        try {
+            while (running) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW means events were lost, so the file may have changed as well
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context()) || lockName.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    checkForChanges();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // close() was called
+        }
+    }
+
+    /**
+     * Compares the file with the last known state and notifies the listener. Called by the
+     * watcher thread; may also be called directly to poll.
+     */
+    public synchronized void checkForChanges () {
+        try {
+            long[] stamp = DatabaseLock.committedStampOf(databaseFile); // Before the file, so it never looks newer than what was read
+            long length = databaseFile.length();
+            if (length == knownLength && databaseFile.lastModified() == knownLastModified && stamp[1] == knownStamp[1]) {
+                knownStamp = stamp; // At most an append that was already reported
+                return;
+            }
+            if (length > knownLength && knownLength > 0 && stamp[1] == knownStamp[1]
+                    && PrimaryKeyIndex.checksumBefore(databaseFile, knownLength) == tailChecksum) {
+                readTail(stamp);
+            } else {
+                remember(length, stamp);
+                listener.fileReplaced();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: Could not check " + databaseFile.getName() + " for changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the complete lines after the last known end of the file.
+     */
+    private void readTail (long[] stamp) throws IOException {
+        Map<String, String[]> appended = new LinkedHashMap<>();
+        Set<String> deleted = new LinkedHashSet<>();
+        long end = knownLength;
+
+        MappedCsvReader.Cursor cursor = MappedCsvReader.open(databaseFile).rawCursor(knownLength);
+        while (cursor.next() && cursor.lineTerminated()) {
+            String id = cursor.fieldString(0);
+            if (cursor.isTombstone()) {
+                String deletedId = id.substring(Tombstones.MARKER.length());
+                // A row added and deleted within the same tail never needs to be shown
+                if (appended.remove(deletedId) == null) {
+                    deleted.add(deletedId);
+                }
+            } else {
+                appended.remove(id); // Keep a re-added ID in its latest position
+                appended.put(id, cursor.toArray());
+            }
+            end = cursor.nextLineOffset();
+        }
+
+        remember(end, stamp);
+        if (!appended.isEmpty() || !deleted.isEmpty()) {
+            listener.rowsAppended(new ArrayList<>(appended.values()), deleted);
+        }
+    }
+
+    private void remember (long length, long[] stamp) throws IOException {
+        knownLength = length;
+        knownStamp = stamp;
+        knownLastModified = databaseFile.lastModified();
+        tailChecksum = PrimaryKeyIndex.checksumBefore(databaseFile, length);
+    }
+
+    /**
+     * Stops watching. Pending events are dropped.
+     */
+    @Override
+    public void close () throws IOException {
+        running = false;
+        watchService.close();
+    }
+}
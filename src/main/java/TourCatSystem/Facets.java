@@ -0,0 +1,199 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Multi-select facets on the indexed columns (City, Province, Category) of a {@link RowSet}:
+ * <pre>
+ * Facets facets = new Facets(repository.select(Query.search(text)));
+ * facets.select(LandmarkCatalog.PROVINCE_COLUMN, List.of("Ontario", "Quebec"));
+ * Map&lt;String, Integer&gt; categories = facets.counts(LandmarkCatalog.CATEGORY_COLUMN); // e.g. Park=1204
+ * RowSet shown = facets.rows();
+ * </pre>
+ * A row matches when, for every facet with a selection, it holds one of the selected values.
+ * The count of a value is the number of rows it would leave if it were the only value
+ * selected in its own facet, with the other facets as they are; selecting more values in
+ * the same facet widens the result, so those counts stay meaningful while it changes.
+ * <p>
+ * Everything is answered from the catalog's {@link BitmapIndex}. Each facet keeps the bitmap
+ * of rows holding one of its selected values, rebuilt only when that facet changes; a count
+ * is the size of the intersection of a value's bitmap with the other facets' bitmaps and the
+ * starting set, so no row is visited (bar the few added since, see {@link #applyChanges}).
+ * <p>
+ * Values are compared like {@link Query} values: ignoring case and surrounding whitespace.
+ * Not thread-safe.
+ */
+public final class Facets {
+
+    private RowSet universe;
+    private BitmapIndex index;
+    private final List<String[]> added = new ArrayList<>(); // Universe rows not in the catalog yet, see applyChanges
+    private final Map<Integer, Set<String>> selected = new HashMap<>(); // Column -> chosen values; no entry means any
+    private final Map<Integer, RowBitmap> selection = new HashMap<>();  // Column -> rows holding a chosen value
+
+    /**
+     * @param universe The rows to facet, e.g. all rows or those matching a search.
+     */
+    public Facets (RowSet universe) {
+        setUniverse(universe);
+    }
+
+    /**
+     * Replaces the rows to facet, keeping the selections. The facets' bitmaps are only
+     * rebuilt if the new rows come from a different catalog.
+     */
+    public void setUniverse (RowSet universe) {
+        BitmapIndex previous = index;
+        this.universe = universe;
+        this.index = universe.index();
+        added.clear();
+        if (index != previous) {
+            for (Map.Entry<Integer, Set<String>> facet : selected.entrySet()) {
+                selection.put(facet.getKey(), rowsHolding(facet.getKey(), facet.getValue()));
+            }
+        }
+    }
+
+    /**
+     * @param column An indexed column.
+     * @param values The values to select; empty for any value.
+     * @throws IllegalArgumentException If the column is not indexed.
+     */
+    public void select (int column, Collection<String> values) {
+        if (column < 0 || column >= LandmarkCatalog.COLUMN_COUNT || !index.isIndexed(column)) {
+            throw new IllegalArgumentException("Not a facet column: " + Query.columnName(column));
+        }
+        if (values.isEmpty()) {
+            selected.remove(column);
+            selection.remove(column);
+        } else {
+            Set<String> chosen = new LinkedHashSet<>(values);
+            selected.put(column, chosen);
+            selection.put(column, rowsHolding(column, chosen));
+        }
+    }
+
+    /**
+     * Brings the universe up to date with records written since it was taken (e.g. reported by
+     * a {@link DatabaseWatcher}) without a new catalog. Deleted rows leave the counts and
+     * {@link #rows()}; added ones are counted by their values but, not being in the catalog,
+     * are not part of {@link #rows()}, so whoever shows them keeps them. {@link #setUniverse}
+     * drops both changes, the new catalog holding them already.
+     *
+     * @param addedRows  Records to add to the universe; the caller leaves out those that do
+     *                   not match what the universe was selected by.
+     * @param deletedIds IDs of records to remove from it.
+     */
+    public void applyChanges (Collection<String[]> addedRows, Set<String> deletedIds) {
+        if (!deletedIds.isEmpty()) {
+            LandmarkCatalog catalog = universe.catalog();
+            RowBitmap.Builder gone = new RowBitmap.Builder();
+            universe.bitmap().forEach(row -> {
+                if (deletedIds.contains(catalog.getId(row))) {
+                    gone.add(row);
+                }
+            });
+            universe = new RowSet(index, universe.bitmap().andNot(gone.build()));
+            added.removeIf(row -> deletedIds.contains(row[LandmarkCatalog.ID_COLUMN]));
+        }
+        added.addAll(addedRows);
+    }
+
+    /**
+     * Clears every selection.
+     */
+    public void clear () {
+        selected.clear();
+        selection.clear();
+    }
+
+    /**
+     * @return The values selected on the column; empty for any value.
+     */
+    public Set<String> selected (int column) {
+        Set<String> values = selected.get(column);
+        return values == null ? Set.of() : Collections.unmodifiableSet(values);
+    }
+
+    /**
+     * @param column An indexed column.
+     * @return Each value of the column with the number of rows it matches given the other
+     * facets, sorted by value. Values differing only in case or whitespace are counted as
+     * one; selected values are always included, if need be with a count of 0.
+     */
+    public Map<String, Integer> counts (int column) {
+        if (column < 0 || column >= LandmarkCatalog.COLUMN_COUNT || !index.isIndexed(column)) {
+            throw new IllegalArgumentException("Not a facet column: " + Query.columnName(column));
+        }
+        String[] values = index.values(column);
+        int[] counts = index.counts(column, rowsExcept(column));
+        Map<String, Integer> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].trim();
+            if (!value.isEmpty()) {
+                result.merge(value, counts[i], Integer::sum);
+            }
+        }
+        if (!added.isEmpty()) {
+            Query others = queryExcept(column);
+            for (String[] row : added) {
+                String value = column < row.length && row[column] != null ? row[column].trim() : "";
+                if (!value.isEmpty() && others.matches(row)) {
+                    result.merge(value, 1, Integer::sum);
+                }
+            }
+        }
+        for (String value : selected(column)) {
+            result.putIfAbsent(value.trim(), 0);
+        }
+        return result;
+    }
+
+    /**
+     * @return The rows of the universe matching every facet.
+     */
+    public RowSet rows () {
+        return new RowSet(index, rowsExcept(-1));
+    }
+
+    /**
+     * @return The facets as a query, e.g. to check rows that are not in the catalog yet.
+     */
+    public Query query () {
+        return queryExcept(-1);
+    }
+
+    // Every facet's selection but the given column's, as a query
+    private Query queryExcept (int column) {
+        List<Query> parts = new ArrayList<>();
+        for (Map.Entry<Integer, Set<String>> facet : selected.entrySet()) {
+            if (facet.getKey() != column) {
+                parts.add(Query.in(facet.getKey(), facet.getValue()));
+            }
+        }
+        return Query.and(parts.toArray(new Query[0]));
+    }
+
+    // Universe AND every facet's selection but the given column's
+    private RowBitmap rowsExcept (int column) {
+        RowBitmap rows = universe.bitmap();
+        for (Map.Entry<Integer, RowBitmap> facet : selection.entrySet()) {
+            if (facet.getKey() != column && !rows.isEmpty()) {
+                rows = rows.and(facet.getValue());
+            }
+        }
+        return rows;
+    }
+
+    private RowBitmap rowsHolding (int column, Set<String> values) {
+        return index.rows(column, index.valuesMatching((Query.Compare) Query.in(column, values)));
+    }
+}
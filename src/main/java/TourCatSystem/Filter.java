@@ -1,16 +1,32 @@
 package TourCatSystem;
 
-import java.io.*; // Import necessary IO classes
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List; // Use List interface
-
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filters the landmark database with a {@link Query}; the {@code filter} methods are
+ * shorthands for the province and type (category) boxes of the catalog window.
+ * <p>
+ * Filtering runs over the dictionary-encoded {@link LandmarkCatalog} and its
+ * {@link BitmapIndex}: {@link QueryPlanner} answers comparisons on City, Province and
+ * Category from bitmaps of row numbers and checks the rest only on the rows those leave.
+ * Results are {@link RowSet row numbers} into the catalog, and only the rows a caller asks
+ * for are materialized. The catalog and index are kept between calls and only rebuilt when
+ * the database file changes, so a filter on an unchanged file does no I/O beyond checking its
+ * length, timestamp and {@link DatabaseLock} version stamp. The stamp is what reveals an
+ * in-place update that kept both of the others.
+ */
 public class Filter {
     private final File databaseFile; // Make final, set in constructor
     private ArrayList<String> results; // Store results here
 
-    // Define column indices (adjust if your CSV is different)
-    private static final int PROVINCE_COLUMN_INDEX = 3;
-    private static final int TYPE_COLUMN_INDEX = 4;
+    private BitmapIndex index; // Built with the catalog on first use
+    private long catalogLength = -1;
+    private long catalogLastModified = -1;
+    private long[] catalogStamp = {-1, -1}; // Version stamp read before the catalog was loaded
 
     // Constructor takes the database file
     public Filter(File databaseFile) {
@@ -21,36 +37,31 @@ public class Filter {
         this.results = new ArrayList<>();
     }
 
-    // Method to read all relevant lines (excluding header)
-    private List<String> readAllLines() {
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(databaseFile))) {
-            String line;
-            boolean isFirstLine = true;
-            while ((line = br.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false; // Skip header
-                    continue;
-                }
-                if (!line.trim().isEmpty()) {
-                    lines.add(line);
-                }
+    // Returns the index for the current file contents, reloading it only if the file changed
+    private BitmapIndex loadIndex() {
+        long[] stamp = DatabaseLock.stampOf(databaseFile); // Before the file, so it never looks newer than the rows
+        long length = databaseFile.length();
+        long lastModified = databaseFile.lastModified();
+        if (index == null || length != catalogLength || lastModified != catalogLastModified || !Arrays.equals(stamp, catalogStamp)) {
+            try {
+                index = BitmapIndex.build(CatalogSnapshot.load(databaseFile));
+                catalogLength = length;
+                catalogLastModified = lastModified;
+                catalogStamp = stamp;
+            } catch (IOException e) {
+                System.err.println("Error reading database file in Filter: " + e.getMessage());
+                // Consider throwing a custom exception or returning empty list
+                return null;
             }
-        } catch (IOException e) {
-            System.err.println("Error reading database file in Filter: " + e.getMessage());
-            // Consider throwing a custom exception or returning empty list
         }
-        return lines;
+        return index;
     }
 
-    // Helper to safely get column data
-    private String getColumnData(String line, int columnIndex) {
-        if (line == null) return null;
-        String[] parts = line.split(","); // Simple CSV split
-        if (columnIndex >= 0 && columnIndex < parts.length) {
-            return parts[columnIndex].trim(); // Trim whitespace
+    // Collects every matching row into the string results
+    private void collect(Query query) {
+        for (String[] row : rows(query)) {
+            results.add(String.join(",", row));
         }
-        return null; // Index out of bounds or bad split
     }
 
 
@@ -62,13 +73,7 @@ public class Filter {
         if (selectedProvince == null || selectedProvince.trim().isEmpty()) {
             return; // No filter applied if province is null/empty
         }
-        List<String> allLines = readAllLines();
-        for (String line : allLines) {
-            String provinceInLine = getColumnData(line, PROVINCE_COLUMN_INDEX);
-            if (provinceInLine != null && provinceInLine.equalsIgnoreCase(selectedProvince.trim())) {
-                results.add(line);
-            }
-        }
+        collect(Query.eq(LandmarkCatalog.PROVINCE_COLUMN, selectedProvince));
     }
 
     // Filter by Type only
@@ -77,16 +82,7 @@ public class Filter {
         if (selectedType == null || selectedType.trim().isEmpty()) {
             return; // No filter applied if type is null/empty
         }
-        List<String> allLines = readAllLines();
-        for (String line : allLines) {
-            String typeInLine = getColumnData(line, TYPE_COLUMN_INDEX);
-            // Special handling for "Historic Site" possibly containing a comma
-            // A more robust CSV parser would be better here.
-            // Let's assume for now the simple split works or the data is clean.
-            if (typeInLine != null && typeInLine.equalsIgnoreCase(selectedType.trim())) {
-                results.add(line);
-            }
-        }
+        collect(Query.eq(LandmarkCatalog.CATEGORY_COLUMN, selectedType));
     }
 
     // Filter by Both Province and Type
@@ -99,19 +95,61 @@ public class Filter {
             return;
         }
 
-        List<String> allLines = readAllLines();
-        String targetProvince = selectedProvince.trim();
-        String targetType = selectedType.trim();
+        collect(Query.forFilters(selectedProvince, selectedType));
+    }
 
-        for (String line : allLines) {
-            String provinceInLine = getColumnData(line, PROVINCE_COLUMN_INDEX);
-            String typeInLine = getColumnData(line, TYPE_COLUMN_INDEX);
+    /**
+     * Selects rows by province and/or type without going through the string results.
+     *
+     * @param province The province, or null/blank for any province.
+     * @param type     The type (category), or null/blank for any type.
+     * @return The matching rows in file order; empty if the file cannot be read.
+     */
+    public List<String[]> rowsMatching(String province, String type) {
+        return rows(Query.forFilters(province, type));
+    }
 
-            if (provinceInLine != null && provinceInLine.equalsIgnoreCase(targetProvince) &&
-                    typeInLine != null && typeInLine.equalsIgnoreCase(targetType)) {
-                results.add(line);
-            }
-        }
+    /**
+     * @param query The condition.
+     * @return The matching rows in file order; empty if the file cannot be read.
+     */
+    public List<String[]> rows(Query query) {
+        List<String[]> rows = select(query);
+        return rows == null ? new ArrayList<>() : rows;
+    }
+
+    // Version stamp the current catalog was loaded at; its rows are at least that recent
+    long catalogVersion() {
+        return catalogStamp[0];
+    }
+
+    // Like rows(Query), but null if the file cannot be read
+    List<String[]> select(Query query) {
+        RowSet rows = rowIds(query);
+        return rows == null ? null : rows.toRows();
+    }
+
+    /**
+     * Selects rows without materializing any of them; a table can show the result straight
+     * from the catalog.
+     *
+     * @param query The condition.
+     * @return The matching row numbers over the current catalog, or null if the file cannot be read.
+     */
+    public RowSet rowIds(Query query) {
+        BitmapIndex index = loadIndex();
+        if (index == null) return null;
+        return new RowSet(index, QueryPlanner.plan(query, index).execute());
+    }
+
+    /**
+     * @param query The condition.
+     * @return How {@link #rows(Query)} would evaluate it, e.g.
+     * {@code "index Category = 'Park' (12 rows) AND index Province = 'Ontario' (40 rows) then scan Name CONTAINS 'falls'"}.
+     */
+    public String explain(Query query) {
+        BitmapIndex index = loadIndex();
+        return index == null ? "no catalog" : QueryPlanner.plan(query, index).explain();
     }
 
     // Get results
@@ -0,0 +1,434 @@
+package TourCatSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * {@link LandmarkRepository} backed by an embedded H2 database, running in-process
+ * (no server) in {@code <database>.mv.db} next to the CSV file.
+ * <p>
+ * Records live in one table keyed by ID, with indexes on the normalized province and category,
+ * so lookups, duplicate checks and filtering are index seeks instead of file scans. Every
+ * write is a single transaction: a batch is stored completely or not at all.
+ * <p>
+ * The first time a database is opened, the rows of the CSV file are imported in one
+ * transaction. From then on the CSV is no longer read or written; to go back, export with
+ * {@link #readAllRecords()}.
+ */
+public class H2LandmarkRepository implements LandmarkRepository {
+
+    private static final int EXPECTED_COLUMNS = 5;
+    private static final String DUPLICATE_KEY = "23505";
+
+    private static final String COLUMNS = "ID, NAME, CITY, PROVINCE, CATEGORY";
+
+    private final File databaseFile;
+    private final Connection connection;
+    // H2 locks its file for the process that opened it, so no other process generates IDs for it
+    private final LandmarkId.Generator ids = new LandmarkId.Generator(0);
+    private String[] header = DatabaseManager.DEFAULT_HEADER;
+
+    /**
+     * Opens (or creates) the embedded database belonging to a CSV database.
+     *
+     * @param csvFile The CSV database. Its rows are imported if the embedded database is new.
+     * @throws IllegalArgumentException If csvFile is null.
+     * @throws IOException              If the embedded database cannot be opened or the import fails.
+     */
+    public H2LandmarkRepository (File csvFile) throws IOException {
+        if (csvFile == null) {
+            throw new IllegalArgumentException("Database file cannot be null.");
+        }
+        String name = csvFile.getName();
+        int extension = name.lastIndexOf('.');
+        this.databaseFile = new File(csvFile.getAbsoluteFile().getParentFile(), (extension > 0 ? name.substring(0, extension) : name) + ".mv.db");
+
+        try {
+            String path = databaseFile.getAbsolutePath();
+            this.connection = DriverManager.getConnection("jdbc:h2:file:" + path.substring(0, path.length() - ".mv.db".length()));
+            createSchema();
+            importIfNew(csvFile);
+        } catch (SQLException e) {
+            throw new IOException("Could not open embedded database " + databaseFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return The file H2 keeps the records in.
+     */
+    public File getDatabaseFile () {
+        return databaseFile;
+    }
+
+    private void createSchema () throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // SEQ keeps insertion order; the *_KEY columns hold the values as filters compare them
+            statement.execute("CREATE TABLE IF NOT EXISTS LANDMARK ("
+                    + "SEQ BIGINT GENERATED BY DEFAULT AS IDENTITY UNIQUE, "
+                    + "ID VARCHAR PRIMARY KEY, NAME VARCHAR, CITY VARCHAR, PROVINCE VARCHAR, CATEGORY VARCHAR, "
+                    + "PROVINCE_KEY VARCHAR GENERATED ALWAYS AS (LOWER(TRIM(PROVINCE))), "
+                    + "CATEGORY_KEY VARCHAR GENERATED ALWAYS AS (LOWER(TRIM(CATEGORY))))");
+            statement.execute("CREATE INDEX IF NOT EXISTS LANDMARK_PROVINCE ON LANDMARK(PROVINCE_KEY, CATEGORY_KEY)");
+            statement.execute("CREATE INDEX IF NOT EXISTS LANDMARK_CATEGORY ON LANDMARK(CATEGORY_KEY)");
+            statement.execute("CREATE TABLE IF NOT EXISTS TOURCAT_META (NAME VARCHAR PRIMARY KEY, VAL VARCHAR)");
+        }
+    }
+
+    /**
+     * Copies the CSV rows into the table unless that already happened. The rows and the
+     * "imported" marker are committed together, so an interrupted import starts over.
+     */
+    private void importIfNew (File csvFile) throws SQLException, IOException {
+        String importedHeader = readMeta("header");
+        if (importedHeader != null) {
+            header = importedHeader.split(",", -1);
+            return;
+        }
+
+        MappedCsvReader reader = csvFile.isFile() && csvFile.length() > 0 ? MappedCsvReader.open(csvFile) : null;
+        if (reader != null && reader.header().length > 0) {
+            header = reader.header();
+        }
+        List<String[]> rows = reader != null ? reader.readAllRows() : List.of();
+
+        inTransaction(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DELETE FROM LANDMARK");
+            }
+            Set<String> seen = new HashSet<>();
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO LANDMARK (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+                for (String[] row : rows) {
+                    if (row.length >= EXPECTED_COLUMNS && seen.add(row[0])) {
+                        bindRow(insert, row);
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            writeMeta("header", String.join(",", header));
+            return null;
+        });
+        System.out.println("Imported " + rows.size() + " records from " + csvFile.getName() + " into " + databaseFile.getName());
+    }
+
+    private String readMeta (String name) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT VAL FROM TOURCAT_META WHERE NAME = ?")) {
+            select.setString(1, name);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        }
+    }
+
+    private void writeMeta (String name, String value) throws SQLException {
+        try (PreparedStatement merge = connection.prepareStatement("MERGE INTO TOURCAT_META (NAME, VAL) KEY (NAME) VALUES (?, ?)")) {
+            merge.setString(1, name);
+            merge.setString(2, value);
+            merge.executeUpdate();
+        }
+    }
+
+    @Override
+    public synchronized String[] getHeader () {
+        return header.clone();
+    }
+
+    @Override
+    public synchronized void addRecord (String[] newLocationData) throws IOException {
+        if (newLocationData == null || newLocationData.length < EXPECTED_COLUMNS) {
+            throw new IllegalArgumentException("New location data is invalid or incomplete. Expected " + EXPECTED_COLUMNS + " columns.");
+        }
+        try {
+            inTransaction(() -> {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO LANDMARK (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+                    bindRow(insert, newLocationData);
+                    insert.executeUpdate();
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            if (DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw new DatabaseManager.DuplicateIdException("Location with ID '" + newLocationData[0] + "' already exists.");
+            }
+            throw new IOException("Could not add location " + newLocationData[0], e);
+        }
+    }
+
+    @Override
+    public synchronized BatchResult addRecords (Collection<String[]> newRecords) throws IOException {
+        if (newRecords == null) {
+            throw new IllegalArgumentException("Records to add cannot be null.");
+        }
+        try {
+            return inTransaction(() -> {
+                BatchResult result = new BatchResult();
+                Set<String> batchIds = new HashSet<>();
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO LANDMARK (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+                    for (String[] row : newRecords) {
+                        if (row == null || row.length < EXPECTED_COLUMNS) {
+                            result.record(row == null || row.length == 0 ? null : row[0], BatchResult.Outcome.INVALID);
+                        } else if (exists(row[0]) || !batchIds.add(row[0])) {
+                            result.record(row[0], BatchResult.Outcome.DUPLICATE);
+                        } else {
+                            result.record(row[0], BatchResult.Outcome.ADDED);
+                            bindRow(insert, row);
+                            insert.addBatch();
+                        }
+                    }
+                    if (!batchIds.isEmpty()) {
+                        insert.executeBatch();
+                    }
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not add locations", e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException {
+        if (locationId == null || locationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Location ID to delete cannot be null or empty.");
+        }
+        int deleted;
+        try {
+            deleted = inTransaction(() -> deleteRow(locationId));
+        } catch (SQLException e) {
+            throw new IOException("Could not delete location " + locationId, e);
+        }
+        if (deleted == 0) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found for deletion.");
+        }
+    }
+
+    @Override
+    public synchronized BatchResult deleteByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs to delete cannot be null.");
+        }
+        try {
+            return inTransaction(() -> {
+                BatchResult result = new BatchResult();
+                for (String id : locationIds) {
+                    if (id == null || id.trim().isEmpty()) {
+                        result.record(id, BatchResult.Outcome.INVALID);
+                    } else {
+                        result.record(id, deleteRow(id) > 0 ? BatchResult.Outcome.DELETED : BatchResult.Outcome.NOT_FOUND);
+                    }
+                }
+                return result;
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not delete locations", e);
+        }
+    }
+
+    private int deleteRow (String id) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM LANDMARK WHERE ID = ?")) {
+            delete.setString(1, id);
+            return delete.executeUpdate();
+        }
+    }
+
+    @Override
+    public synchronized void updateRecord (String locationId, String[] fields) throws IOException, DatabaseManager.RecordNotFoundException {
+        if (fields == null || fields.length < EXPECTED_COLUMNS) {
+            throw new IllegalArgumentException("Updated location data is invalid or incomplete. Expected " + EXPECTED_COLUMNS + " columns.");
+        }
+        if (!fields[0].equals(locationId)) {
+            throw new IllegalArgumentException("Updated location data has ID '" + fields[0] + "', expected '" + locationId + "'.");
+        }
+        int updated;
+        try {
+            updated = inTransaction(() -> {
+                try (PreparedStatement update = connection.prepareStatement(
+                        "UPDATE LANDMARK SET NAME = ?, CITY = ?, PROVINCE = ?, CATEGORY = ? WHERE ID = ?")) {
+                    for (int column = 1; column < EXPECTED_COLUMNS; column++) {
+                        update.setString(column, fields[column]);
+                    }
+                    update.setString(EXPECTED_COLUMNS, locationId);
+                    return update.executeUpdate();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IOException("Could not update location " + locationId, e);
+        }
+        if (updated == 0) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found for update.");
+        }
+    }
+
+    @Override
+    public synchronized String[] getById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException {
+        Map<String, String[]> found = getByIds(List.of(locationId));
+        if (found.isEmpty()) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found.");
+        }
+        return found.get(locationId);
+    }
+
+    @Override
+    public synchronized Map<String, String[]> getByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs cannot be null.");
+        }
+        Set<String> wanted = new LinkedHashSet<>(locationIds);
+        wanted.remove(null);
+        Map<String, String[]> byId = new HashMap<>();
+        try (PreparedStatement select = connection.prepareStatement("SELECT " + COLUMNS + " FROM LANDMARK WHERE ID = ANY(?)")) {
+            select.setArray(1, connection.createArrayOf("VARCHAR", wanted.toArray()));
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    String[] row = readRow(result);
+                    byId.put(row[0], row);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not look up locations", e);
+        }
+
+        Map<String, String[]> found = new LinkedHashMap<>();
+        for (String id : wanted) {
+            if (byId.containsKey(id)) {
+                found.put(id, byId.get(id));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public synchronized boolean containsId (String locationId) throws IOException {
+        try {
+            return exists(locationId);
+        } catch (SQLException e) {
+            throw new IOException("Could not look up location " + locationId, e);
+        }
+    }
+
+    private boolean exists (String id) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT 1 FROM LANDMARK WHERE ID = ?")) {
+            select.setString(1, id);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next();
+            }
+        }
+    }
+
+    @Override
+    public String getNextID () {
+        return LandmarkId.format(ids.next());
+    }
+
+    @Override
+    public synchronized List<String[]> readAllRecords () throws IOException {
+        return findRows(null, null);
+    }
+
+    /**
+     * Served by the province or category index when one is given.
+     */
+    @Override
+    public synchronized List<String[]> findRows (String province, String category) throws IOException {
+        boolean byProvince = province != null && !province.isBlank();
+        boolean byCategory = category != null && !category.isBlank();
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM LANDMARK WHERE TRUE");
+        if (byProvince) sql.append(" AND PROVINCE_KEY = LOWER(TRIM(?))");
+        if (byCategory) sql.append(" AND CATEGORY_KEY = LOWER(TRIM(?))");
+        sql.append(" ORDER BY SEQ");
+
+        List<String[]> rows = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(sql.toString())) {
+            int parameter = 1;
+            if (byProvince) select.setString(parameter++, province);
+            if (byCategory) select.setString(parameter, category);
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    rows.add(readRow(result));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Could not read locations", e);
+        }
+        return rows;
+    }
+
+    /**
+     * A province or category equality in the query is pushed down to its index (see
+     * {@link #findRows(String, String)}); the rest of the query is checked on what comes back.
+     */
+    @Override
+    public synchronized List<String[]> find (Query query) throws IOException {
+        List<String[]> rows = findRows(query.requiredValue(LandmarkCatalog.PROVINCE_COLUMN), query.requiredValue(LandmarkCatalog.CATEGORY_COLUMN));
+        rows.removeIf(row -> !query.matches(row));
+        return rows;
+    }
+
+    /**
+     * Reads all records up front; the stream holds no connection resources.
+     */
+    @Override
+    public Stream<LandmarkRecord> streamRecords () throws IOException {
+        return readAllRecords().stream().map(LandmarkRecord::fromRow);
+    }
+
+    @Override
+    public synchronized void close () throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Could not close embedded database " + databaseFile.getName(), e);
+        }
+    }
+
+    private static void bindRow (PreparedStatement statement, String[] row) throws SQLException {
+        for (int column = 0; column < EXPECTED_COLUMNS; column++) {
+            statement.setString(column + 1, row[column]);
+        }
+    }
+
+    private static String[] readRow (ResultSet result) throws SQLException {
+        String[] row = new String[EXPECTED_COLUMNS];
+        for (int column = 0; column < EXPECTED_COLUMNS; column++) {
+            row[column] = result.getString(column + 1);
+        }
+        return row;
+    }
+
+    private interface SqlWork<T> {
+        T run () throws SQLException;
+    }
+
+    /**
+     * Runs the work as one transaction, rolling back if it throws.
+     */
+    private <T> T inTransaction (SqlWork<T> work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            T result = work.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
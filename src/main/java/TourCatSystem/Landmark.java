@@ -1,44 +1,201 @@
 package TourCatSystem;
 
+/**
+ * Flyweight view of one row of a {@link LandmarkCatalog}. The instance holds no data of its
+ * own, only a row index into the catalog's column arrays, and can be moved from row to row:
+ * <pre>
+ * Landmark landmark = catalog.cursor();
+ * while (landmark.next()) {
+ *     if (landmark.getProvince() == Landmark.PROVINCE.ONTARIO) ... landmark.name() ...
+ * }
+ * </pre>
+ * {@link #id()}, {@link #name()} and {@link #city()} return reusable views into the catalog's
+ * string arena that follow the cursor, and province and category come from shared
+ * dictionaries, so such a loop allocates nothing per row. The {@code get} methods decode a
+ * {@link String} for values the caller keeps.
+ */
 public class Landmark {
-    int ID;
-    String GeographicalName;
-    String LandmarkName;
-    String City;
-    PROVINCE Province;
-    String Category;
+    private final LandmarkCatalog catalog;
+    private final StringArena.View id;
+    private final StringArena.View name;
+    private final StringArena.View city;
+    private int row = -1;
 
     public enum PROVINCE {
-        ONTARIO,
-        QUEBEC,
-        BRITISH_COLUMBIA,
-        ALBERTA,
-        MANITOBA,
-        SASKATCHEWAN,
-        NOVA_SCOTIA,
-        NEW_BRUNSWICK,
-        PRINCE_EDWARD_ISLAND,
-        NEWFOUNDLAND_AND_LABRADOR,
-        NORTHWEST_TERRITORIES,
-        YUKON,
-        NUNAVUT
+        ONTARIO("Ontario"),
+        QUEBEC("Quebec"),
+        BRITISH_COLUMBIA("British Columbia"),
+        ALBERTA("Alberta"),
+        MANITOBA("Manitoba"),
+        SASKATCHEWAN("Saskatchewan"),
+        NOVA_SCOTIA("Nova Scotia"),
+        NEW_BRUNSWICK("New Brunswick"),
+        PRINCE_EDWARD_ISLAND("Prince Edward Island"),
+        NEWFOUNDLAND_AND_LABRADOR("Newfoundland and Labrador"),
+        NORTHWEST_TERRITORIES("Northwest Territories"),
+        YUKON("Yukon"),
+        NUNAVUT("Nunavut");
+
+        private static final PROVINCE[] VALUES = values();
+
+        private final String displayName;
+
+        PROVINCE (String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * @return The name as written in the database file, e.g. "British Columbia".
+         */
+        public String getDisplayName () {
+            return displayName;
+        }
+
+        /**
+         * @param name A province name as found in the file or picked in the GUI; case and
+         *             surrounding whitespace are ignored, underscores count as spaces.
+         * @return The province, or null if the name is not a known province.
+         */
+        public static PROVINCE fromName (String name) {
+            if (name == null) {
+                return null;
+            }
+            String normalized = name.trim().replace('_', ' ');
+            for (PROVINCE province : VALUES) {
+                if (province.displayName.equalsIgnoreCase(normalized)) {
+                    return province;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param ordinal A province code as stored by {@link LandmarkCatalog}.
+         * @return The province, or null if the code is past the enum (an unknown province).
+         */
+        public static PROVINCE fromOrdinal (int ordinal) {
+            return ordinal >= 0 && ordinal < VALUES.length ? VALUES[ordinal] : null;
+        }
     }
 
     public enum CATEGORYTYPE{
     }
 
-    Landmark(int ID, String GeoName, String LandmarkName, String city, PROVINCE PROVINCE, String category)
-    {
-        this.ID = ID;
-        this.GeographicalName = GeoName;
-        this.LandmarkName = LandmarkName;
-        this.City = city;
-        this.Province = PROVINCE;
-        this.Category = category;
+    Landmark (LandmarkCatalog catalog) {
+        this.catalog = catalog;
+        StringArena arena = catalog.arena();
+        this.id = arena.new View();
+        this.name = arena.new View();
+        this.city = arena.new View();
+    }
+
+    /**
+     * Moves to the following row.
+     *
+     * @return false once there are no more rows.
+     */
+    public boolean next () {
+        if (row + 1 >= catalog.getRowCount()) {
+            row = catalog.getRowCount();
+            return false;
+        }
+        moveTo(row + 1);
+        return true;
     }
 
+    /**
+     * @param row Row index.
+     * @return This flyweight, now on the given row.
+     * @throws IndexOutOfBoundsException If the catalog has no such row.
+     */
+    public Landmark moveTo (int row) {
+        if (row < 0 || row >= catalog.getRowCount()) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + catalog.getRowCount());
+        }
+        this.row = row;
+        id.moveTo(catalog.idRef(row));
+        name.moveTo(catalog.nameRef(row));
+        city.moveTo(catalog.cityRef(row));
+        return this;
+    }
 
+    /**
+     * @return The current row index.
+     */
+    public int getRow () {
+        return row;
+    }
 
+    /**
+     * @return The ID; the view follows the cursor to the next row.
+     */
+    public CharSequence id () {
+        return id;
+    }
 
-}
+    /**
+     * @return The name; the view follows the cursor to the next row.
+     */
+    public CharSequence name () {
+        return name;
+    }
+
+    /**
+     * @return The city; the view follows the cursor to the next row.
+     */
+    public CharSequence city () {
+        return city;
+    }
 
+    public String getId () {
+        return id.toString();
+    }
+
+    public String getName () {
+        return name.toString();
+    }
+
+    public String getCity () {
+        return city.toString();
+    }
+
+    /**
+     * @return The province, or null if the record names a province outside {@link PROVINCE}.
+     */
+    public PROVINCE getProvince () {
+        return catalog.getProvinceEnum(row);
+    }
+
+    /**
+     * @return The province as written in the file.
+     */
+    public String getProvinceName () {
+        return catalog.getProvince(row);
+    }
+
+    public String getCategory () {
+        return catalog.getCategory(row);
+    }
+
+    /**
+     * @param column A column index, e.g. {@link LandmarkCatalog#CITY_COLUMN}.
+     * @return That column of the current row; ID, Name and City are views that follow the cursor.
+     */
+    public CharSequence column (int column) {
+        return switch (column) {
+            case LandmarkCatalog.ID_COLUMN -> id;
+            case LandmarkCatalog.NAME_COLUMN -> name;
+            case LandmarkCatalog.CITY_COLUMN -> city;
+            case LandmarkCatalog.PROVINCE_COLUMN -> getProvinceName();
+            case LandmarkCatalog.CATEGORY_COLUMN -> getCategory();
+            default -> throw new IndexOutOfBoundsException("Column " + column);
+        };
+    }
+
+    /**
+     * @return The row as (ID, Name, City, Province, Category).
+     */
+    public String[] toRow () {
+        return catalog.getRow(row);
+    }
+}
@@ -0,0 +1,296 @@
+package TourCatSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, column-oriented copy of the landmark database used to populate catalog windows.
+ * <p>
+ * Each column is stored in its own array. Province and Category repeat heavily, so they are
+ * dictionary-encoded: the row holds a small integer code and the distinct values are kept once.
+ * A province code is the {@link Landmark.PROVINCE} ordinal; province names outside the enum
+ * get codes after it. Category codes index a dictionary of the categories found while loading.
+ * Filtering on either column therefore tests each distinct value once (see {@link BitmapIndex}).
+ * <p>
+ * ID, Name and City are int references into one shared {@link StringArena}, so the whole
+ * catalog is a handful of primitive arrays rather than a {@link String} per cell. A
+ * {@link Landmark} from {@link #cursor()} walks the rows as a reusable flyweight.
+ * <p>
+ * The columns are NIO buffers. A catalog parsed from the CSV wraps heap arrays; one loaded
+ * from a {@link CatalogSnapshot} keeps the snapshot's fixed-offset layout where
+ * {@link StorageConfig#CATALOG_MEMORY} says, which can be outside the Java heap entirely.
+ * Instances are built from the CSV (see {@link #fromCsv(File)}) or loaded from a binary
+ * {@link CatalogSnapshot}.
+ */
+public class LandmarkCatalog {
+
+    /**
+     * Where a catalog loaded from a snapshot keeps its columns.
+     */
+    public enum Memory {
+        /** In one heap array holding the snapshot. */
+        HEAP,
+        /** In a direct buffer, outside the Java heap; the garbage collector never scans the rows. */
+        OFF_HEAP,
+        /** Straight from the snapshot file mapped into memory; pages are loaded as rows are touched. */
+        MAPPED
+    }
+
+    // Column order, matches DatabaseManager
+    public static final int ID_COLUMN = 0;
+    public static final int NAME_COLUMN = 1;
+    public static final int CITY_COLUMN = 2;
+    public static final int PROVINCE_COLUMN = 3;
+    public static final int CATEGORY_COLUMN = 4;
+    public static final int COLUMN_COUNT = 5;
+
+    private final String[] header;
+    private final int rowCount;
+    private final StringArena arena;
+    private final IntBuffer idRefs;
+    private final IntBuffer nameRefs;
+    private final IntBuffer cityRefs;
+    private final IntBuffer provinceCodes;
+    private final IntBuffer categoryCodes;
+    private final String[] provinceDictionary;
+    private final String[] categoryDictionary;
+
+    LandmarkCatalog (String[] header, int rowCount, StringArena arena, IntBuffer idRefs, IntBuffer nameRefs, IntBuffer cityRefs,
+                     IntBuffer provinceCodes, IntBuffer categoryCodes, String[] provinceDictionary, String[] categoryDictionary) {
+        this.header = header;
+        this.rowCount = rowCount;
+        this.arena = arena;
+        this.idRefs = idRefs;
+        this.nameRefs = nameRefs;
+        this.cityRefs = cityRefs;
+        this.provinceCodes = provinceCodes;
+        this.categoryCodes = categoryCodes;
+        this.provinceDictionary = provinceDictionary;
+        this.categoryDictionary = categoryDictionary;
+    }
+
+    /**
+     * Parses the live rows of a CSV database file into a catalog (in parallel for large files,
+     * see {@link MappedCsvReader#readAllRows()}).
+     *
+     * @param csvFile The database file.
+     * @return The catalog.
+     * @throws IOException If the file cannot be read.
+     */
+    public static LandmarkCatalog fromCsv (File csvFile) throws IOException {
+        MappedCsvReader reader = MappedCsvReader.open(csvFile);
+        Builder builder = new Builder(reader.header());
+        // Parsing (the expensive part) runs in parallel; encoding stays sequential to keep codes stable
+        for (String[] row : reader.readAllRows()) {
+            builder.addRow(column(row, ID_COLUMN), column(row, NAME_COLUMN), column(row, CITY_COLUMN),
+                    column(row, PROVINCE_COLUMN), column(row, CATEGORY_COLUMN));
+        }
+        return builder.build();
+    }
+
+    private static String column (String[] row, int index) {
+        return index < row.length ? row[index] : null;
+    }
+
+    /**
+     * @param row A row as written in the file, e.g. one reported by {@link DatabaseWatcher}.
+     * @return A copy with the Province spelled the way the catalog stores it, so the row shows,
+     * matches and counts like the catalog's own rows.
+     */
+    public static String[] normalizeRow (String[] row) {
+        String[] normalized = row.clone();
+        if (PROVINCE_COLUMN < normalized.length && normalized[PROVINCE_COLUMN] != null) {
+            normalized[PROVINCE_COLUMN] = storedProvince(normalized[PROVINCE_COLUMN]);
+        }
+        return normalized;
+    }
+
+    /**
+     * @return The display name of a known province (see {@link Landmark.PROVINCE#fromName}),
+     * otherwise the value itself.
+     */
+    private static String storedProvince (String province) {
+        Landmark.PROVINCE known = Landmark.PROVINCE.fromName(province);
+        return known != null ? known.getDisplayName() : province;
+    }
+
+    public String[] getHeader () {
+        return header.clone();
+    }
+
+    public int getRowCount () {
+        return rowCount;
+    }
+
+    public String getId (int row) {
+        return arena.get(idRefs.get(row));
+    }
+
+    public String getName (int row) {
+        return arena.get(nameRefs.get(row));
+    }
+
+    public String getCity (int row) {
+        return arena.get(cityRefs.get(row));
+    }
+
+    public String getProvince (int row) {
+        return provinceDictionary[provinceCodes.get(row)];
+    }
+
+    public String getCategory (int row) {
+        return categoryDictionary[categoryCodes.get(row)];
+    }
+
+    /**
+     * @param row Row index.
+     * @return The province, or null if the row names a province outside the enum.
+     */
+    public Landmark.PROVINCE getProvinceEnum (int row) {
+        return Landmark.PROVINCE.fromOrdinal(provinceCodes.get(row));
+    }
+
+    /**
+     * @return A new flyweight positioned before the first row; call {@link Landmark#next()}
+     * to step through the rows.
+     */
+    public Landmark cursor () {
+        return new Landmark(this);
+    }
+
+    /**
+     * @param row Row index.
+     * @return A new flyweight on the given row.
+     */
+    public Landmark getLandmark (int row) {
+        return cursor().moveTo(row);
+    }
+
+    /**
+     * @param row Row index.
+     * @return The row as (ID, Name, City, Province, Category), e.g. for a table model.
+     */
+    public String[] getRow (int row) {
+        return new String[]{getId(row), getName(row), getCity(row), getProvince(row), getCategory(row)};
+    }
+
+    // --- Raw column access for Landmark, Filter and CatalogSnapshot ---
+
+    StringArena arena () {
+        return arena;
+    }
+
+    int idRef (int row) {
+        return idRefs.get(row);
+    }
+
+    int nameRef (int row) {
+        return nameRefs.get(row);
+    }
+
+    int cityRef (int row) {
+        return cityRefs.get(row);
+    }
+
+    int provinceCode (int row) {
+        return provinceCodes.get(row);
+    }
+
+    int categoryCode (int row) {
+        return categoryCodes.get(row);
+    }
+
+    /**
+     * @return The columns in snapshot order: ID, Name and City references, then Province and Category codes.
+     */
+    IntBuffer[] columns () {
+        return new IntBuffer[]{idRefs.duplicate(), nameRefs.duplicate(), cityRefs.duplicate(),
+                provinceCodes.duplicate(), categoryCodes.duplicate()};
+    }
+
+    String[] provinceDictionary () {
+        return provinceDictionary;
+    }
+
+    String[] categoryDictionary () {
+        return categoryDictionary;
+    }
+
+    /**
+     * Accumulates rows, storing the text columns in a {@link StringArena} and
+     * dictionary-encoding the Province and Category columns.
+     */
+    public static class Builder {
+        private final String[] header;
+        private int rowCount = 0;
+        private final StringArena.Builder arena = new StringArena.Builder();
+        private int[] idRefs = new int[64];
+        private int[] nameRefs = new int[64];
+        private int[] cityRefs = new int[64];
+        private int[] provinceCodes = new int[64];
+        private int[] categoryCodes = new int[64];
+        private final Map<String, Integer> provinceLookup = new HashMap<>();
+        private final Map<String, Integer> categoryLookup = new HashMap<>();
+        private final List<String> provinces = new ArrayList<>();
+        private final List<String> categories = new ArrayList<>();
+
+        public Builder (String[] header) {
+            this.header = header.clone();
+            // Province codes are the enum ordinals, so the known provinces come first
+            for (Landmark.PROVINCE province : Landmark.PROVINCE.values()) {
+                encode(province.getDisplayName(), provinceLookup, provinces);
+            }
+        }
+
+        public Builder addRow (String id, String name, String city, String province, String category) {
+            if (rowCount == idRefs.length) {
+                int capacity = rowCount * 2;
+                idRefs = Arrays.copyOf(idRefs, capacity);
+                nameRefs = Arrays.copyOf(nameRefs, capacity);
+                cityRefs = Arrays.copyOf(cityRefs, capacity);
+                provinceCodes = Arrays.copyOf(provinceCodes, capacity);
+                categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+            }
+            idRefs[rowCount] = arena.add(nullToEmpty(id));
+            nameRefs[rowCount] = arena.add(nullToEmpty(name));
+            cityRefs[rowCount] = arena.add(nullToEmpty(city));
+            provinceCodes[rowCount] = encodeProvince(nullToEmpty(province));
+            categoryCodes[rowCount] = encode(nullToEmpty(category), categoryLookup, categories);
+            rowCount++;
+            return this;
+        }
+
+        public LandmarkCatalog build () {
+            return new LandmarkCatalog(header, rowCount, arena.build(),
+                    IntBuffer.wrap(Arrays.copyOf(idRefs, rowCount)), IntBuffer.wrap(Arrays.copyOf(nameRefs, rowCount)),
+                    IntBuffer.wrap(Arrays.copyOf(cityRefs, rowCount)),
+                    IntBuffer.wrap(Arrays.copyOf(provinceCodes, rowCount)), IntBuffer.wrap(Arrays.copyOf(categoryCodes, rowCount)),
+                    provinces.toArray(new String[0]), categories.toArray(new String[0]));
+        }
+
+        private int encodeProvince (String value) {
+            Landmark.PROVINCE known = Landmark.PROVINCE.fromName(value);
+            return known != null ? known.ordinal() : encode(value, provinceLookup, provinces);
+        }
+
+        private static int encode (String value, Map<String, Integer> lookup, List<String> dictionary) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            return code;
+        }
+
+        private static String nullToEmpty (String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package TourCatSystem;
+
+import java.util.Arrays;
+
+/**
+ * Compact, time-ordered record IDs.
+ * <p>
+ * An ID is a non-negative 64-bit number laid out like a Snowflake ID:
+ * <pre>
+ * 41 bits  milliseconds since 2024-01-01T00:00:00Z
+ * 10 bits  node (one per process sharing the database, see {@link DatabaseLock#idGenerator()})
+ * 12 bits  sequence within the millisecond
+ * </pre>
+ * Its text form is 13 characters of Crockford base 32, zero-padded (e.g. {@code 0CQ6J0T2G000A}).
+ * The digits are in ASCII order, so the strings sort exactly like the numbers, i.e. in the
+ * order the IDs were generated.
+ * <p>
+ * Records written before these IDs existed keep their IDs (the bundled {@code 0001} style,
+ * or random UUIDs); every string that is not in the canonical text form above is such a
+ * legacy ID. {@link DatabaseManager#migrateLegacyIds()} converts them.
+ */
+public final class LandmarkId {
+
+    /** Length of the text form. */
+    public static final int LENGTH = 13;
+
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int NODES = 1 << NODE_BITS;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private LandmarkId () {
+    }
+
+    /**
+     * @param id A non-negative ID.
+     * @return Its 13-character text form.
+     */
+    public static String format (long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("IDs are non-negative: " + id);
+        }
+        char[] text = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            text[i] = DIGITS[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(text);
+    }
+
+    /**
+     * @param id A record ID as stored in the database.
+     * @return The numeric ID, or -1 if the string is a legacy ID.
+     */
+    public static long parse (String id) {
+        if (id == null || id.length() != LENGTH) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = c < 128 ? VALUES[c] : -1;
+            // 13 digits hold 65 bits; the first may only use the low 3 to keep the value non-negative
+            if (digit < 0 || (i == 0 && digit > 7)) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * @param id A record ID as stored in the database.
+     * @return true if it is a compact ID rather than a legacy one.
+     */
+    public static boolean isCompact (String id) {
+        return parse(id) >= 0;
+    }
+
+    /**
+     * @param id A numeric ID.
+     * @return The time it was generated, in milliseconds since the Unix epoch.
+     */
+    public static long timestampOf (long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * Issues strictly increasing IDs for one node. If the clock goes back or a millisecond's
+     * sequence numbers run out, the generator simply runs ahead of the clock until it catches up.
+     */
+    static final class Generator {
+        private final long node;
+        private long lastMillis = -1;
+        private long sequence;
+
+        /**
+         * @param node This generator's node number, {@code 0 <= node < }{@value #NODES}.
+         */
+        Generator (int node) {
+            if (node < 0 || node >= NODES) {
+                throw new IllegalArgumentException("Node must be between 0 and " + (NODES - 1) + ": " + node);
+            }
+            this.node = node;
+        }
+
+        /**
+         * @return A new ID, greater than every ID this generator issued before.
+         */
+        synchronized long next () {
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            if (now > lastMillis) {
+                lastMillis = now;
+                sequence = 0;
+            } else if (++sequence == 1 << SEQUENCE_BITS) {
+                lastMillis++;
+                sequence = 0;
+            }
+            return (lastMillis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | sequence;
+        }
+    }
+}
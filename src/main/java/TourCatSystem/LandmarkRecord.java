@@ -0,0 +1,81 @@
+package TourCatSystem;
+
+import java.util.Objects;
+
+/**
+ * One row of the landmark database, as handed out by {@link DatabaseManager#streamRecords()}.
+ * Immutable.
+ */
+public final class LandmarkRecord {
+
+    private final String id;
+    private final String name;
+    private final String city;
+    private final String province;
+    private final String category;
+
+    public LandmarkRecord (String id, String name, String city, String province, String category) {
+        this.id = id;
+        this.name = name;
+        this.city = city;
+        this.province = province;
+        this.category = category;
+    }
+
+    /**
+     * @param row A row in file order (ID, Name, City, Province, Category); missing columns become null.
+     * @return The record.
+     */
+    public static LandmarkRecord fromRow (String[] row) {
+        return new LandmarkRecord(column(row, 0), column(row, 1), column(row, 2), column(row, 3), column(row, 4));
+    }
+
+    private static String column (String[] row, int index) {
+        return index < row.length ? row[index] : null;
+    }
+
+    public String getId () {
+        return id;
+    }
+
+    public String getName () {
+        return name;
+    }
+
+    public String getCity () {
+        return city;
+    }
+
+    public String getProvince () {
+        return province;
+    }
+
+    public String getCategory () {
+        return category;
+    }
+
+    /**
+     * @return The record in file column order, e.g. for a table model row.
+     */
+    public String[] toRow () {
+        return new String[]{id, name, city, province, category};
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LandmarkRecord other)) return false;
+        return Objects.equals(id, other.id) && Objects.equals(name, other.name) && Objects.equals(city, other.city)
+                && Objects.equals(province, other.province) && Objects.equals(category, other.category);
+    }
+
+    @Override
+    public int hashCode () {
+        return Objects.hash(id, name, city, province, category);
+    }
+
+    @Override
+    public String toString () {
+        return String.join(",", toRow());
+    }
+}
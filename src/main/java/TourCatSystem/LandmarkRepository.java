@@ -0,0 +1,184 @@
+package TourCatSystem;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Storage for the landmark records, independent of how they are kept on disk.
+ * <p>
+ * Records are String arrays in column order (ID, Name, City, Province, Category), the ID
+ * being unique. The GUI only talks to this interface; which backend it gets is decided by
+ * {@link StorageConfig#STORAGE_BACKEND} when {@link #open(File)} is called.
+ */
+public interface LandmarkRepository extends Closeable {
+
+    /**
+     * Available storage backends.
+     */
+    enum Backend {
+        /** The CSV file itself, see {@link DatabaseManager}. */
+        CSV,
+        /** An embedded H2 database next to the CSV file, see {@link H2LandmarkRepository}. */
+        H2,
+        /** One CSV file per province, see {@link ShardedLandmarkRepository}. */
+        SHARDED
+    }
+
+    /**
+     * Opens the configured backend for the given database.
+     *
+     * @param databaseFile The CSV database. The H2 and sharded backends keep their own files
+     *                     next to it and import the CSV the first time they are opened.
+     * @return The repository; close it when done.
+     * @throws IOException If the storage cannot be opened or created.
+     */
+    static LandmarkRepository open (File databaseFile) throws IOException {
+        return switch (StorageConfig.storageBackend()) {
+            case CSV -> new DatabaseManager(databaseFile);
+            case H2 -> new H2LandmarkRepository(databaseFile);
+            case SHARDED -> new ShardedLandmarkRepository(databaseFile);
+        };
+    }
+
+    /**
+     * @return The column names, e.g. for a table model.
+     */
+    String[] getHeader ();
+
+    /**
+     * @param newLocationData The new record (ID, Name, City, Province, Category).
+     * @throws IOException                              If the record cannot be stored.
+     * @throws IllegalArgumentException                 If the record is null or incomplete.
+     * @throws DatabaseManager.DuplicateIdException     If a record with the same ID already exists.
+     */
+    void addRecord (String[] newLocationData) throws IOException;
+
+    /**
+     * Adds many records in one write.
+     *
+     * @param newRecords The records to add.
+     * @return The outcome for each record, in the order given (ADDED, INVALID or DUPLICATE).
+     * @throws IOException If writing fails; no outcome is reported then.
+     */
+    BatchResult addRecords (Collection<String[]> newRecords) throws IOException;
+
+    /**
+     * @param locationId The ID of the record to delete.
+     * @throws IOException                              If writing fails.
+     * @throws DatabaseManager.RecordNotFoundException  If no record has that ID.
+     */
+    void deleteById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException;
+
+    /**
+     * Deletes many records in one write.
+     *
+     * @param locationIds The IDs of the records to delete.
+     * @return The outcome for each ID, in the order given (DELETED, NOT_FOUND or INVALID).
+     * @throws IOException If writing fails.
+     */
+    BatchResult deleteByIds (Collection<String> locationIds) throws IOException;
+
+    /**
+     * @param locationId The ID of the record to update.
+     * @param fields     The new record; the ID must be unchanged.
+     * @throws IOException                              If writing fails.
+     * @throws DatabaseManager.RecordNotFoundException  If no record has that ID.
+     */
+    void updateRecord (String locationId, String[] fields) throws IOException, DatabaseManager.RecordNotFoundException;
+
+    /**
+     * @param locationId The ID of the record.
+     * @return The record.
+     * @throws IOException                              If reading fails.
+     * @throws DatabaseManager.RecordNotFoundException  If no record has that ID.
+     */
+    String[] getById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException;
+
+    /**
+     * @param locationIds The IDs to look up.
+     * @return The records found, keyed by ID in the order the IDs were given; unknown IDs are left out.
+     * @throws IOException If reading fails.
+     */
+    Map<String, String[]> getByIds (Collection<String> locationIds) throws IOException;
+
+    /**
+     * @param locationId A record ID.
+     * @return true if a record with that ID exists.
+     * @throws IOException If reading fails.
+     */
+    boolean containsId (String locationId) throws IOException;
+
+    /**
+     * @return A fresh ID for a new record.
+     */
+    String getNextID ();
+
+    /**
+     * @return Every record, in insertion order.
+     * @throws IOException If reading fails.
+     */
+    List<String[]> readAllRecords () throws IOException;
+
+    /**
+     * Selects the records of a province and/or category. Values are compared ignoring case
+     * and surrounding whitespace.
+     *
+     * @param province The province, or null/blank for any province.
+     * @param category The category, or null/blank for any category.
+     * @return The matching records, in insertion order.
+     * @throws IOException If reading fails.
+     */
+    List<String[]> findRows (String province, String category) throws IOException;
+
+    /**
+     * Selects the records matching a query. The default reads every record and checks each
+     * one; backends with indexes answer what they can from them.
+     *
+     * @param query The condition, see {@link Query}.
+     * @return The matching records, in insertion order.
+     * @throws IOException If reading fails.
+     */
+    default List<String[]> find (Query query) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        for (String[] row : readAllRecords()) {
+            if (query.matches(row)) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Selects the records matching a query as row numbers, see {@link RowSet}. The default
+     * wraps {@link #find(Query)} in a catalog of its own; the CSV backend answers from its
+     * resident catalog without materializing any record.
+     *
+     * @param query The condition, see {@link Query}.
+     * @return The matching rows, in insertion order.
+     * @throws IOException If reading fails.
+     */
+    default RowSet select (Query query) throws IOException {
+        return RowSet.of(getHeader(), find(query));
+    }
+
+    /**
+     * @return The records as a stream; close it if the backend holds resources for it.
+     * @throws IOException If reading fails.
+     */
+    Stream<LandmarkRecord> streamRecords () throws IOException;
+
+    /**
+     * Releases the backend's resources. The CSV backend holds none.
+     *
+     * @throws IOException If the backend cannot be closed cleanly.
+     */
+    @Override
+    default void close () throws IOException {
+    }
+}
@@ -0,0 +1,104 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resident, ID-keyed copy of the landmark records held by a {@link DatabaseManager}.
+ * <p>
+ * Records are kept in file order so the store can be written back out unchanged
+ * (apart from the edit that was made). Lookups, inserts and removals by ID are O(1).
+ * <p>
+ * City, Province and Category values go through a {@link StringPool} as records are added,
+ * so rows that share a value share one {@link String}.
+ * <p>
+ * The store itself never touches the disk - {@link DatabaseManager} is responsible
+ * for loading it once and for keeping the backing file in sync after each change.
+ */
+class LandmarkStore {
+
+    private final int idColumn;
+    private final Map<String, String[]> recordsById = new LinkedHashMap<>();
+    private final StringPool pool = new StringPool();
+
+    /**
+     * Creates an empty store.
+     *
+     * @param idColumn Index of the column holding the unique record ID.
+     */
+    LandmarkStore (int idColumn) {
+        this.idColumn = idColumn;
+    }
+
+    /**
+     * Adds or replaces a record, keyed on its ID column.
+     *
+     * @param row The record to store. Must contain the ID column.
+     * @return The record previously stored under the same ID, or null if there was none.
+     */
+    String[] put (String[] row) {
+        return recordsById.put(row[idColumn], pool.internColumns(row));
+    }
+
+    /**
+     * @param id The record ID.
+     * @return The stored record, or null if no record has that ID.
+     */
+    String[] get (String id) {
+        return recordsById.get(id);
+    }
+
+    /**
+     * @param id The record ID.
+     * @return true if a record with that ID is stored.
+     */
+    boolean contains (String id) {
+        return recordsById.containsKey(id);
+    }
+
+    /**
+     * Removes the record with the given ID.
+     *
+     * @param id The record ID.
+     * @return The removed record, or null if no record had that ID.
+     */
+    String[] remove (String id) {
+        return recordsById.remove(id);
+    }
+
+    /**
+     * @return A live, file-ordered view of all stored records.
+     */
+    Collection<String[]> records () {
+        return recordsById.values();
+    }
+
+    /**
+     * @return A copy of all stored records, in file order; callers may change the rows freely.
+     */
+    List<String[]> snapshot () {
+        List<String[]> copy = new ArrayList<>(recordsById.size());
+        for (String[] row : recordsById.values()) {
+            copy.add(row.clone());
+        }
+        return copy;
+    }
+
+    /**
+     * @return The pool the stored records' repeated values are interned in.
+     */
+    StringPool pool () {
+        return pool;
+    }
+
+    int size () {
+        return recordsById.size();
+    }
+
+    void clear () {
+        recordsById.clear();
+    }
+}
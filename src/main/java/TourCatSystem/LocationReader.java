@@ -1,13 +1,9 @@
 package TourCatSystem;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvValidationException;
-
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 
 //The location reader class will be the class responsible for reading from
@@ -19,26 +15,27 @@ public class LocationReader {
     public LocationReader(File file)
     {
 
-        try(CSVReader reader = new CSVReader(new FileReader(file))){
+        try {
+            // Opens from the binary snapshot; the CSV is only parsed if it changed since
+            LandmarkCatalog catalog = CatalogSnapshot.load(file);
 
-            String[] header = reader.readNext();
+            String[] header = catalog.getHeader();
 
             tableModel = new DefaultTableModel();
 
-            if (header != null)
+            if (header.length > 0)
             {
                 tableModel.setColumnIdentifiers(header);
             }
 
-            String[] line;
-            while((line = reader.readNext()) != null)
+            // Each row decodes its own City; the pool makes rows with the same city share one
+            StringPool pool = new StringPool();
+            for (int row = 0; row < catalog.getRowCount(); row++)
             {
-                tableModel.addRow(line);
+                tableModel.addRow(pool.internColumns(catalog.getRow(row)));
             }
 
-
-
-        } catch (IOException | CsvValidationException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
@@ -0,0 +1,142 @@
+package TourCatSystem;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Hash map from non-negative {@code long} keys to non-negative {@code long} values, stored in
+ * two primitive arrays (open addressing, linear probing). Used by {@link PrimaryKeyIndex} for
+ * compact {@link LandmarkId}s, which then cost 16 bytes per entry instead of a String, a Long
+ * and a map node.
+ * <p>
+ * -1 marks both a free slot and a missing value.
+ */
+final class LongOffsetMap {
+
+    private static final long FREE = -1;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    LongOffsetMap () {
+        allocate(16);
+    }
+
+    /**
+     * @return The value stored for the key, or -1 if there is none.
+     */
+    long get (long key) {
+        int slot = slotOf(key);
+        return keys[slot] == FREE ? FREE : values[slot];
+    }
+
+    /**
+     * @return The value previously stored for the key, or -1 if there was none.
+     */
+    long put (long key, long value) {
+        if (key < 0 || value < 0) {
+            throw new IllegalArgumentException("Keys and values must be non-negative");
+        }
+        int slot = slotOf(key);
+        if (keys[slot] != FREE) {
+            long previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return FREE;
+    }
+
+    /**
+     * @return The value that was stored for the key, or -1 if there was none.
+     */
+    long remove (long key) {
+        int slot = slotOf(key);
+        if (keys[slot] == FREE) {
+            return FREE;
+        }
+        long previous = values[slot];
+        size--;
+
+        // Shift later entries of the same probe run back, so lookups never stop at the hole
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = home(keys[next]);
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = FREE;
+        return previous;
+    }
+
+    int size () {
+        return size;
+    }
+
+    void clear () {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /**
+     * Calls the consumer for every entry, in no particular order.
+     */
+    void forEach (EntryConsumer consumer) throws IOException {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept (long key, long value) throws IOException;
+    }
+
+    private int slotOf (long key) {
+        int mask = keys.length - 1;
+        int slot = home(key);
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int home (long key) {
+        // Timestamp-major IDs differ mostly in their low bits; mix them all in anyway
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+
+    private void allocate (int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+    }
+
+    private void resize (int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+}
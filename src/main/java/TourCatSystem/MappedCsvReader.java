@@ -0,0 +1,678 @@
+package TourCatSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Shared, read-only view of a landmark CSV file.
+ * <p>
+ * The file is mapped with {@link FileChannel#map} (small files are simply read into one
+ * heap buffer, which is cheaper than a mapping) and rows are tokenized straight from the
+ * bytes. A {@link Cursor} is a flyweight: it only records where each field starts and ends,
+ * so scanning, comparing and searching rows allocates nothing per line. Strings are only
+ * decoded for the rows a caller actually keeps.
+ * <p>
+ * The cursor skips the header, blank lines and records hidden by {@link Tombstones}.
+ * Quoted fields (including {@code ""} escapes and embedded line breaks) are understood.
+ * <p>
+ * {@link #readAllRows()} parses large files in parallel: the data is cut into byte ranges
+ * that end on line boundaries, each range is parsed on the common {@link ForkJoinPool} and
+ * the ranges are stitched back together in file order.
+ * <p>
+ * A reader reflects the file as it was when {@link #open(File)} was called;
+ * {@link DatabaseManager} replaces the file atomically when rewriting it, so an existing
+ * mapping is never truncated underneath a reader.
+ * <p>
+ * That replacement is also why database files are only mapped where a mapped file may be
+ * renamed over. Windows refuses as long as any mapping of the file is live, and Java only
+ * unmaps a buffer once it has been garbage collected, so no reader could guarantee its
+ * mapping is gone before a rewrite. There the file is read into a heap buffer instead (see
+ * {@link #contents(FileChannel, long)}); tokenizing works the same on either.
+ */
+public final class MappedCsvReader {
+
+    // Below this size a plain read beats setting up a mapping
+    private static final int MAP_THRESHOLD = 64 * 1024;
+    // Windows cannot replace a file while a mapping of it is live
+    private static final boolean MAPPED_FILES_REPLACEABLE = !System.getProperty("os.name", "").startsWith("Windows");
+    // Below this much data a parallel parse costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final int dataStart; // Offset of the first line after the header
+    private final String[] header;
+    private Map<String, Integer> tombstones; // Deleted ID -> ordinal of its last tombstone, built lazily
+
+    private MappedCsvReader (ByteBuffer buffer) {
+        this(buffer, true);
+    }
+
+    private MappedCsvReader (ByteBuffer buffer, boolean hasHeader) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        if (!hasHeader) {
+            this.header = new String[0];
+            this.dataStart = 0;
+            return;
+        }
+
+        int start = 0;
+        // Skip a UTF-8 byte order mark if an editor added one
+        if (limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            start = 3;
+        }
+
+        Cursor headerCursor = new Cursor(start);
+        if (headerCursor.parseAt(start)) {
+            this.header = headerCursor.toArray();
+            this.dataStart = headerCursor.nextPos;
+        } else {
+            this.header = new String[0];
+            this.dataStart = limit;
+        }
+    }
+
+    /**
+     * Maps (or, for small files, reads) the given CSV file. A file packed by
+     * {@link DatabaseManager#pack()} is decompressed into memory first, so callers never
+     * need to know which format the file is in.
+     *
+     * @param file The CSV file to read.
+     * @return A reader over the file's current contents.
+     * @throws IOException If the file cannot be opened or is too large to map.
+     */
+    public static MappedCsvReader open (File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            BlockCompressedFile packed = BlockCompressedFile.openIfCompressed(channel);
+            if (packed != null) {
+                return new MappedCsvReader(ByteBuffer.wrap(packed.readAll()));
+            }
+
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Database file is too large to map: " + file.getAbsolutePath());
+            }
+            return new MappedCsvReader(contents(channel, size));
+        }
+    }
+
+    /**
+     * Maps the first {@code size} bytes of a database file, or reads them into a heap buffer
+     * if the file is small or the platform could then not replace it (see the class comment).
+     * Shared with the other readers of database files, {@link BlockCompressedFile} and
+     * {@link SlotAllocator}.
+     *
+     * @param channel The open file; it may be closed once this returns.
+     * @param size    Bytes to read, at most {@link Integer#MAX_VALUE}.
+     * @return The contents, positioned at 0.
+     * @throws IOException If the file cannot be read.
+     */
+    static ByteBuffer contents (FileChannel channel, long size) throws IOException {
+        if (size >= MAP_THRESHOLD && MAPPED_FILES_REPLACEABLE) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+            // Keep reading until the buffer is full or EOF
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Reader over a run of whole lines without a header, e.g. one block of a packed file.
+     *
+     * @param lines The bytes; offsets given to {@link #rawCursor(long)} are relative to their start.
+     * @return The reader.
+     */
+    static MappedCsvReader ofLines (ByteBuffer lines) {
+        return new MappedCsvReader(lines, false);
+    }
+
+    /**
+     * Cuts the file into blocks of about {@code blockSize} bytes of data that end on line
+     * boundaries, the header being part of the first block.
+     *
+     * @return Block start offsets (the first is 0), followed by the end of the file.
+     */
+    int[] lineAlignedBlocks (int blockSize) {
+        int parts = Math.max(1, (int) Math.ceil((double) (limit - dataStart) / blockSize));
+        int[] bounds = lineAlignedBounds(parts);
+        int[] blocks = new int[bounds.length];
+        int count = 1; // blocks[0] = 0
+        for (int i = 1; i < bounds.length; i++) { // bounds[0] is dataStart, which stays inside the first block
+            if (bounds[i] > blocks[count - 1]) {
+                blocks[count++] = bounds[i];
+            }
+        }
+        if (count == 1) {
+            blocks[count++] = limit; // Empty file: a single empty block
+        }
+        return Arrays.copyOf(blocks, count);
+    }
+
+    /**
+     * @return A read-only view of the file's bytes.
+     */
+    ByteBuffer bytes () {
+        return buffer.asReadOnlyBuffer().position(0).limit(limit);
+    }
+
+    /**
+     * @return The header row, or an empty array if the file is empty.
+     */
+    public String[] header () {
+        return header.clone();
+    }
+
+    /**
+     * @return A new cursor positioned before the first live data row.
+     */
+    public Cursor cursor () {
+        if (tombstones == null) {
+            tombstones = collectTombstones();
+        }
+        return new Cursor(dataStart);
+    }
+
+    /**
+     * Cursor that returns every non-blank line from {@code offset} on, tombstones included,
+     * for callers that apply the tombstone rule themselves (see {@link PrimaryKeyIndex}).
+     *
+     * @param offset Byte offset of a line start; values before the first data line are moved to it.
+     * @return A new raw cursor.
+     */
+    Cursor rawCursor (long offset) {
+        Cursor cursor = new Cursor((int) Math.min(Math.max(offset, dataStart), limit));
+        cursor.raw = true;
+        return cursor;
+    }
+
+    /**
+     * Lazily converts live rows into records as the stream pulls them. Short-circuiting
+     * operations such as {@code limit} or {@code findFirst} stop the scan early, and at no
+     * point is more than the current row held on the heap.
+     *
+     * @return An ordered, sequential stream of the file's live records.
+     */
+    public Stream<LandmarkRecord> records () {
+        Cursor cursor = cursor();
+        Spliterator<LandmarkRecord> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+            @Override
+            public boolean tryAdvance (Consumer<? super LandmarkRecord> action) {
+                if (!cursor.next()) {
+                    return false;
+                }
+                action.accept(new LandmarkRecord(cursor.fieldString(0), cursor.fieldString(1), cursor.fieldString(2),
+                        cursor.fieldString(3), cursor.fieldString(4)));
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Decodes every live row, in file order. Files of a megabyte or more are split into
+     * line-aligned byte ranges that are parsed concurrently on the common fork-join pool.
+     *
+     * @return The live rows (ID, Name, City, Province, Category), each as a new array.
+     */
+    public List<String[]> readAllRows () {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int dataLength = limit - dataStart;
+        if (dataLength < PARALLEL_THRESHOLD) {
+            List<String[]> rows = new ArrayList<>();
+            Cursor cursor = cursor();
+            while (cursor.next()) {
+                rows.add(cursor.toArray());
+            }
+            return rows;
+        }
+
+        // A few ranges per worker so an uneven range does not leave cores idle
+        int parts = Math.max(2, Math.min(parallelism * 4, dataLength / MIN_CHUNK_BYTES));
+        int[] bounds = lineAlignedBounds(parts);
+        List<ParseRange> ranges = new ArrayList<>(parts);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            if (bounds[i] < bounds[i + 1]) {
+                ranges.add(new ParseRange(bounds[i], bounds[i + 1]));
+            }
+        }
+        ForkJoinTask.invokeAll(ranges); // Runs on the common pool
+
+        // Stitch in order, then apply tombstones: a row is hidden by a tombstone further down
+        Map<String, Integer> deletedAt = new HashMap<>();
+        int rowCount = 0;
+        for (ParseRange range : ranges) {
+            deletedAt.putAll(range.tombstones); // Later ranges overwrite earlier positions
+            rowCount += range.rows.size();
+        }
+        List<String[]> rows = new ArrayList<>(rowCount);
+        for (ParseRange range : ranges) {
+            for (int k = 0; k < range.rows.size(); k++) {
+                String[] row = range.rows.get(k);
+                Integer tombstone = deletedAt.isEmpty() ? null : deletedAt.get(row[0]);
+                if (tombstone == null || tombstone < range.offsets[k]) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Cuts the data into {@code parts} ranges that start at line starts. A line break inside a
+     * quoted field is not a boundary. Only a quote at the start of a field opens one (the
+     * writer does not quote, so a name may well contain a stray {@code "}), so the ranges are
+     * first checked in parallel for such quotes. Without any, every line break is a boundary;
+     * otherwise the cuts are placed by walking the lines with the parser itself.
+     *
+     * @return Range start offsets, followed by the end of the data.
+     */
+    private int[] lineAlignedBounds (int parts) {
+        int dataLength = limit - dataStart;
+        int[] cuts = new int[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            cuts[i] = dataStart + (int) ((long) dataLength * i / parts);
+        }
+
+        List<RecursiveTask<Boolean>> checks = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            int from = cuts[i];
+            int to = cuts[i + 1];
+            checks.add(new RecursiveTask<>() {
+                @Override
+                protected Boolean compute () {
+                    for (int k = from; k < to; k++) {
+                        if (buffer.get(k) == '"' && (k == dataStart || buffer.get(k - 1) == ',' || buffer.get(k - 1) == '\n')) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(checks);
+        boolean quotedFields = false;
+        for (RecursiveTask<Boolean> check : checks) {
+            quotedFields |= check.join();
+        }
+
+        int[] bounds = new int[parts + 1];
+        bounds[0] = dataStart;
+        bounds[parts] = limit;
+        Cursor scan = new Cursor(dataStart);
+        int pos = dataStart;
+        for (int i = 1; i < parts; i++) {
+            if (quotedFields) {
+                // Whole lines only, so a quoted line break is stepped over
+                while (pos < cuts[i] && scan.parseAt(pos)) {
+                    pos = scan.nextPos;
+                }
+            } else {
+                // Move forward to just past the next line break
+                pos = Math.max(pos, cuts[i]);
+                while (pos < limit && buffer.get(pos++) != '\n') {
+                    // Skip the rest of the line
+                }
+            }
+            bounds[i] = Math.min(pos, limit);
+        }
+        return bounds;
+    }
+
+    /**
+     * Parses the lines starting in [{@code start}, {@code end}), keeping tombstones apart.
+     */
+    private final class ParseRange extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final transient List<String[]> rows = new ArrayList<>();
+        private int[] offsets = new int[64];
+        private final transient Map<String, Integer> tombstones = new HashMap<>();
+
+        ParseRange (int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Void compute () {
+            Cursor cursor = rawCursor(start);
+            while (cursor.next() && cursor.lineStart < end) {
+                if (cursor.isTombstone()) {
+                    tombstones.put(cursor.fieldString(0).substring(Tombstones.MARKER.length()), cursor.lineStart);
+                    continue;
+                }
+                if (rows.size() == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[rows.size()] = cursor.lineStart;
+                rows.add(cursor.toArray());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * First pass over the data: find every tombstone and remember the last position it
+     * appears at, so the cursor can tell whether a row was deleted after it was written.
+     */
+    private Map<String, Integer> collectTombstones () {
+        Map<String, Integer> found = new HashMap<>();
+        Cursor scan = new Cursor(dataStart);
+        int pos = dataStart;
+        while (scan.parseAt(pos)) {
+            pos = scan.nextPos;
+            if (scan.isBlank()) continue;
+            if (scan.fieldLength(0) > 0 && scan.byteAt(0, 0) == Tombstones.MARKER.charAt(0)) {
+                String id = scan.fieldString(0);
+                found.put(id.substring(Tombstones.MARKER.length()), scan.ordinal);
+            }
+            scan.ordinal++;
+        }
+        return found;
+    }
+
+    /**
+     * Flyweight over the current row. Field accessors are only valid until the next call
+     * to {@link #next()}; use {@link #toArray()} or {@link #lineString()} to keep a row.
+     */
+    public final class Cursor {
+
+        private int pos; // Start of the next unread line
+        private int nextPos;
+        private int lineStart;
+        private int lineEnd;
+        private int ordinal = 0; // Index among non-blank data lines, tombstones included
+        private int fieldCount;
+        private int[] fieldStart = new int[8];
+        private int[] fieldEnd = new int[8];
+        private boolean[] fieldEscaped = new boolean[8]; // Quoted field containing "" escapes
+        private byte[] scratch = new byte[256];
+        private boolean raw = false; // Return tombstones and hidden rows as well
+
+        private Cursor (int pos) {
+            this.pos = pos;
+        }
+
+        /**
+         * Advances to the next live data row.
+         *
+         * @return false once the end of the file is reached.
+         */
+        public boolean next () {
+            while (parseAt(pos)) {
+                pos = nextPos;
+                if (isBlank()) continue;
+
+                int rowOrdinal = ordinal++;
+                if (raw) return true;
+                if (fieldLength(0) > 0 && byteAt(0, 0) == Tombstones.MARKER.charAt(0)) continue;
+                if (!tombstones.isEmpty()) {
+                    Integer deletedAt = tombstones.get(fieldString(0));
+                    if (deletedAt != null && deletedAt > rowOrdinal) continue;
+                }
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Tokenizes the line starting at {@code start}.
+         *
+         * @return false if {@code start} is at the end of the data.
+         */
+        private boolean parseAt (int start) {
+            if (start >= limit) {
+                return false;
+            }
+            fieldCount = 0;
+            lineStart = start;
+            int i = start;
+            while (true) {
+                if (i < limit && buffer.get(i) == '"') {
+                    int s = i + 1;
+                    int j = s;
+                    boolean escaped = false;
+                    while (j < limit) {
+                        if (buffer.get(j) == '"') {
+                            if (j + 1 < limit && buffer.get(j + 1) == '"') {
+                                escaped = true;
+                                j += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        j++;
+                    }
+                    addField(s, Math.min(j, limit), escaped);
+                    i = j + 1;
+                    // Ignore anything between the closing quote and the separator (e.g. '\r')
+                    while (i < limit && buffer.get(i) != ',' && buffer.get(i) != '\n') i++;
+                } else {
+                    int s = i;
+                    while (i < limit) {
+                        byte b = buffer.get(i);
+                        if (b == ',' || b == '\n') break;
+                        i++;
+                    }
+                    int e = i;
+                    if (e > s && buffer.get(e - 1) == '\r') e--;
+                    addField(s, e, false);
+                }
+
+                if (i >= limit || buffer.get(i) == '\n') {
+                    int end = Math.min(i, limit);
+                    lineEnd = (end > lineStart && buffer.get(end - 1) == '\r') ? end - 1 : end;
+                    nextPos = i + 1;
+                    return true;
+                }
+                i++; // Skip the separator
+            }
+        }
+
+        private void addField (int start, int end, boolean escaped) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+                fieldEscaped = Arrays.copyOf(fieldEscaped, fieldCount * 2);
+            }
+            fieldStart[fieldCount] = start;
+            fieldEnd[fieldCount] = end;
+            fieldEscaped[fieldCount] = escaped;
+            fieldCount++;
+        }
+
+        /**
+         * @return Byte offset of the current row in the file.
+         */
+        long lineOffset () {
+            return lineStart;
+        }
+
+        /**
+         * @return Byte offset just past the current row's line break.
+         */
+        long nextLineOffset () {
+            return Math.min(nextPos, limit);
+        }
+
+        /**
+         * @return false if the current row runs to the end of the file without a line break,
+         * e.g. because a writer is still in the middle of appending it.
+         */
+        boolean lineTerminated () {
+            return nextPos <= limit;
+        }
+
+        /**
+         * @return true if the current row is a tombstone (only returned by raw cursors).
+         */
+        boolean isTombstone () {
+            return fieldLength(0) > 0 && byteAt(0, 0) == Tombstones.MARKER.charAt(0);
+        }
+
+        private boolean isBlank () {
+            return fieldCount == 1 && fieldEnd[0] == fieldStart[0] && lineEnd - lineStart == 0;
+        }
+
+        /**
+         * @return Number of fields in the current row.
+         */
+        public int fieldCount () {
+            return fieldCount;
+        }
+
+        /**
+         * @param column Field index.
+         * @return Length of the field in bytes, or 0 if the row has no such field.
+         */
+        public int fieldLength (int column) {
+            return column < fieldCount ? fieldEnd[column] - fieldStart[column] : 0;
+        }
+
+        private byte byteAt (int column, int offset) {
+            return buffer.get(fieldStart[column] + offset);
+        }
+
+        /**
+         * Compares a field to a value, ignoring case and surrounding whitespace,
+         * without decoding the field.
+         *
+         * @param column Field index.
+         * @param value  The value to compare with.
+         * @return true if the field exists and matches.
+         */
+        public boolean fieldEqualsIgnoreCase (int column, String value) {
+            if (column >= fieldCount || value == null) {
+                return false;
+            }
+            String target = value.trim();
+            if (fieldEscaped[column] || !isAscii(target)) {
+                return fieldString(column).trim().equalsIgnoreCase(target);
+            }
+
+            int s = fieldStart[column];
+            int e = fieldEnd[column];
+            while (s < e && isSpace(buffer.get(s))) s++;
+            while (e > s && isSpace(buffer.get(e - 1))) e--;
+            if (e - s != target.length()) {
+                return false;
+            }
+            for (int k = 0; k < target.length(); k++) {
+                if (lowerAscii(buffer.get(s + k)) != lowerAscii((byte) target.charAt(k))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Case-insensitive substring search over the raw line, without decoding it.
+         *
+         * @param query The text to look for.
+         * @return true if the line contains the query.
+         */
+        public boolean lineContainsIgnoreCase (String query) {
+            if (query == null || query.isEmpty()) {
+                return true;
+            }
+            if (!isAscii(query)) {
+                return lineString().toLowerCase().contains(query.toLowerCase());
+            }
+
+            int n = query.length();
+            int last = lineEnd - n;
+            for (int i = lineStart; i <= last; i++) {
+                int k = 0;
+                while (k < n && lowerAscii(buffer.get(i + k)) == lowerAscii((byte) query.charAt(k))) k++;
+                if (k == n) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param column Field index.
+         * @return The decoded field, or null if the row has no such field.
+         */
+        public String fieldString (int column) {
+            if (column >= fieldCount) {
+                return null;
+            }
+            String value = decode(fieldStart[column], fieldEnd[column]);
+            return fieldEscaped[column] ? value.replace("\"\"", "\"") : value;
+        }
+
+        /**
+         * @return All fields of the current row, decoded.
+         */
+        public String[] toArray () {
+            String[] row = new String[fieldCount];
+            for (int k = 0; k < fieldCount; k++) {
+                row[k] = fieldString(k);
+            }
+            return row;
+        }
+
+        /**
+         * @return The current row exactly as written in the file (without the line break).
+         */
+        public String lineString () {
+            return decode(lineStart, lineEnd);
+        }
+
+        private String decode (int start, int end) {
+            int length = end - start;
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+            }
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(start, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean isAscii (String value) {
+        for (int k = 0; k < value.length(); k++) {
+            if (value.charAt(k) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpace (byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static byte lowerAscii (byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+}
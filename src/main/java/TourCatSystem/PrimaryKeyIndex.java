@@ -0,0 +1,449 @@
+package TourCatSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent hash index from record ID to the byte offset of the record's line in the
+ * CSV database, kept next to it (e.g. {@code userdata_database.csv.idx}).
+ * <p>
+ * The index remembers how much of the CSV it covers. When the file has only grown since
+ * (an add, or a tombstone appended in {@link DatabaseManager.StorageMode#APPEND_LOG} mode)
+ * just the new tail is scanned; any other change rebuilds the index from scratch.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * int    magic, int version
+ * long   covered CSV length, long covered CSV last-modified time
+ * long   CRC32 of the last bytes covered (detects a rewrite that happens to be longer)
+ * int    dead line count
+ * long   length of the entry log that follows
+ * entry  '+' (int length + UTF-8 ID, long offset) or '-' (int length + UTF-8 ID) for legacy IDs,
+ *        '#' (long ID, long offset) or '/' (long ID) for compact {@link LandmarkId}s
+ * </pre>
+ * Compact IDs are also kept as primitive longs in memory ({@link LongOffsetMap}); only
+ * legacy string IDs need a {@link HashMap} entry.
+ * New entries are appended to the log and the header is updated afterwards, so a crash
+ * in between only loses entries the next tail scan recreates. Once the log holds many
+ * more entries than live IDs it is rewritten compactly.
+ * <p>
+ * The index file is shared by every manager of the database, so it is only ever written
+ * under the database's {@link DatabaseLock}. Readers catching up never wait for that lock:
+ * if it is busy they keep their changes in memory and leave the file to the next update
+ * that finds the lock free, which then writes the whole map. Even under the lock another
+ * manager may have rewritten the file since this one loaded it; an append therefore first
+ * checks that the file still ends where this instance's log does, and writes the whole map
+ * instead if it does not.
+ * <p>
+ * The dead line count (deleted rows, tombstones and overwritten duplicates) is kept here
+ * as well, since this is the one place that sees every line of the file.
+ */
+final class PrimaryKeyIndex {
+
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x54434958; // "TCIX"
+    private static final int VERSION = 2; // 2: compact IDs stored as longs
+    private static final int HEADER_BYTES = 44;
+    private static final int TAIL_PROBE_BYTES = 64;
+    private static final byte PUT = '+';
+    private static final byte REMOVE = '-';
+    private static final byte PUT_COMPACT = '#';
+    private static final byte REMOVE_COMPACT = '/';
+
+    private final File csvFile;
+    private final File indexFile;
+    private final LongOffsetMap compactOffsets = new LongOffsetMap();
+    private final Map<String, Long> legacyOffsets = new HashMap<>();
+    private int deadRecords = 0;
+
+    // CSV state the index reflects
+    private long coveredLength = 0;
+    private long coveredLastModified = -1;
+    private long tailChecksum = 0;
+
+    // Entries not yet written to the index file
+    private final ByteArrayOutputStream pendingBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pending = new DataOutputStream(pendingBytes);
+    private long entryLogBytes = 0;
+    private int loggedEntries = 0;
+    private boolean rewriteNeeded = true;
+
+    private PrimaryKeyIndex (File csvFile) {
+        this.csvFile = csvFile;
+        this.indexFile = new File(csvFile.getAbsolutePath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Loads the index for a CSV database and brings it up to date with the file.
+     * A missing or unreadable index file is rebuilt.
+     *
+     * @param csvFile The CSV database file.
+     * @return The index.
+     * @throws IOException If the CSV cannot be read.
+     */
+    static PrimaryKeyIndex open (File csvFile) throws IOException {
+        PrimaryKeyIndex index = new PrimaryKeyIndex(csvFile);
+        if (index.indexFile.isFile()) {
+            try {
+                index.load();
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+                System.err.println("Warning: Rebuilding unreadable index " + index.indexFile.getName() + ": " + e.getMessage());
+                index.reset();
+            }
+        }
+        index.sync();
+        return index;
+    }
+
+    /**
+     * @param id A record ID.
+     * @return true if a live record with that ID exists.
+     */
+    boolean contains (String id) {
+        return offsetOf(id) != null;
+    }
+
+    /**
+     * @param id A record ID.
+     * @return Byte offset of the record's line in the CSV, or null if there is no such record.
+     */
+    Long offsetOf (String id) {
+        long key = LandmarkId.parse(id);
+        if (key < 0) {
+            return legacyOffsets.get(id);
+        }
+        long offset = compactOffsets.get(key);
+        return offset < 0 ? null : offset;
+    }
+
+    /**
+     * @return Number of live records.
+     */
+    int size () {
+        return compactOffsets.size() + legacyOffsets.size();
+    }
+
+    /**
+     * @return Lines in the CSV that no longer hold a live record.
+     */
+    int deadRecords () {
+        return deadRecords;
+    }
+
+    /**
+     * Catches up with the CSV if it changed since the index was last updated:
+     * a scan of the appended tail if the file only grew, otherwise a full rebuild.
+     *
+     * @return true if the file had changed.
+     * @throws IOException If the CSV cannot be read.
+     */
+    boolean sync () throws IOException {
+        long length = csvFile.length();
+        long lastModified = csvFile.lastModified();
+        if (length == coveredLength && lastModified == coveredLastModified) {
+            return false;
+        }
+
+        if (coveredLength > 0 && length > coveredLength && checksumBefore(csvFile, coveredLength) == tailChecksum) {
+            scanFrom(coveredLength);
+        } else {
+            reset();
+            scanFrom(0);
+        }
+        cover(length, lastModified);
+        return true;
+    }
+
+    /**
+     * Rebuilds the index from scratch, e.g. after the CSV has been rewritten.
+     *
+     * @throws IOException If the CSV cannot be read.
+     */
+    void rebuild () throws IOException {
+        reset();
+        scanFrom(0);
+        cover(csvFile.length(), csvFile.lastModified());
+    }
+
+    /**
+     * Records that a record was moved by an in-place update ({@link SlotAllocator}).
+     * Call {@link #coverCurrentState()} once the file write is done.
+     *
+     * @param id     ID of an existing record.
+     * @param offset The record's new line offset.
+     */
+    void moved (String id, long offset) throws IOException {
+        put(id, offset);
+        logEntry(PUT, id, offset);
+    }
+
+    /**
+     * Accepts the file's current state as covered without scanning it, for writes whose
+     * effect the owner has already applied to the index (in-place updates change bytes
+     * in the middle of the file, which {@link #sync()} would treat as a rewrite).
+     */
+    void coverCurrentState () throws IOException {
+        cover(csvFile.length(), csvFile.lastModified());
+    }
+
+    private void reset () {
+        compactOffsets.clear();
+        legacyOffsets.clear();
+        deadRecords = 0;
+        coveredLength = 0;
+        coveredLastModified = -1;
+        pendingBytes.reset();
+        rewriteNeeded = true;
+    }
+
+    /**
+     * Applies every line from {@code offset} on, following the same tombstone rule as
+     * {@link MappedCsvReader}: a tombstone removes the ID, a later row re-adds it.
+     */
+    private void scanFrom (long offset) throws IOException {
+        if (csvFile.length() == 0) {
+            return;
+        }
+        MappedCsvReader.Cursor cursor = MappedCsvReader.open(csvFile).rawCursor(offset);
+        while (cursor.next()) {
+            String id = cursor.fieldString(0);
+            if (cursor.isTombstone()) {
+                String deletedId = id.substring(Tombstones.MARKER.length());
+                // The tombstone and the row it hides are both dead
+                deadRecords += remove(deletedId) ? 2 : 1;
+                logEntry(REMOVE, deletedId, 0);
+            } else {
+                long lineOffset = cursor.lineOffset();
+                Long previous = put(id, lineOffset);
+                if (previous != null && previous != lineOffset) {
+                    // Only expected when a record was re-added after a tombstone was compacted away
+                    System.err.println("Warning: Duplicate ID '" + id + "' in database, keeping the last occurrence.");
+                    deadRecords++;
+                }
+                logEntry(PUT, id, lineOffset);
+            }
+        }
+    }
+
+    /**
+     * @return The record's previous offset, or null if the ID was not indexed.
+     */
+    private Long put (String id, long offset) {
+        long key = LandmarkId.parse(id);
+        if (key < 0) {
+            return legacyOffsets.put(id, offset);
+        }
+        long previous = compactOffsets.put(key, offset);
+        return previous < 0 ? null : previous;
+    }
+
+    /**
+     * @return true if the ID was indexed.
+     */
+    private boolean remove (String id) {
+        long key = LandmarkId.parse(id);
+        return key < 0 ? legacyOffsets.remove(id) != null : compactOffsets.remove(key) >= 0;
+    }
+
+    private void logEntry (byte op, String id, long offset) throws IOException {
+        if (rewriteNeeded) {
+            return; // The whole map is written out anyway
+        }
+        long key = LandmarkId.parse(id);
+        if (key >= 0) {
+            pending.writeByte(op == PUT ? PUT_COMPACT : REMOVE_COMPACT);
+            pending.writeLong(key);
+        } else {
+            byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+            pending.writeByte(op);
+            pending.writeInt(idBytes.length);
+            pending.write(idBytes);
+        }
+        if (op == PUT) {
+            pending.writeLong(offset);
+        }
+        loggedEntries++;
+    }
+
+    /**
+     * Records the CSV state now covered and persists the changes if the write lock is free
+     * (or already held by this thread, as it is for writers). Failing to write the index is
+     * not fatal: it is derived data and simply gets rebuilt next time.
+     */
+    private void cover (long length, long lastModified) throws IOException {
+        coveredLength = length;
+        coveredLastModified = lastModified;
+        tailChecksum = checksumBefore(csvFile, length);
+
+        try {
+            DatabaseLock.Hold hold = DatabaseLock.forDatabase(csvFile).tryAcquire();
+            if (hold == null) {
+                rewriteNeeded = true; // Another writer is busy; the next cover writes everything
+            } else {
+                try {
+                    if (rewriteNeeded || loggedEntries > 2 * size() + 1024 || !appendPending()) {
+                        writeFull();
+                    }
+                } finally {
+                    hold.close();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not write index " + indexFile.getName() + ": " + e.getMessage());
+            rewriteNeeded = true;
+        }
+        pendingBytes.reset();
+    }
+
+    /**
+     * CRC32 of the (up to) {@value #TAIL_PROBE_BYTES} bytes before {@code end}. If it still
+     * matches after the file grew, the file was appended to rather than rewritten.
+     *
+     * @return The checksum, or -1 if the file is shorter than {@code end}.
+     */
+    static long checksumBefore (File csvFile, long end) throws IOException {
+        if (end <= 0 || csvFile.length() < end) {
+            return -1;
+        }
+        int length = (int) Math.min(TAIL_PROBE_BYTES, end);
+        ByteBuffer probe = ByteBuffer.allocate(length);
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            while (probe.hasRemaining() && channel.read(probe, end - length + probe.position()) >= 0) {
+                // Keep reading until the probe is full
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(probe.array(), 0, probe.position());
+        return crc.getValue();
+    }
+
+    // --- Index file ---
+
+    private void load () throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath()));
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not an ID index (or an older format)");
+        }
+        long length = buffer.getLong();
+        long lastModified = buffer.getLong();
+        long checksum = buffer.getLong();
+        int dead = buffer.getInt();
+        long logBytes = buffer.getLong();
+        if (logBytes < 0 || HEADER_BYTES + logBytes > buffer.limit()) {
+            throw new IOException("Truncated entry log");
+        }
+
+        // Only the part of the log the header vouches for; anything after it is an interrupted append
+        buffer.limit((int) (HEADER_BYTES + logBytes));
+        int entries = 0;
+        while (buffer.hasRemaining()) {
+            byte op = buffer.get();
+            if (op == PUT_COMPACT) {
+                long key = buffer.getLong();
+                compactOffsets.put(key, buffer.getLong());
+            } else if (op == REMOVE_COMPACT) {
+                compactOffsets.remove(buffer.getLong());
+            } else if (op == PUT || op == REMOVE) {
+                byte[] idBytes = new byte[buffer.getInt()];
+                buffer.get(idBytes);
+                String id = new String(idBytes, StandardCharsets.UTF_8);
+                if (op == PUT) {
+                    legacyOffsets.put(id, buffer.getLong());
+                } else {
+                    legacyOffsets.remove(id);
+                }
+            } else {
+                throw new IOException("Unknown index entry type " + op);
+            }
+            entries++;
+        }
+
+        coveredLength = length;
+        coveredLastModified = lastModified;
+        tailChecksum = checksum;
+        deadRecords = dead;
+        entryLogBytes = logBytes;
+        loggedEntries = entries;
+        rewriteNeeded = false;
+    }
+
+    /**
+     * Writes the whole map to a temporary file and moves it into place.
+     */
+    private void writeFull () throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + compactOffsets.size() * 17 + legacyOffsets.size() * 56);
+        DataOutputStream out = new DataOutputStream(bytes);
+        compactOffsets.forEach((key, offset) -> {
+            out.writeByte(PUT_COMPACT);
+            out.writeLong(key);
+            out.writeLong(offset);
+        });
+        for (Map.Entry<String, Long> entry : legacyOffsets.entrySet()) {
+            byte[] idBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(PUT);
+            out.writeInt(idBytes.length);
+            out.write(idBytes);
+            out.writeLong(entry.getValue());
+        }
+        byte[] log = bytes.toByteArray();
+
+        File tempFile = new File(indexFile.getAbsolutePath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header(log.length), 0);
+            writeFully(channel, ByteBuffer.wrap(log), HEADER_BYTES);
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        entryLogBytes = log.length;
+        loggedEntries = size();
+        rewriteNeeded = false;
+    }
+
+    /**
+     * Appends the pending entries after the current log, then updates the header.
+     *
+     * @return false, without writing anything, if the file no longer ends where this
+     * instance's log does (another manager rewrote or appended to it).
+     */
+    private boolean appendPending () throws IOException {
+        byte[] log = pendingBytes.toByteArray();
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE)) {
+            if (channel.size() != HEADER_BYTES + entryLogBytes) {
+                return false;
+            }
+            writeFully(channel, ByteBuffer.wrap(log), HEADER_BYTES + entryLogBytes);
+            writeFully(channel, header(entryLogBytes + log.length), 0);
+        }
+        entryLogBytes += log.length;
+        return true;
+    }
+
+    private ByteBuffer header (long logBytes) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putLong(coveredLength).putLong(coveredLastModified).putLong(tailChecksum)
+                .putInt(deadRecords).putLong(logBytes);
+        header.flip();
+        return header;
+    }
+
+    private static void writeFully (FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
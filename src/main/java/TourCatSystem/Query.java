@@ -0,0 +1,432 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A condition on landmark records, built from comparisons on single columns combined with
+ * AND, OR and NOT:
+ * <pre>
+ * Query query = Query.and(
+ *         Query.in(LandmarkCatalog.PROVINCE_COLUMN, "Ontario", "Quebec"),
+ *         Query.eq(LandmarkCatalog.CATEGORY_COLUMN, "Park"),
+ *         Query.not(Query.contains(LandmarkCatalog.NAME_COLUMN, "provincial")));
+ * List&lt;String[]&gt; rows = repository.find(query);
+ * </pre>
+ * Columns are the indexes used throughout, e.g. {@link LandmarkCatalog#CITY_COLUMN}. Like
+ * {@link LandmarkRepository#findRows(String, String)}, comparisons ignore case and the
+ * surrounding whitespace of the stored value.
+ * <p>
+ * A query only describes the condition; {@link #matches(String[])} checks a single row, and
+ * {@link Filter} hands a query to {@link QueryPlanner}, which answers what it can from the
+ * catalog's {@link BitmapIndex} and scans only the rows that are left. Queries are immutable.
+ * <p>
+ * Two queries are equal when they are the same condition written differently: values that
+ * only differ in case or surrounding whitespace, IN lists and AND/OR parts in another order.
+ * That makes a query usable as a cache key (see {@link QueryCache}).
+ */
+public abstract class Query {
+
+    private static final String[] COLUMN_NAMES = {"ID", "Name", "City", "Province", "Category"};
+    private static final Query ALL = new And(List.of());
+    private static final Query NONE = new Or(List.of());
+
+    private String key; // Normalized form, built on first use
+
+    Query () {
+        // Only the nested kinds below
+    }
+
+    /**
+     * @return A query every record matches.
+     */
+    public static Query all () {
+        return ALL;
+    }
+
+    /**
+     * @return Records whose column equals the value.
+     */
+    public static Query eq (int column, String value) {
+        return new Compare(column, Compare.Op.EQUALS, value);
+    }
+
+    /**
+     * @return Records whose column equals any of the values.
+     */
+    public static Query in (int column, String... values) {
+        return new Compare(column, Compare.Op.EQUALS, values);
+    }
+
+    /**
+     * @return Records whose column equals any of the values.
+     */
+    public static Query in (int column, Collection<String> values) {
+        return in(column, values.toArray(new String[0]));
+    }
+
+    /**
+     * @return Records whose column starts with the text.
+     */
+    public static Query prefix (int column, String prefix) {
+        return new Compare(column, Compare.Op.PREFIX, prefix);
+    }
+
+    /**
+     * @return Records whose column contains the text.
+     */
+    public static Query contains (int column, String text) {
+        return new Compare(column, Compare.Op.CONTAINS, text);
+    }
+
+    /**
+     * @return Records matching every part; all records if there are none.
+     */
+    public static Query and (Query... parts) {
+        List<Query> flat = new ArrayList<>();
+        for (Query part : parts) {
+            if (part == NONE) {
+                return NONE;
+            }
+            flat.addAll(part instanceof And and ? and.parts : List.of(part));
+        }
+        return flat.size() == 1 ? flat.get(0) : new And(flat);
+    }
+
+    /**
+     * @return Records matching at least one part; none if there are none.
+     */
+    public static Query or (Query... parts) {
+        List<Query> flat = new ArrayList<>();
+        for (Query part : parts) {
+            if (part == ALL) {
+                return ALL;
+            }
+            flat.addAll(part instanceof Or or ? or.parts : List.of(part));
+        }
+        return flat.size() == 1 ? flat.get(0) : new Or(flat);
+    }
+
+    /**
+     * @return Records not matching the part.
+     */
+    public static Query not (Query part) {
+        return part instanceof Not not ? not.part : new Not(part);
+    }
+
+    /**
+     * The query behind the catalog's two filter boxes.
+     *
+     * @param province The province, or null/blank for any province.
+     * @param category The category, or null/blank for any category.
+     * @return The matching query.
+     */
+    public static Query forFilters (String province, String category) {
+        return and(province == null || province.isBlank() ? ALL : eq(LandmarkCatalog.PROVINCE_COLUMN, province),
+                category == null || category.isBlank() ? ALL : eq(LandmarkCatalog.CATEGORY_COLUMN, category));
+    }
+
+    /**
+     * The query behind the catalog's search box.
+     *
+     * @param text The text to look for, or null/blank to match everything.
+     * @return Records whose Name, City, Province or Category contains the text.
+     */
+    public static Query search (String text) {
+        if (text == null || text.isBlank()) {
+            return ALL;
+        }
+        return or(contains(LandmarkCatalog.NAME_COLUMN, text), contains(LandmarkCatalog.CITY_COLUMN, text),
+                contains(LandmarkCatalog.PROVINCE_COLUMN, text), contains(LandmarkCatalog.CATEGORY_COLUMN, text));
+    }
+
+    /**
+     * @param row A record in column order; missing columns count as empty.
+     * @return true if the record matches.
+     */
+    public boolean matches (String[] row) {
+        return test(column -> column < row.length && row[column] != null ? row[column] : "");
+    }
+
+    /**
+     * @param columns Gives the value of a column of the record being tested.
+     * @return true if the record matches.
+     */
+    abstract boolean test (IntFunction<CharSequence> columns);
+
+    /**
+     * @return The value this query requires the column to equal, if it is a single equality
+     * on its own or within an AND; otherwise null. Lets a backend push that part down to its
+     * own index and check the rest of the query on what comes back.
+     */
+    String requiredValue (int column) {
+        return null;
+    }
+
+    /**
+     * Writes the normalized form of this query, see {@link #equals(Object)}.
+     */
+    abstract void appendKey (StringBuilder key);
+
+    private String key () {
+        if (key == null) {
+            StringBuilder builder = new StringBuilder();
+            appendKey(builder);
+            key = builder.toString();
+        }
+        return key;
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        return this == o || (o instanceof Query other && key().equals(other.key()));
+    }
+
+    @Override
+    public int hashCode () {
+        return key().hashCode();
+    }
+
+    static String columnName (int column) {
+        return column >= 0 && column < COLUMN_NAMES.length ? COLUMN_NAMES[column] : "#" + column;
+    }
+
+    /**
+     * A comparison of one column with one or more values.
+     */
+    static final class Compare extends Query {
+        enum Op { EQUALS, PREFIX, CONTAINS }
+
+        final int column;
+        final Op op;
+        final String[] values; // Trimmed; an EQUALS with several values is an IN list
+
+        private Compare (int column, Op op, String... values) {
+            if (column < 0 || column >= LandmarkCatalog.COLUMN_COUNT) {
+                throw new IllegalArgumentException("No such column: " + column);
+            }
+            this.column = column;
+            this.op = op;
+            this.values = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    throw new IllegalArgumentException("Query values must not be null");
+                }
+                this.values[i] = values[i].trim();
+            }
+        }
+
+        @Override
+        boolean test (IntFunction<CharSequence> columns) {
+            return testValue(columns.apply(column));
+        }
+
+        /**
+         * @param value A stored value of this comparison's column.
+         * @return true if it satisfies the comparison.
+         */
+        boolean testValue (CharSequence value) {
+            int start = 0;
+            int end = value.length();
+            while (start < end && value.charAt(start) <= ' ') start++;
+            while (end > start && value.charAt(end - 1) <= ' ') end--;
+            for (String wanted : values) {
+                boolean found = switch (op) {
+                    case EQUALS -> end - start == wanted.length() && regionMatches(value, start, wanted);
+                    case PREFIX -> end - start >= wanted.length() && regionMatches(value, start, wanted);
+                    case CONTAINS -> occursIn(value, start, end, wanted);
+                };
+                if (found) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean occursIn (CharSequence value, int start, int end, String wanted) {
+            for (int i = start; i + wanted.length() <= end; i++) {
+                if (regionMatches(value, i, wanted)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Same rule as String#equalsIgnoreCase
+        private static boolean regionMatches (CharSequence value, int offset, String wanted) {
+            for (int i = 0; i < wanted.length(); i++) {
+                char a = value.charAt(offset + i);
+                char b = wanted.charAt(i);
+                if (a != b) {
+                    char upperA = Character.toUpperCase(a);
+                    char upperB = Character.toUpperCase(b);
+                    if (upperA != upperB && Character.toLowerCase(upperA) != Character.toLowerCase(upperB)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        @Override
+        String requiredValue (int column) {
+            return this.column == column && op == Op.EQUALS && values.length == 1 ? values[0] : null;
+        }
+
+        @Override
+        void appendKey (StringBuilder key) {
+            // Fold case the way regionMatches compares, so equal keys mean equal conditions
+            String[] folded = new String[values.length];
+            for (int i = 0; i < values.length; i++) {
+                char[] chars = values[i].toCharArray();
+                for (int c = 0; c < chars.length; c++) {
+                    chars[c] = Character.toLowerCase(Character.toUpperCase(chars[c]));
+                }
+                folded[i] = new String(chars);
+            }
+            Arrays.sort(folded);
+            key.append(op.name().charAt(0)).append(column).append('[');
+            for (String value : new LinkedHashSet<>(Arrays.asList(folded))) {
+                key.append(value.length()).append(':').append(value); // Length-prefixed, so any text is safe
+            }
+            key.append(']');
+        }
+
+        @Override
+        public String toString () {
+            if (op == Op.EQUALS && values.length != 1) {
+                StringBuilder list = new StringBuilder();
+                for (String value : values) {
+                    list.append(list.length() == 0 ? "" : ", ").append('\'').append(value).append('\'');
+                }
+                return columnName(column) + " IN (" + list + ")";
+            }
+            String operator = switch (op) {
+                case EQUALS -> " = ";
+                case PREFIX -> " STARTS WITH ";
+                case CONTAINS -> " CONTAINS ";
+            };
+            return columnName(column) + operator + "'" + values[0] + "'";
+        }
+    }
+
+    static final class And extends Query {
+        final List<Query> parts;
+
+        private And (List<Query> parts) {
+            this.parts = List.copyOf(parts);
+        }
+
+        @Override
+        boolean test (IntFunction<CharSequence> columns) {
+            for (Query part : parts) {
+                if (!part.test(columns)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        String requiredValue (int column) {
+            for (Query part : parts) {
+                String value = part.requiredValue(column);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        void appendKey (StringBuilder key) {
+            appendKeys(key, "&(", parts);
+        }
+
+        @Override
+        public String toString () {
+            return parts.isEmpty() ? "ALL" : join(parts, " AND ");
+        }
+    }
+
+    static final class Or extends Query {
+        final List<Query> parts;
+
+        private Or (List<Query> parts) {
+            this.parts = List.copyOf(parts);
+        }
+
+        @Override
+        boolean test (IntFunction<CharSequence> columns) {
+            for (Query part : parts) {
+                if (part.test(columns)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void appendKey (StringBuilder key) {
+            appendKeys(key, "|(", parts);
+        }
+
+        @Override
+        public String toString () {
+            return parts.isEmpty() ? "NONE" : join(parts, " OR ");
+        }
+    }
+
+    static final class Not extends Query {
+        final Query part;
+
+        private Not (Query part) {
+            this.part = part;
+        }
+
+        @Override
+        boolean test (IntFunction<CharSequence> columns) {
+            return !part.test(columns);
+        }
+
+        @Override
+        void appendKey (StringBuilder key) {
+            key.append('!');
+            part.appendKey(key);
+        }
+
+        @Override
+        public String toString () {
+            return "NOT " + (part instanceof Compare ? part : "(" + part + ")");
+        }
+    }
+
+    private static void appendKeys (StringBuilder key, String open, List<Query> parts) {
+        List<String> keys = new ArrayList<>();
+        for (Query part : parts) {
+            keys.add(part.key());
+        }
+        keys.sort(null); // AND and OR do not depend on the order of their parts
+        key.append(open);
+        for (String part : new LinkedHashSet<>(keys)) {
+            key.append(part).append(',');
+        }
+        key.append(')');
+    }
+
+    private static String join (List<Query> parts, String separator) {
+        StringBuilder text = new StringBuilder();
+        for (Query part : parts) {
+            if (text.length() > 0) {
+                text.append(separator);
+            }
+            boolean nested = part instanceof And || part instanceof Or;
+            text.append(nested ? "(" : "").append(part).append(nested ? ")" : "");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,138 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, least-recently-used cache of query results for one {@link DatabaseManager}.
+ * <p>
+ * Keys are {@link Query queries}, which compare equal when they are the same condition
+ * written differently. Each entry is stamped with the database version (see
+ * {@link DatabaseLock}) it was computed at, and is only served while that is still the
+ * current version. A write made through the owning manager knows which rows it touched, so
+ * it only drops the entries whose query matches one of those rows (as it was or as it is
+ * now) and moves every other entry on to the new version. A write made by anyone else, or
+ * one that rewrote the whole file, leaves the stamps behind and so empties the cache.
+ * <p>
+ * Not thread-safe; the manager calls it while holding its own monitor.
+ */
+final class QueryCache {
+
+    private final int capacity;
+    private final Map<Query, Entry> entries;
+    private int hits = 0;
+    private int misses = 0;
+
+    private static final class Entry {
+        final List<String[]> rows;
+        long version;
+
+        Entry (List<String[]> rows, long version) {
+            this.rows = rows;
+            this.version = version;
+        }
+    }
+
+    /**
+     * @param capacity Most entries kept; 0 keeps none.
+     */
+    QueryCache (int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) { // Access order, eldest first
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<Query, Entry> eldest) {
+                return size() > QueryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * @param version The current database version.
+     * @return A copy of the cached result, or null if there is none for this version.
+     */
+    List<String[]> get (Query query, long version) {
+        Entry entry = entries.get(query);
+        if (entry != null && entry.version == version) {
+            hits++;
+            return new ArrayList<>(entry.rows);
+        }
+        if (entry != null) {
+            entries.remove(query);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Stores the result of a query computed at the given version; the caller keeps its list.
+     */
+    void put (Query query, long version, List<String[]> rows) {
+        if (capacity > 0) {
+            entries.put(query, new Entry(new ArrayList<>(rows), version));
+        }
+    }
+
+    /**
+     * Moves the cache past a write made by the owner.
+     *
+     * @param before      The version the write started from.
+     * @param after       The version it committed.
+     * @param changedRows Every row the write added, removed or replaced, in both its old and
+     *                    new form; null if the write may have changed anything.
+     */
+    void committed (long before, long after, Collection<String[]> changedRows) {
+        if (changedRows == null) {
+            entries.clear();
+            return;
+        }
+        for (Iterator<Map.Entry<Query, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Query, Entry> mapping = it.next();
+            if (mapping.getValue().version != before || affects(mapping.getKey(), changedRows)) {
+                it.remove();
+            } else {
+                mapping.getValue().version = after;
+            }
+        }
+    }
+
+    void clear () {
+        entries.clear();
+    }
+
+    int size () {
+        return entries.size();
+    }
+
+    int hits () {
+        return hits;
+    }
+
+    int misses () {
+        return misses;
+    }
+
+    /**
+     * @return true if the query matches any of the rows, as stored or as the catalog shows
+     * them (where a known province is spelled like {@link Landmark.PROVINCE#getDisplayName()}).
+     */
+    private static boolean affects (Query query, Collection<String[]> rows) {
+        for (String[] row : rows) {
+            if (query.matches(row)) {
+                return true;
+            }
+            Landmark.PROVINCE province = row.length > LandmarkCatalog.PROVINCE_COLUMN ? Landmark.PROVINCE.fromName(row[LandmarkCatalog.PROVINCE_COLUMN]) : null;
+            if (province != null) {
+                String[] shown = row.clone();
+                shown[LandmarkCatalog.PROVINCE_COLUMN] = province.getDisplayName();
+                if (query.matches(shown)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
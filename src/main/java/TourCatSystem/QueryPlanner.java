@@ -0,0 +1,311 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns a {@link Query} into a plan over a catalog's {@link BitmapIndex}.
+ * <p>
+ * Comparisons on indexed columns (City, Province, Category) become index lookups, whose row
+ * counts are known exactly before any bitmap is combined; AND, OR and NOT over lookups become
+ * bitmap operations. Within an AND the lookups run smallest first, so the candidate set
+ * shrinks as early as possible and an empty one ends the plan. What cannot be answered from
+ * the index (ID and Name, or an OR mixing both kinds) is the residual: it is checked row by
+ * row over the remaining candidates, cheapest and most selective condition first.
+ * <p>
+ * Residual conditions are ranked with fixed guesses, since no statistics are kept for ID and
+ * Name: an equality matches few rows and costs one comparison, a substring search matches
+ * more and costs a pass over the value.
+ */
+final class QueryPlanner {
+
+    private QueryPlanner () {
+    }
+
+    /**
+     * @return The plan for the query over the index's catalog.
+     */
+    static Plan plan (Query query, BitmapIndex index) {
+        if (query instanceof Query.Compare compare && index.isIndexed(compare.column)) {
+            return new Lookup(index, compare);
+        }
+        if (query instanceof Query.Not not) {
+            Plan part = plan(not.part, index);
+            return part.isIndexed() ? new Complement(index, part) : new Scan(index, List.of(), List.of(query));
+        }
+        if (query instanceof Query.Or or) {
+            List<Plan> parts = new ArrayList<>();
+            for (Query part : or.parts) {
+                Plan plan = plan(part, index);
+                if (!plan.isIndexed()) {
+                    return new Scan(index, List.of(), List.of(query)); // Every row has to be checked anyway
+                }
+                parts.add(plan);
+            }
+            return new Union(index, parts);
+        }
+        if (query instanceof Query.And and) {
+            List<Plan> lookups = new ArrayList<>();
+            List<Query> residual = new ArrayList<>();
+            for (Query part : and.parts) {
+                Plan plan = plan(part, index);
+                if (plan.isIndexed()) {
+                    lookups.add(plan);
+                } else {
+                    residual.add(part);
+                }
+            }
+            lookups.sort(Comparator.comparingInt(Plan::estimate));
+            residual.sort(Comparator.comparingDouble(QueryPlanner::rank));
+            return new Scan(index, lookups, residual);
+        }
+        return new Scan(index, List.of(), List.of(query)); // A comparison on an unindexed column
+    }
+
+    // --- Residual cost model ---
+
+    /**
+     * @return Order in which to check residual conditions: low cost per row eliminated first.
+     */
+    private static double rank (Query query) {
+        double selectivity = selectivity(query);
+        return selectivity >= 1 ? Double.MAX_VALUE : cost(query) / (1 - selectivity);
+    }
+
+    /**
+     * @return Guessed fraction of rows that match.
+     */
+    private static double selectivity (Query query) {
+        if (query instanceof Query.Compare compare) {
+            double each = switch (compare.op) {
+                case EQUALS -> 0.01;
+                case PREFIX -> 0.1;
+                case CONTAINS -> 0.25;
+            };
+            return Math.min(1, each * compare.values.length);
+        }
+        if (query instanceof Query.Not not) {
+            return 1 - selectivity(not.part);
+        }
+        List<Query> parts = query instanceof Query.And and ? and.parts : ((Query.Or) query).parts;
+        double result = query instanceof Query.And ? 1 : 0;
+        for (Query part : parts) {
+            result = query instanceof Query.And ? result * selectivity(part) : Math.min(1, result + selectivity(part));
+        }
+        return result;
+    }
+
+    /**
+     * @return Guessed work to check one row, in value comparisons.
+     */
+    private static double cost (Query query) {
+        if (query instanceof Query.Compare compare) {
+            return compare.values.length * (compare.op == Query.Compare.Op.CONTAINS ? 4 : 1);
+        }
+        if (query instanceof Query.Not not) {
+            return cost(not.part);
+        }
+        double total = 0;
+        for (Query part : query instanceof Query.And and ? and.parts : ((Query.Or) query).parts) {
+            total += cost(part);
+        }
+        return total;
+    }
+
+    // --- Plans ---
+
+    /**
+     * One step of a plan; {@link #execute()} returns the matching rows.
+     */
+    abstract static class Plan {
+        final BitmapIndex index;
+
+        Plan (BitmapIndex index) {
+            this.index = index;
+        }
+
+        /**
+         * @return true if the plan is answered from the index alone.
+         */
+        abstract boolean isIndexed ();
+
+        /**
+         * @return Expected number of matching rows; exact for index-only plans.
+         */
+        abstract int estimate ();
+
+        abstract RowBitmap execute ();
+
+        /**
+         * @return The plan as text, for diagnostics and tests.
+         */
+        abstract String explain ();
+    }
+
+    private static final class Lookup extends Plan {
+        private final Query.Compare compare;
+        private final boolean[] matching;
+
+        Lookup (BitmapIndex index, Query.Compare compare) {
+            super(index);
+            this.compare = compare;
+            this.matching = index.valuesMatching(compare);
+        }
+
+        @Override
+        boolean isIndexed () {
+            return true;
+        }
+
+        @Override
+        int estimate () {
+            return index.count(compare.column, matching);
+        }
+
+        @Override
+        RowBitmap execute () {
+            return index.rows(compare.column, matching);
+        }
+
+        @Override
+        String explain () {
+            return "index " + compare + " (" + estimate() + " rows)";
+        }
+    }
+
+    private static final class Union extends Plan {
+        private final List<Plan> parts;
+
+        Union (BitmapIndex index, List<Plan> parts) {
+            super(index);
+            this.parts = parts;
+        }
+
+        @Override
+        boolean isIndexed () {
+            return true;
+        }
+
+        @Override
+        int estimate () {
+            int total = 0;
+            for (Plan part : parts) {
+                total += part.estimate();
+            }
+            return Math.min(total, index.catalog().getRowCount());
+        }
+
+        @Override
+        RowBitmap execute () {
+            RowBitmap result = RowBitmap.empty();
+            for (Plan part : parts) {
+                result = result.or(part.execute());
+            }
+            return result;
+        }
+
+        @Override
+        String explain () {
+            if (parts.isEmpty()) {
+                return "nothing";
+            }
+            List<String> steps = new ArrayList<>();
+            parts.forEach(part -> steps.add(part.explain()));
+            return "(" + String.join(" OR ", steps) + ")";
+        }
+    }
+
+    private static final class Complement extends Plan {
+        private final Plan part;
+
+        Complement (BitmapIndex index, Plan part) {
+            super(index);
+            this.part = part;
+        }
+
+        @Override
+        boolean isIndexed () {
+            return true;
+        }
+
+        @Override
+        int estimate () {
+            return index.catalog().getRowCount() - part.estimate();
+        }
+
+        @Override
+        RowBitmap execute () {
+            return index.all().andNot(part.execute());
+        }
+
+        @Override
+        String explain () {
+            return "NOT " + part.explain();
+        }
+    }
+
+    /**
+     * Intersects index lookups in the given order, then checks the residual conditions on
+     * each remaining row.
+     */
+    private static final class Scan extends Plan {
+        private final List<Plan> lookups;
+        private final List<Query> residual;
+
+        Scan (BitmapIndex index, List<Plan> lookups, List<Query> residual) {
+            super(index);
+            this.lookups = lookups;
+            this.residual = residual;
+        }
+
+        @Override
+        boolean isIndexed () {
+            return residual.isEmpty();
+        }
+
+        @Override
+        int estimate () {
+            double rows = lookups.isEmpty() ? index.catalog().getRowCount() : lookups.get(0).estimate();
+            for (Query query : residual) {
+                rows *= selectivity(query);
+            }
+            return (int) Math.ceil(rows);
+        }
+
+        @Override
+        RowBitmap execute () {
+            RowBitmap candidates = lookups.isEmpty() ? index.all() : lookups.get(0).execute();
+            for (int i = 1; i < lookups.size() && !candidates.isEmpty(); i++) {
+                candidates = candidates.and(lookups.get(i).execute());
+            }
+            if (residual.isEmpty() || candidates.isEmpty()) {
+                return candidates;
+            }
+
+            Query check = residual.size() == 1 ? residual.get(0) : Query.and(residual.toArray(new Query[0]));
+            Landmark landmark = index.catalog().cursor();
+            RowBitmap.Builder matches = new RowBitmap.Builder();
+            candidates.forEach(row -> {
+                landmark.moveTo(row);
+                if (check.test(landmark::column)) {
+                    matches.add(row);
+                }
+            });
+            return matches.build();
+        }
+
+        @Override
+        String explain () {
+            List<String> steps = new ArrayList<>();
+            lookups.forEach(lookup -> steps.add(lookup.explain()));
+            String indexed = steps.isEmpty() ? "all " + index.catalog().getRowCount() + " rows" : String.join(" AND ", steps);
+            if (residual.isEmpty()) {
+                return steps.isEmpty() ? indexed : steps.size() == 1 ? indexed : "(" + indexed + ")";
+            }
+            List<String> checks = new ArrayList<>();
+            residual.forEach(query -> checks.add(query.toString()));
+            return indexed + " then scan " + String.join(", ", checks);
+        }
+    }
+}
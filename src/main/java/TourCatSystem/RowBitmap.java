@@ -0,0 +1,470 @@
+package TourCatSystem;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable, compressed set of row numbers, laid out like a Roaring bitmap.
+ * <p>
+ * Rows are grouped into chunks of 65536 by their high 16 bits. Each non-empty chunk keeps its
+ * low 16 bits in the smaller of two containers:
+ * <ul>
+ *     <li>a sorted {@code char[]} while the chunk holds at most {@value #ARRAY_LIMIT} rows
+ *     (two bytes per row), or</li>
+ *     <li>a 65536-bit {@code long[]} (8 KB, whatever the count) once it holds more.</li>
+ * </ul>
+ * {@link #and(RowBitmap)}, {@link #or(RowBitmap)} and {@link #andNot(RowBitmap)} work chunk
+ * by chunk, so a sparse value costs little against a dense one and two dense values are
+ * combined 64 rows per instruction. Used by {@link BitmapIndex} and {@link QueryPlanner} to
+ * answer queries on the catalog without visiting rows.
+ */
+final class RowBitmap {
+
+    static final int ARRAY_LIMIT = 4096; // Where an array container becomes as large as a bitmap
+    private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+
+    private static final RowBitmap EMPTY = new RowBitmap(new char[0], new Object[0], 0);
+
+    private final char[] keys;         // High 16 bits of each chunk, ascending
+    private final Object[] containers; // char[] (sorted low bits) or long[] (bits), per chunk
+    private final int cardinality;
+
+    private RowBitmap (char[] keys, Object[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    static RowBitmap empty () {
+        return EMPTY;
+    }
+
+    /**
+     * @param rowCount Number of rows.
+     * @return Every row from 0 to {@code rowCount - 1}.
+     */
+    static RowBitmap range (int rowCount) {
+        int chunks = (rowCount + 0xFFFF) >>> 16;
+        char[] keys = new char[chunks];
+        Object[] containers = new Object[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int size = Math.min(1 << 16, rowCount - (chunk << 16));
+            keys[chunk] = (char) chunk;
+            if (size <= ARRAY_LIMIT) {
+                char[] array = new char[size];
+                for (int i = 0; i < size; i++) {
+                    array[i] = (char) i;
+                }
+                containers[chunk] = array;
+            } else {
+                long[] bits = new long[BITMAP_WORDS];
+                Arrays.fill(bits, 0, size >>> 6, -1L);
+                if ((size & 63) != 0) {
+                    bits[size >>> 6] = (1L << size) - 1;
+                }
+                containers[chunk] = bits;
+            }
+        }
+        return new RowBitmap(keys, containers, rowCount);
+    }
+
+    /**
+     * @return Number of rows in the set.
+     */
+    int cardinality () {
+        return cardinality;
+    }
+
+    boolean isEmpty () {
+        return cardinality == 0;
+    }
+
+    boolean contains (int row) {
+        int chunk = Arrays.binarySearch(keys, (char) (row >>> 16));
+        if (chunk < 0) {
+            return false;
+        }
+        char low = (char) row;
+        return containers[chunk] instanceof long[] bits
+                ? (bits[low >>> 6] & (1L << low)) != 0
+                : Arrays.binarySearch((char[]) containers[chunk], low) >= 0;
+    }
+
+    /**
+     * Calls the consumer for every row, in ascending order.
+     */
+    void forEach (IntConsumer consumer) {
+        for (int chunk = 0; chunk < keys.length; chunk++) {
+            int high = keys[chunk] << 16;
+            if (containers[chunk] instanceof long[] bits) {
+                for (int word = 0; word < bits.length; word++) {
+                    for (long w = bits[word]; w != 0; w &= w - 1) {
+                        consumer.accept(high | word << 6 | Long.numberOfTrailingZeros(w));
+                    }
+                }
+            } else {
+                for (char low : (char[]) containers[chunk]) {
+                    consumer.accept(high | low);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The rows in ascending order.
+     */
+    int[] toArray () {
+        int[] rows = new int[cardinality];
+        int[] next = {0};
+        forEach(row -> rows[next[0]++] = row);
+        return rows;
+    }
+
+    /**
+     * @return The rows in both sets.
+     */
+    RowBitmap and (RowBitmap other) {
+        if (isEmpty() || other.isEmpty()) {
+            return EMPTY;
+        }
+        int capacity = Math.min(keys.length, other.keys.length);
+        char[] resultKeys = new char[capacity];
+        Object[] resultContainers = new Object[capacity];
+        int count = 0;
+        int total = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Object container = and(containers[i], other.containers[j]);
+                int size = size(container);
+                if (size > 0) {
+                    resultKeys[count] = keys[i];
+                    resultContainers[count++] = container;
+                    total += size;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count), total);
+    }
+
+    /**
+     * @return Number of rows in both sets; same as {@code and(other).cardinality()}, but
+     * nothing is allocated.
+     */
+    int andCardinality (RowBitmap other) {
+        int total = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += andCardinality(containers[i++], other.containers[j++]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return The rows in either set.
+     */
+    RowBitmap or (RowBitmap other) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+        char[] resultKeys = new char[keys.length + other.keys.length];
+        Object[] resultContainers = new Object[resultKeys.length];
+        int count = 0;
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            Object container;
+            if (j == other.keys.length || (i < keys.length && keys[i] < other.keys[j])) {
+                resultKeys[count] = keys[i];
+                container = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                container = other.containers[j++];
+            } else {
+                resultKeys[count] = keys[i];
+                container = or(containers[i++], other.containers[j++]);
+            }
+            resultContainers[count++] = container; // Containers are never modified, so sharing is safe
+            total += size(container);
+        }
+        return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count), total);
+    }
+
+    /**
+     * @return The rows in this set but not in the other.
+     */
+    RowBitmap andNot (RowBitmap other) {
+        if (isEmpty() || other.isEmpty()) {
+            return this;
+        }
+        char[] resultKeys = new char[keys.length];
+        Object[] resultContainers = new Object[keys.length];
+        int count = 0;
+        int total = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Object container = j < other.keys.length && other.keys[j] == keys[i] ? andNot(containers[i], other.containers[j]) : containers[i];
+            int size = size(container);
+            if (size > 0) {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = container;
+                total += size;
+            }
+        }
+        return new RowBitmap(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count), total);
+    }
+
+    @Override
+    public boolean equals (Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RowBitmap other) || other.cardinality != cardinality) return false;
+        return Arrays.equals(toArray(), other.toArray());
+    }
+
+    @Override
+    public int hashCode () {
+        return Arrays.hashCode(toArray());
+    }
+
+    // --- Containers ---
+
+    private static int size (Object container) {
+        if (container instanceof char[] array) {
+            return array.length;
+        }
+        int size = 0;
+        for (long word : (long[]) container) {
+            size += Long.bitCount(word);
+        }
+        return size;
+    }
+
+    private static Object and (Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right) {
+            char[] result = new char[Math.min(left.length, right.length)];
+            int count = 0;
+            for (int i = 0, j = 0; i < left.length && j < right.length; ) {
+                if (left[i] < right[j]) {
+                    i++;
+                } else if (left[i] > right[j]) {
+                    j++;
+                } else {
+                    result[count++] = left[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        if (a instanceof long[] left && b instanceof long[] right) {
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = left[w] & right[w];
+            }
+            return compact(result);
+        }
+        // One of each: keep the array's values that are set in the bitmap
+        char[] array = a instanceof char[] left ? left : (char[]) b;
+        long[] bits = a instanceof long[] left ? left : (long[]) b;
+        char[] result = new char[array.length];
+        int count = 0;
+        for (char low : array) {
+            if ((bits[low >>> 6] & (1L << low)) != 0) {
+                result[count++] = low;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static int andCardinality (Object a, Object b) {
+        int count = 0;
+        if (a instanceof char[] left && b instanceof char[] right) {
+            for (int i = 0, j = 0; i < left.length && j < right.length; ) {
+                if (left[i] < right[j]) {
+                    i++;
+                } else if (left[i] > right[j]) {
+                    j++;
+                } else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        } else if (a instanceof long[] left && b instanceof long[] right) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(left[w] & right[w]);
+            }
+        } else {
+            char[] array = a instanceof char[] left ? left : (char[]) b;
+            long[] bits = a instanceof long[] left ? left : (long[]) b;
+            for (char low : array) {
+                if ((bits[low >>> 6] & (1L << low)) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static Object or (Object a, Object b) {
+        if (a instanceof char[] left && b instanceof char[] right && left.length + right.length <= ARRAY_LIMIT) {
+            char[] result = new char[left.length + right.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < left.length || j < right.length) {
+                if (j == right.length || (i < left.length && left[i] < right[j])) {
+                    result[count++] = left[i++];
+                } else if (i == left.length || left[i] > right[j]) {
+                    result[count++] = right[j++];
+                } else {
+                    result[count++] = left[i++];
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        long[] result = new long[BITMAP_WORDS];
+        setAll(result, a);
+        setAll(result, b);
+        return compact(result);
+    }
+
+    private static Object andNot (Object a, Object b) {
+        if (a instanceof char[] array) {
+            char[] result = new char[array.length];
+            int count = 0;
+            for (char low : array) {
+                boolean removed = b instanceof long[] bits ? (bits[low >>> 6] & (1L << low)) != 0 : Arrays.binarySearch((char[]) b, low) >= 0;
+                if (!removed) {
+                    result[count++] = low;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+        long[] result = ((long[]) a).clone();
+        if (b instanceof long[] bits) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] &= ~bits[w];
+            }
+        } else {
+            for (char low : (char[]) b) {
+                result[low >>> 6] &= ~(1L << low);
+            }
+        }
+        return compact(result);
+    }
+
+    private static void setAll (long[] target, Object container) {
+        if (container instanceof long[] bits) {
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                target[w] |= bits[w];
+            }
+        } else {
+            for (char low : (char[]) container) {
+                target[low >>> 6] |= 1L << low;
+            }
+        }
+    }
+
+    /**
+     * @return The bits as an array container if they are few enough, otherwise the bitmap itself.
+     */
+    private static Object compact (long[] bits) {
+        int size = size(bits);
+        if (size > ARRAY_LIMIT) {
+            return bits;
+        }
+        char[] array = new char[size];
+        int count = 0;
+        for (int word = 0; word < bits.length; word++) {
+            for (long w = bits[word]; w != 0; w &= w - 1) {
+                array[count++] = (char) (word << 6 | Long.numberOfTrailingZeros(w));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Collects rows added in ascending order into a new bitmap.
+     */
+    static final class Builder {
+        private char[] keys = new char[4];
+        private Object[] containers = new Object[4];
+        private int count = 0;
+        private int cardinality = 0;
+
+        private int currentKey = -1;
+        private char[] pending = new char[16]; // Low bits of the chunk being filled
+        private int pendingCount = 0;
+
+        /**
+         * @param row A row number, greater than every row added before.
+         */
+        void add (int row) {
+            if (row < 0) {
+                throw new IllegalArgumentException("Row numbers are non-negative: " + row);
+            }
+            int key = row >>> 16;
+            if (key != currentKey) {
+                if (key < currentKey) {
+                    throw new IllegalArgumentException("Rows must be added in ascending order: " + row);
+                }
+                flush();
+                currentKey = key;
+            } else if (pendingCount > 0 && (char) row <= pending[pendingCount - 1]) {
+                throw new IllegalArgumentException("Rows must be added in ascending order: " + row);
+            }
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            pending[pendingCount++] = (char) row;
+        }
+
+        RowBitmap build () {
+            flush();
+            return count == 0 ? EMPTY : new RowBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinality);
+        }
+
+        private void flush () {
+            if (pendingCount == 0) {
+                return;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                containers = Arrays.copyOf(containers, count * 2);
+            }
+            Object container;
+            if (pendingCount <= ARRAY_LIMIT) {
+                container = Arrays.copyOf(pending, pendingCount);
+            } else {
+                long[] bits = new long[BITMAP_WORDS];
+                for (int i = 0; i < pendingCount; i++) {
+                    bits[pending[i] >>> 6] |= 1L << pending[i];
+                }
+                container = bits;
+            }
+            keys[count] = (char) currentKey;
+            containers[count++] = container;
+            cardinality += pendingCount;
+            pendingCount = 0;
+        }
+    }
+}
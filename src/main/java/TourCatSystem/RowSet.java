@@ -0,0 +1,110 @@
+package TourCatSystem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a query as row numbers into one {@link LandmarkCatalog}, in ascending (file)
+ * order.
+ * <p>
+ * Nothing is copied out of the catalog: the rows are a {@link RowBitmap}, two bytes or less
+ * per row, and a cell is read from the catalog's columns only when it is shown. A table can
+ * therefore display a subset of a large catalog without parsing or copying a single record
+ * (see {@link #toArray()} and {@link LandmarkCatalog#getId(int)} and friends);
+ * {@link #toRows()} materializes the records for callers that want them.
+ * <p>
+ * Immutable; the catalog it refers to never changes either, so a set stays valid (and shows
+ * the records as they were) after the database is written.
+ */
+public final class RowSet {
+
+    private final LandmarkCatalog catalog;
+    private final RowBitmap rows;
+    private BitmapIndex index; // The catalog's index, built on first use if the creator had none
+
+    RowSet (BitmapIndex index, RowBitmap rows) {
+        this.catalog = index.catalog();
+        this.rows = rows;
+        this.index = index;
+    }
+
+    private RowSet (LandmarkCatalog catalog, RowBitmap rows) {
+        this.catalog = catalog;
+        this.rows = rows;
+    }
+
+    /**
+     * Wraps records that are not in a catalog, e.g. those returned by a backend without one.
+     *
+     * @param header  The column names.
+     * @param records The records, in column order.
+     * @return A set holding every record, over a catalog built from them.
+     */
+    public static RowSet of (String[] header, List<String[]> records) {
+        LandmarkCatalog.Builder builder = new LandmarkCatalog.Builder(header);
+        for (String[] row : records) {
+            builder.addRow(column(row, LandmarkCatalog.ID_COLUMN), column(row, LandmarkCatalog.NAME_COLUMN),
+                    column(row, LandmarkCatalog.CITY_COLUMN), column(row, LandmarkCatalog.PROVINCE_COLUMN),
+                    column(row, LandmarkCatalog.CATEGORY_COLUMN));
+        }
+        LandmarkCatalog catalog = builder.build();
+        return new RowSet(catalog, RowBitmap.range(catalog.getRowCount()));
+    }
+
+    private static String column (String[] row, int index) {
+        return index < row.length ? row[index] : null;
+    }
+
+    /**
+     * @return The catalog the row numbers refer to.
+     */
+    public LandmarkCatalog catalog () {
+        return catalog;
+    }
+
+    public int size () {
+        return rows.cardinality();
+    }
+
+    public boolean isEmpty () {
+        return rows.isEmpty();
+    }
+
+    /**
+     * @param row A row number of the catalog.
+     * @return true if the row is in the set.
+     */
+    public boolean contains (int row) {
+        return rows.contains(row);
+    }
+
+    /**
+     * @return The row numbers in ascending order, in a new array the caller owns.
+     */
+    public int[] toArray () {
+        return rows.toArray();
+    }
+
+    /**
+     * @return The records, in file order.
+     */
+    public List<String[]> toRows () {
+        List<String[]> records = new ArrayList<>(rows.cardinality());
+        rows.forEach(row -> records.add(catalog.getRow(row)));
+        return records;
+    }
+
+    RowBitmap bitmap () {
+        return rows;
+    }
+
+    /**
+     * @return The index of the set's catalog (not of the set: it covers every catalog row).
+     */
+    synchronized BitmapIndex index () {
+        if (index == null) {
+            index = BitmapIndex.build(catalog);
+        }
+        return index;
+    }
+}
@@ -1,25 +1,23 @@
 package TourCatSystem;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 public class Search {
     public static ArrayList<String> search(File file, String query) {
         ArrayList<String> results = new ArrayList<>();
         boolean found = false;
 
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(file))) {
+        try {
+            // Lines are matched against the mapped bytes; only hits are decoded.
+            // Deleted records and the header row are skipped by the reader.
+            MappedCsvReader.Cursor cursor = MappedCsvReader.open(file).cursor();
 
-            String line;
-
-            while ((line = bufferedReader.readLine()) != null) {
-                if (line.toLowerCase().contains(query.toLowerCase())) {
-//                    System.out.println("Match: " + line);
+            while (cursor.next()) {
+                if (cursor.lineContainsIgnoreCase(query)) {
+//                    System.out.println("Match: " + cursor.lineString());
                     found = true;
-                    results.add(line);
+                    results.add(cursor.lineString());
                 }
             }
 
@@ -31,4 +29,4 @@ public class Search {
         }
         return results;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,420 @@
+package TourCatSystem;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+
+/**
+ * {@link LandmarkRepository} that splits the records into one CSV database per province.
+ * <p>
+ * The shards live in {@code <database>_shards/}: {@code ONTARIO.csv}, {@code QUEBEC.csv}, ... one
+ * per {@link Landmark.PROVINCE}, plus {@code OTHER.csv} for provinces outside the enum. Each
+ * shard is an ordinary {@link DatabaseManager} with its own ID index and write lock, so writes
+ * to different provinces never wait for each other, and a query for one province only reads
+ * that province's file. Queries spanning provinces fan out over the shards on the common
+ * fork-join pool and are merged in shard (enum) order; within a shard, rows keep file order.
+ * <p>
+ * Lookups by ID ask every shard's in-memory index. Moving a record to another province
+ * (an update that changes the Province column) adds it to the new shard before deleting it
+ * from the old one, so an interruption leaves a duplicate rather than losing the record.
+ * <p>
+ * A shard only rejects IDs it holds itself, so adds check every shard first. That check and
+ * the write happen under one more {@link DatabaseLock}, {@code <database>_shards.lock}, taken
+ * by adds only: two sessions adding the same ID to different provinces cannot both pass the
+ * check, while deletes and updates still only lock their own shard.
+ * <p>
+ * The first time the layout is opened, the rows of the single CSV file are split into the shards.
+ */
+public class ShardedLandmarkRepository implements LandmarkRepository {
+
+    private static final String OTHER_SHARD = "OTHER";
+    private static final String SHARD_DIRECTORY_SUFFIX = "_shards";
+
+    private static final int EXPECTED_COLUMNS = 5;
+    private static final int PROVINCE_COLUMN = 3;
+
+    private final File shardDirectory;
+    private final String[] header;
+    private final Map<String, DatabaseManager> shards = new LinkedHashMap<>(); // Enum order, "other" last
+    private final DatabaseLock addLock; // Makes the cross-shard duplicate check and the add one step
+
+    /**
+     * Opens the sharded layout belonging to a CSV database, splitting the CSV if it is new.
+     *
+     * @param csvFile The CSV database.
+     * @throws IllegalArgumentException If csvFile is null.
+     * @throws IOException              If the shards cannot be created or opened.
+     */
+    public ShardedLandmarkRepository (File csvFile) throws IOException {
+        if (csvFile == null) {
+            throw new IllegalArgumentException("Database file cannot be null.");
+        }
+        String name = csvFile.getName();
+        int extension = name.lastIndexOf('.');
+        this.shardDirectory = new File(csvFile.getAbsoluteFile().getParentFile(),
+                (extension > 0 ? name.substring(0, extension) : name) + SHARD_DIRECTORY_SUFFIX);
+
+        if (!shardDirectory.isDirectory()) {
+            splitIntoShards(csvFile);
+        }
+
+        // Every shard exists from the start, so all sessions see the same set of files
+        for (String shardName : shardNames()) {
+            shards.put(shardName, new DatabaseManager(new File(shardDirectory, shardName + ".csv")));
+        }
+        this.header = shards.get(OTHER_SHARD).getHeader();
+        this.addLock = DatabaseLock.forDatabase(shardDirectory);
+    }
+
+    private static List<String> shardNames () {
+        List<String> names = new ArrayList<>();
+        for (Landmark.PROVINCE province : Landmark.PROVINCE.values()) {
+            names.add(province.name());
+        }
+        names.add(OTHER_SHARD);
+        return names;
+    }
+
+    /**
+     * Writes every shard into a temporary directory and renames it into place, so an
+     * interrupted split starts over the next time.
+     */
+    private void splitIntoShards (File csvFile) throws IOException {
+        String[] fileHeader = DatabaseManager.DEFAULT_HEADER;
+        List<String[]> rows = new ArrayList<>();
+        if (csvFile.isFile() && csvFile.length() > 0) {
+            MappedCsvReader reader = MappedCsvReader.open(csvFile);
+            if (reader.header().length > 0) {
+                fileHeader = reader.header();
+            }
+            rows = reader.readAllRows();
+        }
+
+        Map<String, List<String[]>> byShard = new LinkedHashMap<>();
+        for (String shardName : shardNames()) {
+            byShard.put(shardName, new ArrayList<>());
+        }
+        for (String[] row : rows) {
+            if (row.length >= EXPECTED_COLUMNS) {
+                byShard.get(shardNameFor(row[PROVINCE_COLUMN])).add(row);
+            }
+        }
+
+        File tempDirectory = new File(shardDirectory.getAbsolutePath() + ".tmp");
+        if (tempDirectory.isDirectory()) {
+            for (File leftover : tempDirectory.listFiles()) {
+                Files.delete(leftover.toPath());
+            }
+        }
+        Files.createDirectories(tempDirectory.toPath());
+        for (Map.Entry<String, List<String[]>> shard : byShard.entrySet()) {
+            try (BufferedWriter writer = Files.newBufferedWriter(new File(tempDirectory, shard.getKey() + ".csv").toPath(), StandardCharsets.UTF_8)) {
+                writer.write(String.join(",", fileHeader));
+                writer.newLine();
+                for (String[] row : shard.getValue()) {
+                    writer.write(String.join(",", row));
+                    writer.newLine();
+                }
+            }
+        }
+        try {
+            Files.move(tempDirectory.toPath(), shardDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempDirectory.toPath(), shardDirectory.toPath());
+        }
+        System.out.println("Split " + rows.size() + " records from " + csvFile.getName() + " into province shards in " + shardDirectory.getName());
+    }
+
+    private static String shardNameFor (String provinceName) {
+        Landmark.PROVINCE province = Landmark.PROVINCE.fromName(provinceName);
+        return province != null ? province.name() : OTHER_SHARD;
+    }
+
+    /**
+     * @return The shard records of this province belong in.
+     */
+    private DatabaseManager shardFor (String provinceName) {
+        return shards.get(shardNameFor(provinceName));
+    }
+
+    /**
+     * @return The shard holding the ID, or null.
+     */
+    private DatabaseManager shardHolding (String id) throws IOException {
+        for (DatabaseManager shard : shards.values()) {
+            if (shard.containsId(id)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    private interface ShardQuery<T> {
+        T run (DatabaseManager shard) throws IOException;
+    }
+
+    /**
+     * Runs the query on every given shard in parallel.
+     *
+     * @return The results, in the order the shards were given.
+     */
+    private static <T> List<T> scatter (List<DatabaseManager> targets, ShardQuery<T> query) throws IOException {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(targets.size());
+        for (DatabaseManager shard : targets) {
+            Callable<T> call = () -> query.run(shard);
+            tasks.add(ForkJoinTask.adapt(call));
+        }
+        try {
+            ForkJoinTask.invokeAll(tasks); // Runs on the common pool
+        } catch (RuntimeException e) {
+            // Checked exceptions come back wrapped, possibly more than once
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+            }
+            throw e;
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<T> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    @Override
+    public String[] getHeader () {
+        return header.clone();
+    }
+
+    @Override
+    public void addRecord (String[] newLocationData) throws IOException {
+        if (newLocationData == null || newLocationData.length < EXPECTED_COLUMNS) {
+            throw new IllegalArgumentException("New location data is invalid or incomplete. Expected " + EXPECTED_COLUMNS + " columns.");
+        }
+        DatabaseLock.Hold hold = addLock.acquire();
+        try {
+            if (shardHolding(newLocationData[0]) != null) {
+                throw new DatabaseManager.DuplicateIdException("Location with ID '" + newLocationData[0] + "' already exists.");
+            }
+            shardFor(newLocationData[PROVINCE_COLUMN]).addRecord(newLocationData);
+        } finally {
+            hold.close();
+        }
+    }
+
+    @Override
+    public BatchResult addRecords (Collection<String[]> newRecords) throws IOException {
+        if (newRecords == null) {
+            throw new IllegalArgumentException("Records to add cannot be null.");
+        }
+
+        // Decide each outcome here, then hand every shard its part in one batch
+        BatchResult result = new BatchResult();
+        Map<DatabaseManager, List<String[]>> byShard = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        DatabaseLock.Hold hold = addLock.acquire();
+        try {
+            for (String[] row : newRecords) {
+                if (row == null || row.length < EXPECTED_COLUMNS || row[0] == null || Tombstones.isTombstone(row[0])) {
+                    result.record(row == null || row.length == 0 ? null : row[0], BatchResult.Outcome.INVALID);
+                } else if (!seen.add(row[0]) || shardHolding(row[0]) != null) {
+                    result.record(row[0], BatchResult.Outcome.DUPLICATE);
+                } else {
+                    result.record(row[0], BatchResult.Outcome.ADDED);
+                    byShard.computeIfAbsent(shardFor(row[PROVINCE_COLUMN]), shard -> new ArrayList<>()).add(row);
+                }
+            }
+            for (Map.Entry<DatabaseManager, List<String[]>> shard : byShard.entrySet()) {
+                shard.getKey().addRecords(shard.getValue());
+            }
+        } finally {
+            hold.close();
+        }
+        return result;
+    }
+
+    @Override
+    public void deleteById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException {
+        if (locationId == null || locationId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Location ID to delete cannot be null or empty.");
+        }
+        DatabaseManager shard = shardHolding(locationId);
+        if (shard == null) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found for deletion.");
+        }
+        shard.deleteById(locationId);
+    }
+
+    @Override
+    public BatchResult deleteByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs to delete cannot be null.");
+        }
+
+        Map<DatabaseManager, List<String>> byShard = new LinkedHashMap<>();
+        Map<String, BatchResult.Outcome> outcomes = new HashMap<>();
+        for (String id : locationIds) {
+            if (id != null && !id.trim().isEmpty() && !outcomes.containsKey(id)) {
+                DatabaseManager shard = shardHolding(id);
+                if (shard != null) {
+                    byShard.computeIfAbsent(shard, key -> new ArrayList<>()).add(id);
+                }
+                outcomes.put(id, BatchResult.Outcome.NOT_FOUND);
+            }
+        }
+        for (Map.Entry<DatabaseManager, List<String>> shard : byShard.entrySet()) {
+            BatchResult shardResult = shard.getKey().deleteByIds(shard.getValue());
+            for (String id : shardResult.idsWith(BatchResult.Outcome.DELETED)) {
+                outcomes.put(id, BatchResult.Outcome.DELETED);
+            }
+        }
+
+        // Report in the caller's order; a repeated ID is only deleted once
+        BatchResult result = new BatchResult();
+        Set<String> reported = new HashSet<>();
+        for (String id : locationIds) {
+            if (id == null || id.trim().isEmpty()) {
+                result.record(id, BatchResult.Outcome.INVALID);
+            } else if (reported.add(id)) {
+                result.record(id, outcomes.get(id));
+            } else {
+                result.record(id, BatchResult.Outcome.NOT_FOUND);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void updateRecord (String locationId, String[] fields) throws IOException, DatabaseManager.RecordNotFoundException {
+        if (fields == null || fields.length < EXPECTED_COLUMNS) {
+            throw new IllegalArgumentException("Updated location data is invalid or incomplete. Expected " + EXPECTED_COLUMNS + " columns.");
+        }
+        DatabaseManager current = shardHolding(locationId);
+        if (current == null) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found for update.");
+        }
+        DatabaseManager target = shardFor(fields[PROVINCE_COLUMN]);
+        if (target == current) {
+            current.updateRecord(locationId, fields);
+            return;
+        }
+        if (!fields[0].equals(locationId)) {
+            throw new IllegalArgumentException("Updated location data has ID '" + fields[0] + "', expected '" + locationId + "'.");
+        }
+        target.addRecord(fields);
+        current.deleteById(locationId);
+    }
+
+    @Override
+    public String[] getById (String locationId) throws IOException, DatabaseManager.RecordNotFoundException {
+        DatabaseManager shard = shardHolding(locationId);
+        if (shard == null) {
+            throw new DatabaseManager.RecordNotFoundException("Location with ID '" + locationId + "' not found.");
+        }
+        return shard.getById(locationId);
+    }
+
+    @Override
+    public Map<String, String[]> getByIds (Collection<String> locationIds) throws IOException {
+        if (locationIds == null) {
+            throw new IllegalArgumentException("Location IDs cannot be null.");
+        }
+        Map<String, String[]> byId = new HashMap<>();
+        for (Map<String, String[]> found : scatter(new ArrayList<>(shards.values()), shard -> shard.getByIds(locationIds))) {
+            byId.putAll(found);
+        }
+        Map<String, String[]> found = new LinkedHashMap<>();
+        for (String id : locationIds) {
+            if (byId.containsKey(id)) {
+                found.put(id, byId.get(id));
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean containsId (String locationId) throws IOException {
+        return shardHolding(locationId) != null;
+    }
+
+    /**
+     * Drawn from one fixed shard rather than the one the record will be written to: the
+     * province, and so the shard, is usually not known yet when an ID is asked for, and each
+     * shard's lock file leases node numbers on its own, so generators of two shards in one
+     * process could hand out the same IDs. One fixed shard's generator keeps IDs unique across
+     * the whole layout.
+     */
+    @Override
+    public String getNextID () {
+        return shards.get(OTHER_SHARD).getNextID();
+    }
+
+    /**
+     * @return Every record, grouped by province in enum order.
+     */
+    @Override
+    public List<String[]> readAllRecords () throws IOException {
+        return findRows(null, null);
+    }
+
+    /**
+     * A province query reads only that province's shard; anything else is gathered from all
+     * shards in parallel.
+     */
+    @Override
+    public List<String[]> findRows (String province, String category) throws IOException {
+        if (province != null && !province.isBlank()) {
+            // Provinces outside the enum share a shard, so the shard still applies the province filter
+            return shardFor(province).findRows(province, category);
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        for (List<String[]> shardRows : scatter(new ArrayList<>(shards.values()), shard -> shard.findRows(null, category))) {
+            rows.addAll(shardRows);
+        }
+        return rows;
+    }
+
+    /**
+     * Like {@link #findRows(String, String)}: a query that requires one province reads only
+     * that province's shard, anything else is planned on every shard in parallel.
+     */
+    @Override
+    public List<String[]> find (Query query) throws IOException {
+        String province = query.requiredValue(LandmarkCatalog.PROVINCE_COLUMN);
+        if (province != null) {
+            return shardFor(province).find(query);
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        for (List<String[]> shardRows : scatter(new ArrayList<>(shards.values()), shard -> shard.find(query))) {
+            rows.addAll(shardRows);
+        }
+        return rows;
+    }
+
+    @Override
+    public Stream<LandmarkRecord> streamRecords () throws IOException {
+        Stream<LandmarkRecord> records = Stream.empty();
+        for (DatabaseManager shard : shards.values()) {
+            records = Stream.concat(records, shard.streamRecords());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,190 @@
+package TourCatSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Places updated records inside the CSV database without rewriting it.
+ * <p>
+ * Every record owns a slot: its line plus any blank lines that follow it. Readers skip
+ * blank lines, so the padding is invisible to them. An update that fits the slot is written
+ * over it with one positional write, padded with line breaks, touching only the
+ * {@value #PAGE_SIZE}-byte page(s) the slot lies on. A longer row is moved to a free slot
+ * (preferably on the same page) or appended, and its old slot is blanked and becomes
+ * free space.
+ * <p>
+ * A moved row only ever goes forward, to a free slot after its current line. A tombstone
+ * ({@link Tombstones}) hides every earlier row with its ID, so a record re-added after a
+ * delete must stay after that tombstone; its current line is, being live, and so is
+ * anything after it.
+ * <p>
+ * {@link PrimaryKeyIndex} is the ID-to-slot directory; this class keeps the free-space map,
+ * ordered by file offset. The map is built from the file on first use and has to be
+ * {@link #invalidate() dropped} whenever the file is changed by anything else than this class.
+ */
+final class SlotAllocator {
+
+    static final int PAGE_SIZE = 4096;
+
+    private static final byte LINE_BREAK = '\n';
+    private static final int MIN_FREE_SLOT = 8; // Smaller gaps are not worth tracking
+
+    private final File csvFile;
+    private TreeMap<Long, Integer> freeSlots; // Offset of a free line start -> bytes available, built lazily
+
+    SlotAllocator (File csvFile) {
+        this.csvFile = csvFile;
+    }
+
+    /**
+     * Forgets the free-space map, e.g. after the file was rewritten.
+     */
+    void invalidate () {
+        freeSlots = null;
+    }
+
+    /**
+     * Writes a record's new line into its slot, or moves it if it no longer fits.
+     *
+     * @param offset  Start of the record's current line.
+     * @param lineEnd Offset just past the current line's line break.
+     * @param newLine The updated line, UTF-8 encoded, ending with a line break.
+     * @return Offset the record now lives at.
+     * @throws IOException If the file cannot be written.
+     */
+    long place (long offset, long lineEnd, byte[] newLine) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long slotEnd = skipLineBreaks(channel, lineEnd);
+            int capacity = (int) (slotEnd - offset);
+
+            if (newLine.length <= capacity) {
+                writeFully(channel, padded(newLine, capacity), offset);
+                if (freeSlots != null) {
+                    // Free space that followed the line now belongs to its slot
+                    freeSlots.subMap(offset, slotEnd).clear();
+                }
+                return offset;
+            }
+
+            // Write the new copy before blanking the old one, so a crash never loses the record
+            long target = takeFreeSlot(channel, newLine.length, offset);
+            if (target < 0) {
+                target = channel.size();
+                if (target > 0 && readByte(channel, target - 1) != LINE_BREAK) {
+                    writeFully(channel, ByteBuffer.wrap(new byte[]{LINE_BREAK}), target++);
+                }
+            }
+            writeFully(channel, ByteBuffer.wrap(newLine), target);
+            writeFully(channel, padded(new byte[0], capacity), offset);
+            if (freeSlots != null) {
+                freeSlots.subMap(offset, slotEnd).clear();
+                freeSlots.put(offset, capacity);
+            }
+            return target;
+        }
+    }
+
+    /**
+     * Finds a free slot of at least {@code length} bytes after the given offset, trying the
+     * rest of its page first, and removes the used part from the map.
+     *
+     * @return The slot's offset, or -1 if nothing fits.
+     */
+    private long takeFreeSlot (FileChannel channel, int length, long after) throws IOException {
+        if (freeSlots == null) {
+            freeSlots = scanFreeSlots(channel);
+        }
+
+        Long found = firstFit(freeSlots.subMap(after, false, (after / PAGE_SIZE + 1) * PAGE_SIZE, false), length);
+        if (found == null) {
+            found = firstFit(freeSlots.tailMap(after, false), length);
+        }
+        if (found == null) {
+            return -1;
+        }
+
+        int available = freeSlots.remove(found);
+        if (available - length >= MIN_FREE_SLOT) {
+            freeSlots.put(found + length, available - length);
+        }
+        return found;
+    }
+
+    private static Long firstFit (Map<Long, Integer> slots, int length) {
+        for (Map.Entry<Long, Integer> entry : slots.entrySet()) {
+            if (entry.getValue() >= length) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects runs of blank lines. In a run of line breaks the first one ends the line before,
+     * so the free slot starts right after it.
+     */
+    private static TreeMap<Long, Integer> scanFreeSlots (FileChannel channel) throws IOException {
+        TreeMap<Long, Integer> slots = new TreeMap<>();
+        long size = channel.size();
+        if (size == 0) {
+            return slots;
+        }
+        ByteBuffer bytes = MappedCsvReader.contents(channel, size); // Mapped under the same rule as every database reader
+        int i = 0;
+        while (i < size) {
+            if (bytes.get(i) != LINE_BREAK) {
+                i++;
+                continue;
+            }
+            int runStart = i;
+            while (i < size && bytes.get(i) == LINE_BREAK) i++;
+            int available = i - runStart - 1;
+            if (available >= MIN_FREE_SLOT && i < size) { // A trailing run is simply the end of the file
+                slots.put((long) runStart + 1, available);
+            }
+        }
+        return slots;
+    }
+
+    private static long skipLineBreaks (FileChannel channel, long from) throws IOException {
+        long size = channel.size();
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        long position = from;
+        while (position < size) {
+            page.clear();
+            int read = channel.read(page, position);
+            if (read <= 0) break;
+            for (int k = 0; k < read; k++) {
+                if (page.get(k) != LINE_BREAK) {
+                    return position + k;
+                }
+            }
+            position += read;
+        }
+        return Math.min(position, size);
+    }
+
+    private static ByteBuffer padded (byte[] line, int capacity) {
+        byte[] slot = Arrays.copyOf(line, capacity);
+        Arrays.fill(slot, line.length, capacity, LINE_BREAK);
+        return ByteBuffer.wrap(slot);
+    }
+
+    private static byte readByte (FileChannel channel, long position) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, position);
+        return one.get(0);
+    }
+
+    private static void writeFully (FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
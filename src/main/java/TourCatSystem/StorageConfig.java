@@ -0,0 +1,137 @@
+package TourCatSystem;
+
+/**
+ * Storage settings shared by every {@link DatabaseManager}.
+ * <p>
+ * Values come from system properties so they can be changed at launch
+ * (e.g. {@code java -Dtourcat.storage.mode=APPEND_LOG -jar TourCat.jar})
+ * without touching the GUI code that creates the managers.
+ */
+public final class StorageConfig {
+
+    /** Where records are kept, see {@link LandmarkRepository.Backend}. Default: CSV. */
+    public static final String STORAGE_BACKEND = "tourcat.storage.backend";
+    /** How deletes are persisted, see {@link DatabaseManager.StorageMode}. Default: REWRITE. */
+    public static final String STORAGE_MODE = "tourcat.storage.mode";
+    /** Fraction of dead lines (deleted rows plus tombstones) that triggers a compaction. Default: 0.5. */
+    public static final String COMPACTION_DEAD_RATIO = "tourcat.compaction.deadRatio";
+    /** Minimum number of dead lines before a compaction is considered. Default: 100. */
+    public static final String COMPACTION_MIN_DEAD = "tourcat.compaction.minDeadRecords";
+
+    /** Route {@link DatabaseManager#addRecord(String[])} through a group-committed write-ahead log. Default: false. */
+    public static final String WAL_ENABLED = "tourcat.wal.enabled";
+    /** Longest time (ms) a group commit waits for more records to join the batch. Default: 5. */
+    public static final String WAL_FLUSH_INTERVAL = "tourcat.wal.flushIntervalMillis";
+    /** Most records committed with a single sync. Default: 256. */
+    public static final String WAL_BATCH_SIZE = "tourcat.wal.batchSize";
+
+    /** Uncompressed size (bytes) of the blocks written by {@link DatabaseManager#pack()}. Default: 65536. */
+    public static final String COMPRESSION_BLOCK_SIZE = "tourcat.compression.blockSize";
+    /** Store catalog snapshots block-compressed as well. Default: false. */
+    public static final String SNAPSHOT_COMPRESSED = "tourcat.snapshot.compressed";
+
+    /** Where catalogs loaded from a snapshot keep their rows, see {@link LandmarkCatalog.Memory}. Default: HEAP. */
+    public static final String CATALOG_MEMORY = "tourcat.catalog.memory";
+    /** Most query results each {@link DatabaseManager} keeps in memory; 0 turns the cache off. Default: 64. */
+    public static final String QUERY_CACHE_SIZE = "tourcat.queryCache.size";
+
+    private StorageConfig () {
+    }
+
+    public static LandmarkRepository.Backend storageBackend () {
+        String value = System.getProperty(STORAGE_BACKEND);
+        if (value == null || value.isBlank()) {
+            return LandmarkRepository.Backend.CSV;
+        }
+        try {
+            return LandmarkRepository.Backend.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Unknown " + STORAGE_BACKEND + " '" + value + "', using CSV.");
+            return LandmarkRepository.Backend.CSV;
+        }
+    }
+
+    public static DatabaseManager.StorageMode storageMode () {
+        String value = System.getProperty(STORAGE_MODE);
+        if (value == null || value.isBlank()) {
+            return DatabaseManager.StorageMode.REWRITE;
+        }
+        try {
+            return DatabaseManager.StorageMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Unknown " + STORAGE_MODE + " '" + value + "', using REWRITE.");
+            return DatabaseManager.StorageMode.REWRITE;
+        }
+    }
+
+    public static LandmarkCatalog.Memory catalogMemory () {
+        String value = System.getProperty(CATALOG_MEMORY);
+        if (value == null || value.isBlank()) {
+            return LandmarkCatalog.Memory.HEAP;
+        }
+        try {
+            return LandmarkCatalog.Memory.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Warning: Unknown " + CATALOG_MEMORY + " '" + value + "', using HEAP.");
+            return LandmarkCatalog.Memory.HEAP;
+        }
+    }
+
+    public static double compactionDeadRatio () {
+        return doubleProperty(COMPACTION_DEAD_RATIO, 0.5);
+    }
+
+    public static int compactionMinDeadRecords () {
+        return intProperty(COMPACTION_MIN_DEAD, 100);
+    }
+
+    public static boolean walEnabled () {
+        return Boolean.parseBoolean(System.getProperty(WAL_ENABLED, "false").trim());
+    }
+
+    public static long walFlushIntervalMillis () {
+        return intProperty(WAL_FLUSH_INTERVAL, 5);
+    }
+
+    public static int walBatchSize () {
+        return intProperty(WAL_BATCH_SIZE, 256);
+    }
+
+    public static int compressionBlockSize () {
+        return Math.max(1024, intProperty(COMPRESSION_BLOCK_SIZE, 64 * 1024));
+    }
+
+    public static boolean snapshotCompressed () {
+        return Boolean.parseBoolean(System.getProperty(SNAPSHOT_COMPRESSED, "false").trim());
+    }
+
+    public static int queryCacheSize () {
+        return Math.max(0, intProperty(QUERY_CACHE_SIZE, 64));
+    }
+
+    static int intProperty (String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: Invalid value for " + name + " '" + value + "', using " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+
+    static double doubleProperty (String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Warning: Invalid value for " + name + " '" + value + "', using " + defaultValue + ".");
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package TourCatSystem;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable pool of strings stored back to back in one array, addressed by an int reference.
+ * <p>
+ * A {@link LandmarkCatalog} keeps its text columns here instead of one {@link String} per
+ * cell, which saves the per-object headers and lets equal values (cities, mostly) share one
+ * copy. Like {@link String} itself the arena stores one byte per character when every
+ * character fits (Latin-1) and falls back to UTF-16 otherwise.
+ * <p>
+ * The data lives in NIO buffers, either wrapping heap arrays or pointing into memory outside
+ * the Java heap (a direct buffer or a mapped {@link CatalogSnapshot}), see
+ * {@link LandmarkCatalog.Memory}.
+ * <p>
+ * Reading a string through {@link #get(int)} decodes a new {@link String}; {@link View}
+ * offers the same characters as a reusable {@link CharSequence} for loops that should not
+ * allocate per row.
+ */
+final class StringArena {
+
+    private final ByteBuffer latin1; // Every string, if all characters fit in one byte
+    private final CharBuffer utf16;  // Otherwise every string as UTF-16
+    private final IntBuffer starts;  // String i spans [starts[i], starts[i + 1])
+
+    StringArena (ByteBuffer latin1, CharBuffer utf16, IntBuffer starts) {
+        if ((latin1 == null) == (utf16 == null) || starts.limit() == 0) {
+            throw new IllegalArgumentException("An arena holds either Latin-1 or UTF-16 data, plus string starts");
+        }
+        this.latin1 = latin1;
+        this.utf16 = utf16;
+        this.starts = starts;
+    }
+
+    /**
+     * @return Number of distinct strings held.
+     */
+    int size () {
+        return starts.limit() - 1;
+    }
+
+    /**
+     * @return The string, decoded into a new {@link String}.
+     */
+    String get (int ref) {
+        int start = starts.get(ref);
+        int length = starts.get(ref + 1) - start;
+        if (latin1 == null) {
+            return utf16.subSequence(start, start + length).toString();
+        }
+        if (latin1.hasArray()) {
+            return new String(latin1.array(), latin1.arrayOffset() + start, length, StandardCharsets.ISO_8859_1);
+        }
+        byte[] bytes = new byte[length];
+        latin1.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    // --- Raw access for CatalogSnapshot ---
+
+    boolean isLatin1 () {
+        return latin1 != null;
+    }
+
+    ByteBuffer latin1 () {
+        return latin1.duplicate();
+    }
+
+    CharBuffer utf16 () {
+        return utf16.duplicate();
+    }
+
+    IntBuffer starts () {
+        return starts.duplicate();
+    }
+
+    /**
+     * A {@link CharSequence} over one string of the arena that can be moved to another
+     * string, so a loop over many rows can inspect text without allocating.
+     */
+    final class View implements CharSequence {
+        private int ref = -1;
+        private int start;
+        private int length;
+
+        /**
+         * @param ref The string to show from now on.
+         * @return This view.
+         */
+        View moveTo (int ref) {
+            this.ref = ref;
+            this.start = starts.get(ref);
+            this.length = starts.get(ref + 1) - start;
+            return this;
+        }
+
+        @Override
+        public int length () {
+            return length;
+        }
+
+        @Override
+        public char charAt (int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return latin1 != null ? (char) (latin1.get(start + index) & 0xFF) : utf16.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence (int from, int to) {
+            return toString().substring(from, to);
+        }
+
+        /**
+         * @return The current string as a new {@link String}.
+         */
+        @Override
+        public String toString () {
+            return ref < 0 ? "" : get(ref);
+        }
+    }
+
+    /**
+     * Collects strings into a new arena; adding a string that is already present returns the
+     * existing reference.
+     */
+    static final class Builder {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final StringBuilder chars = new StringBuilder();
+        private int[] starts = new int[64];
+        private int count = 0;
+        private boolean latin1 = true;
+
+        /**
+         * @param value The string to store.
+         * @return Its reference.
+         */
+        int add (String value) {
+            Integer ref = refs.get(value);
+            if (ref != null) {
+                return ref;
+            }
+            if (count + 1 == starts.length) {
+                starts = Arrays.copyOf(starts, starts.length * 2);
+            }
+            for (int i = 0; i < value.length() && latin1; i++) {
+                latin1 = value.charAt(i) <= 0xFF;
+            }
+            chars.append(value);
+            starts[++count] = chars.length();
+            refs.put(value, count - 1);
+            return count - 1;
+        }
+
+        StringArena build () {
+            IntBuffer finalStarts = IntBuffer.wrap(Arrays.copyOf(starts, count + 1));
+            if (!latin1) {
+                char[] utf16 = new char[chars.length()];
+                chars.getChars(0, chars.length(), utf16, 0);
+                return new StringArena(null, CharBuffer.wrap(utf16), finalStarts);
+            }
+            byte[] bytes = new byte[chars.length()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) chars.charAt(i);
+            }
+            return new StringArena(ByteBuffer.wrap(bytes), null, finalStarts);
+        }
+    }
+}
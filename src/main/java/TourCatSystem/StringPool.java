@@ -0,0 +1,102 @@
+package TourCatSystem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load-time interning pool for the low-cardinality columns of landmark rows.
+ * <p>
+ * Every parsed row carries its own copies of values like "Ontario" or "Historic Site".
+ * Passing the rows through a pool while they are loaded makes equal values share one
+ * {@link String}, so the copies become garbage straight away instead of living as long as
+ * the table model or {@link LandmarkStore} that holds the rows.
+ * <p>
+ * Unlike {@link String#intern()} the pool is private to its owner and goes away with it.
+ * It keeps an estimate of the bytes its deduplication saved, see {@link #savedBytes()}.
+ * Not thread-safe.
+ */
+public final class StringPool {
+
+    /** City, Province and Category; the columns whose values repeat across many rows. */
+    public static final int[] LOW_CARDINALITY_COLUMNS = {
+            LandmarkCatalog.CITY_COLUMN, LandmarkCatalog.PROVINCE_COLUMN, LandmarkCatalog.CATEGORY_COLUMN};
+
+    // Object sizes on a 64-bit JVM with compressed references (the default below 32 GB of heap)
+    private static final int STRING_BYTES = 24;
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    private final Map<String, String> values = new HashMap<>();
+    private long lookups = 0;
+    private long savedBytes = 0;
+
+    /**
+     * @param value A value, possibly null.
+     * @return The pooled instance equal to the value; the value itself the first time it is seen.
+     */
+    public String intern (String value) {
+        if (value == null) {
+            return null;
+        }
+        lookups++;
+        String pooled = values.putIfAbsent(value, value);
+        if (pooled == null) {
+            return value;
+        }
+        if (pooled != value) {
+            savedBytes += footprint(value);
+        }
+        return pooled;
+    }
+
+    /**
+     * Replaces the {@link #LOW_CARDINALITY_COLUMNS} of a row with their pooled instances.
+     *
+     * @param row A row in column order; missing columns are skipped.
+     * @return The same row.
+     */
+    public String[] internColumns (String[] row) {
+        for (int column : LOW_CARDINALITY_COLUMNS) {
+            if (column < row.length) {
+                row[column] = intern(row[column]);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return Number of distinct values held.
+     */
+    public int size () {
+        return values.size();
+    }
+
+    /**
+     * @return Estimated heap bytes no longer retained because a value was replaced by its pooled instance.
+     */
+    public long savedBytes () {
+        return savedBytes;
+    }
+
+    /**
+     * @return A one-line account of the pool, e.g. for a log message.
+     */
+    public String summary () {
+        return "Interned " + lookups + " values into " + values.size() + " strings, saving about "
+                + (savedBytes + 1023) / 1024 + " KB";
+    }
+
+    /**
+     * @return Estimated heap size of a string: the String object plus its byte array,
+     * one byte per character if every character is Latin-1 (compact strings), two otherwise.
+     */
+    static long footprint (String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length() && bytesPerChar == 1; i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+            }
+        }
+        long array = ARRAY_HEADER_BYTES + (long) value.length() * bytesPerChar;
+        return STRING_BYTES + ((array + 7) & -8);
+    }
+}
@@ -0,0 +1,44 @@
+package TourCatSystem;
+
+import java.util.Arrays;
+
+/**
+ * Helpers for the tombstone records written by {@link DatabaseManager} in
+ * {@link DatabaseManager.StorageMode#APPEND_LOG} mode.
+ * <p>
+ * Instead of rewriting the file, a delete appends a row whose ID column is the deleted
+ * ID prefixed with {@link #MARKER} (e.g. {@code !0002,,,,}). A tombstone hides every
+ * row with the same ID that appears <em>before</em> it, so a record re-added after its
+ * delete is still visible. {@link MappedCsvReader} applies this rule for everything
+ * that reads the file.
+ */
+public final class Tombstones {
+
+    /** Prefix placed in front of the ID column to mark a row as a tombstone. */
+    public static final String MARKER = "!";
+
+    private Tombstones () {
+    }
+
+    /**
+     * @param id The value of a row's ID column.
+     * @return true if that row is a tombstone.
+     */
+    public static boolean isTombstone (String id) {
+        return id != null && id.startsWith(MARKER);
+    }
+
+    /**
+     * Builds the tombstone row for a deleted record.
+     *
+     * @param id          The ID of the deleted record.
+     * @param columnCount Number of columns in the file, so the row stays well-formed.
+     * @return The tombstone row.
+     */
+    public static String[] rowFor (String id, int columnCount) {
+        String[] row = new String[Math.max(columnCount, 1)];
+        Arrays.fill(row, "");
+        row[0] = MARKER + id;
+        return row;
+    }
+}
@@ -0,0 +1,213 @@
+package TourCatSystem;
+
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Durable write-ahead log with group commit, used by {@link DatabaseManager#addRecord(String[])}
+ * when {@link StorageConfig#WAL_ENABLED} is set.
+ * <p>
+ * Callers {@link #submit(String[]) submit} a record and wait on the returned future. A single
+ * flusher thread collects whatever has been submitted - up to the batch size, or until the
+ * flush interval runs out - writes the whole batch to the log with one {@code write} and one
+ * {@code fsync}, hands it to the {@link BatchApplier} (which appends it to the CSV), and only
+ * then completes the futures. Concurrent adds therefore share a single sync.
+ * <p>
+ * Each log line is {@code crc32,field0,field1,...}; a torn or corrupt tail is detected by the
+ * checksum and ignored on {@link #readCommitted() recovery}. The owner truncates the log once
+ * the CSV has been synced (a checkpoint).
+ */
+class WriteAheadLog {
+
+    /**
+     * Applies a committed batch to the main database file.
+     */
+    interface BatchApplier {
+        void apply (List<String[]> rows) throws IOException;
+    }
+
+    private static final long IDLE_TIMEOUT_MILLIS = 30_000; // Flusher thread exits after this long without work
+
+    private final File walFile;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final BatchApplier applier;
+    private final CSVParser parser = new CSVParserBuilder().withSeparator(CSVWriter.DEFAULT_SEPARATOR).build();
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private boolean flusherRunning = false;
+
+    private static class PendingWrite {
+        final String[] row;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite (String[] row) {
+            this.row = row;
+        }
+    }
+
+    WriteAheadLog (File walFile, int batchSize, long flushIntervalMillis, BatchApplier applier) {
+        this.walFile = walFile;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(0, flushIntervalMillis);
+        this.applier = applier;
+    }
+
+    /**
+     * Queues a record for the next group commit.
+     *
+     * @param row The record to log.
+     * @return A future completed once the record is synced to the log and applied,
+     * or completed exceptionally if either step failed.
+     */
+    CompletableFuture<Void> submit (String[] row) {
+        PendingWrite pending = new PendingWrite(row);
+        queue.add(pending);
+        synchronized (this) {
+            if (!flusherRunning) {
+                flusherRunning = true;
+                Thread flusher = new Thread(this::runFlusher, "TourCat-wal-" + walFile.getName());
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+        }
+        return pending.done;
+    }
+
+    private void runFlusher () {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                PendingWrite first = queue.poll(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    synchronized (this) {
+                        if (queue.isEmpty()) {
+                            flusherRunning = false;
+                            return;
+                        }
+                    }
+                    continue;
+                }
+
+                // Give concurrent writers a short window to join this batch
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+
+                commit(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                flusherRunning = false;
+            }
+            batch.addAll(queue);
+            batch.forEach(pending -> pending.done.completeExceptionally(new IOException("Write-ahead log flusher interrupted")));
+        }
+    }
+
+    private void commit (List<PendingWrite> batch) {
+        List<String[]> rows = new ArrayList<>(batch.size());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 96);
+        for (PendingWrite pending : batch) {
+            rows.add(pending.row);
+            byte[] line = encode(pending.row);
+            bytes.write(line, 0, line.length);
+        }
+
+        try {
+            try (FileChannel channel = FileChannel.open(walFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false); // The one sync for the whole batch
+            }
+            applier.apply(rows);
+            batch.forEach(pending -> pending.done.complete(null));
+        } catch (IOException | RuntimeException e) {
+            batch.forEach(pending -> pending.done.completeExceptionally(e));
+        }
+    }
+
+    private static byte[] encode (String[] row) {
+        String record = String.join(",", row);
+        CRC32 crc = new CRC32();
+        byte[] recordBytes = record.getBytes(StandardCharsets.UTF_8);
+        crc.update(recordBytes);
+        return (Long.toHexString(crc.getValue()) + "," + record + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads every intact record in the log, in commit order. Reading stops at the first line
+     * whose checksum does not match (a write torn by a crash).
+     *
+     * @return The committed records.
+     * @throws IOException If the log exists but cannot be read.
+     */
+    List<String[]> readCommitted () throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        if (!walFile.isFile()) {
+            return rows;
+        }
+
+        for (String line : Files.readAllLines(walFile.toPath(), StandardCharsets.UTF_8)) {
+            int comma = line.indexOf(',');
+            if (comma < 0) break;
+
+            String record = line.substring(comma + 1);
+            CRC32 crc = new CRC32();
+            crc.update(record.getBytes(StandardCharsets.UTF_8));
+            if (!Long.toHexString(crc.getValue()).equals(line.substring(0, comma))) {
+                System.err.println("Warning: Ignoring corrupt tail of write-ahead log " + walFile.getName());
+                break;
+            }
+            rows.add(parser.parseLine(record));
+        }
+        return rows;
+    }
+
+    /**
+     * @return Current size of the log in bytes.
+     */
+    long size () {
+        return walFile.length();
+    }
+
+    /**
+     * Empties the log. Only call once everything in it is durable in the main file.
+     *
+     * @throws IOException If the log cannot be truncated.
+     */
+    void truncate () throws IOException {
+        if (walFile.exists()) {
+            try (FileChannel channel = FileChannel.open(walFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+                channel.force(true);
+            }
+        }
+    }
+}
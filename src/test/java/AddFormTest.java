@@ -92,6 +92,8 @@ class AddFormTest {
         // Clean up the database file after each test
         if (testDatabasePath != null) {
             Files.deleteIfExists(testDatabasePath);
+            Files.deleteIfExists(Paths.get(testDatabasePath + ".idx")); // ID index kept next to the database
+            Files.deleteIfExists(Paths.get(testDatabasePath + ".lock")); // Writer lock and version stamp
         }
         // Clean up any potential image files created during tests (more robust cleanup needed if image tests are active)
         // Example: Files.walk(testImagePath).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
@@ -0,0 +1,125 @@
+import TourCatSystem.CatalogSnapshot;
+import TourCatSystem.DatabaseManager;
+import TourCatSystem.LandmarkCatalog;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+
+    private static final long OLD_TIME = 1_000_000_000_000L;
+
+    @TempDir
+    Path tempDir;
+
+    File databaseFile;
+
+    @BeforeEach
+    void setupTest () throws IOException {
+        databaseFile = tempDir.resolve("testDB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park",
+                "0003,Pont de l'Île d'Orléans — Nord,Québec,Quebec,Bridge"
+        ), StandardCharsets.UTF_8);
+    }
+
+    private static List<String[]> rows (LandmarkCatalog catalog) {
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < catalog.getRowCount(); i++) {
+            rows.add(catalog.getRow(i));
+        }
+        return rows;
+    }
+
+    @Test
+    @DisplayName("Should read back the rows it wrote without rewriting the snapshot")
+    void roundTrip () throws IOException {
+        File snapshotFile = CatalogSnapshot.snapshotFileFor(databaseFile);
+        List<String[]> parsed = rows(CatalogSnapshot.load(databaseFile));
+        assertTrue(snapshotFile.isFile());
+        assertTrue(snapshotFile.setLastModified(OLD_TIME));
+
+        LandmarkCatalog loaded = CatalogSnapshot.load(databaseFile);
+
+        assertEquals(OLD_TIME, snapshotFile.lastModified(), "An up-to-date snapshot is read, not rewritten");
+        assertArrayEquals(new String[]{"ID", "Name", "City", "Province", "Category"}, loaded.getHeader());
+        assertEquals(3, loaded.getRowCount());
+        for (int i = 0; i < parsed.size(); i++) {
+            assertArrayEquals(parsed.get(i), loaded.getRow(i));
+        }
+        assertEquals("Pont de l'Île d'Orléans — Nord", loaded.getName(2));
+    }
+
+    @Test
+    @DisplayName("Should notice a same-length update from the version stamp alone")
+    void staleStampIsReparsed () throws Exception {
+        CatalogSnapshot.load(databaseFile);
+        long length = databaseFile.length();
+        long lastModified = databaseFile.lastModified();
+
+        new DatabaseManager(databaseFile).updateRecord("0002",
+                new String[]{"0002", "Stanley Yard", "Vancouver", "British Columbia", "Park"});
+        assertTrue(databaseFile.setLastModified(lastModified));
+        assertEquals(length, databaseFile.length());
+
+        LandmarkCatalog loaded = CatalogSnapshot.load(databaseFile);
+        assertEquals("Stanley Yard", loaded.getName(1));
+        assertEquals("Stanley Yard", CatalogSnapshot.load(databaseFile).getName(1), "The rewritten snapshot is current");
+    }
+
+    @Test
+    @DisplayName("Should let concurrent loads write the snapshot without clobbering each other")
+    void concurrentWritersLeaveOneSnapshot () throws Exception {
+        List<String[]> expected = rows(LandmarkCatalog.fromCsv(databaseFile));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        PrintStream err = System.err;
+        ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(warnings, true, StandardCharsets.UTF_8));
+        try {
+            for (int round = 0; round < 20; round++) {
+                Files.deleteIfExists(CatalogSnapshot.snapshotFileFor(databaseFile).toPath());
+                List<Future<LandmarkCatalog>> loads = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    loads.add(pool.submit(() -> CatalogSnapshot.load(databaseFile)));
+                }
+                for (Future<LandmarkCatalog> load : loads) {
+                    List<String[]> actual = rows(load.get());
+                    assertEquals(expected.size(), actual.size());
+                    for (int i = 0; i < expected.size(); i++) {
+                        assertArrayEquals(expected.get(i), actual.get(i));
+                    }
+                }
+            }
+        } finally {
+            System.setErr(err);
+            pool.shutdown();
+        }
+        assertFalse(warnings.toString(StandardCharsets.UTF_8).contains("Could not write"), warnings.toString(StandardCharsets.UTF_8));
+
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(), files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith("tmp")).toList(), "No temporary files are left behind");
+        }
+        File snapshotFile = CatalogSnapshot.snapshotFileFor(databaseFile);
+        assertTrue(snapshotFile.setLastModified(OLD_TIME));
+        CatalogSnapshot.load(databaseFile);
+        assertEquals(OLD_TIME, snapshotFile.lastModified(), "The surviving snapshot is complete and current");
+    }
+}
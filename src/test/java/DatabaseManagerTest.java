@@ -0,0 +1,466 @@
+import TourCatSystem.BatchResult;
+import TourCatSystem.DatabaseManager;
+import TourCatSystem.DatabaseWatcher;
+import TourCatSystem.Filter;
+import TourCatSystem.LandmarkCatalog;
+import TourCatSystem.LandmarkId;
+import TourCatSystem.LandmarkRecord;
+import TourCatSystem.Query;
+import TourCatSystem.StorageConfig;
+import com.opencsv.exceptions.CsvException;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    File databaseFile;
+
+    @BeforeEach
+    void setupTest () throws IOException {
+        databaseFile = tempDir.resolve("testDB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park",
+                "0003,Old Quebec,Quebec City,Quebec,Historic Site"
+        ), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should look up a record by ID through the ID index")
+    void getByIdReturnsRecord () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+
+        assertArrayEquals(new String[]{"0002", "Stanley Park", "Vancouver", "British Columbia", "Park"},
+                manager.getById("0002"));
+        assertThrows(DatabaseManager.RecordNotFoundException.class, () -> manager.getById("9999"));
+    }
+
+    @Test
+    @DisplayName("Should keep its own copies of added and returned records")
+    void addRecordCopiesRow () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+        assertEquals(3, manager.readAllRecords().size()); // Loads the resident store
+        String[] row = {"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"};
+        manager.addRecord(row);
+        row[1] = "Changed by the caller";
+
+        assertEquals("Niagara Falls", manager.readAllRecords().get(3)[1]);
+        manager.readAllRecords().get(0)[1] = "Changed by the caller";
+        assertEquals("CN Tower", manager.getById("0001")[1], "Returned rows are copies too");
+        assertEquals("CN Tower", manager.readAllRecords().get(0)[1]);
+    }
+
+    @Test
+    @DisplayName("Should reject IDs that readers would take for tombstones")
+    void rejectsTombstoneMarkerIds () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.addRecord(new String[]{"!0001", "Fake", "Toronto", "Ontario", "Landmark"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.updateRecord("!0001", new String[]{"!0001", "Fake", "Toronto", "Ontario", "Landmark"}));
+        BatchResult added = manager.addRecords(List.of(
+                new String[]{"!0002", "Fake", "Vancouver", "British Columbia", "Park"},
+                new String[]{"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"}));
+        assertEquals(List.of("!0002"), added.idsWith(BatchResult.Outcome.INVALID));
+        assertEquals(List.of("0004"), added.idsWith(BatchResult.Outcome.ADDED));
+
+        assertEquals(List.of("0001", "0002", "0003", "0004"),
+                new DatabaseManager(databaseFile).readAllRecords().stream().map(row -> row[0]).toList(), "No record was hidden");
+    }
+
+    @Test
+    @DisplayName("Should delete a record and keep the file and header in sync")
+    void deleteByIdRewritesFile () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+        manager.deleteById("0002");
+
+        List<String> lines = Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0003,Old Quebec,Quebec City,Quebec,Historic Site"
+        ), lines);
+        assertThrows(DatabaseManager.RecordNotFoundException.class, () -> manager.deleteById("0002"));
+    }
+
+    @Test
+    @DisplayName("Should pick up records written by another manager on the same file")
+    void reloadsAfterOutsideChange () throws IOException, CsvException, DatabaseManager.RecordNotFoundException {
+        DatabaseManager reader = new DatabaseManager(databaseFile);
+        DatabaseManager writer = new DatabaseManager(databaseFile);
+
+        String[] added = {"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"};
+        writer.addRecord(added);
+
+        assertArrayEquals(added, reader.getById("0004"));
+        assertEquals(4, reader.readAllRecords().size());
+    }
+
+    @Test
+    @DisplayName("Should append tombstones in APPEND_LOG mode and fold them away on compaction")
+    void appendLogDeleteAndCompact () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        manager.deleteById("0002");
+
+        List<String> lines = Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size(), "Delete should only append a tombstone");
+        assertEquals("!0002,,,,", lines.get(4));
+        assertEquals(2, manager.getDeadRecordCount());
+
+        // A fresh manager must merge the tombstone when loading
+        DatabaseManager reopened = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        assertThrows(DatabaseManager.RecordNotFoundException.class, () -> reopened.getById("0002"));
+        assertEquals(2, reopened.readAllRecords().size());
+
+        reopened.compact();
+        assertEquals(3, Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8).size());
+        assertEquals(0, reopened.getDeadRecordCount());
+    }
+
+    @Test
+    @DisplayName("Should group-commit concurrent adds through the WAL and replay it on startup")
+    void writeAheadLogCommitsAndRecovers () throws Exception {
+        System.setProperty(StorageConfig.WAL_ENABLED, "true");
+        try {
+            DatabaseManager manager = new DatabaseManager(databaseFile);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<?>> adds = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                String id = String.format("1%03d", i);
+                adds.add(pool.submit(() -> {
+                    manager.addRecord(new String[]{id, "Name" + id, "City", "Ontario", "Park"});
+                    return null;
+                }));
+            }
+            for (Future<?> add : adds) {
+                add.get();
+            }
+            pool.shutdown();
+            assertEquals(53, new DatabaseManager(databaseFile).readAllRecords().size());
+
+            // Simulate a crash after the log was synced but before the CSV append
+            File walFile = new File(databaseFile.getAbsolutePath() + ".wal");
+            String row = "2000,Lost,City,Ontario,Park";
+            CRC32 crc = new CRC32();
+            crc.update(row.getBytes(StandardCharsets.UTF_8));
+            Files.writeString(walFile.toPath(), Long.toHexString(crc.getValue()) + "," + row + "\n" + "deadbeef,torn", StandardCharsets.UTF_8);
+
+            DatabaseManager recovered = new DatabaseManager(databaseFile);
+            assertEquals("Lost", recovered.getById("2000")[1]);
+            assertEquals(0, walFile.length(), "Log should be truncated after recovery");
+        } finally {
+            System.clearProperty(StorageConfig.WAL_ENABLED);
+        }
+    }
+
+    @Test
+    @DisplayName("Should add and delete in batches and report each record's outcome")
+    void batchAddAndDelete () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+
+        BatchResult added = manager.addRecords(List.of(
+                new String[]{"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"},
+                new String[]{"0005", "Incomplete"},
+                new String[]{"0006", "The Forks", "Winnipeg", "Manitoba", "Cultural Site"}));
+        assertEquals(List.of(BatchResult.Outcome.ADDED, BatchResult.Outcome.INVALID, BatchResult.Outcome.ADDED),
+                List.of(added.getOutcome(0), added.getOutcome(1), added.getOutcome(2)));
+
+        BatchResult deleted = manager.deleteByIds(List.of("0001", "9999", "0004"));
+        assertEquals(List.of("0001", "0004"), deleted.idsWith(BatchResult.Outcome.DELETED));
+        assertEquals(List.of("9999"), deleted.idsWith(BatchResult.Outcome.NOT_FOUND));
+
+        List<String[]> remaining = new DatabaseManager(databaseFile).readAllRecords();
+        assertEquals(List.of("0002", "0003", "0006"), remaining.stream().map(row -> row[0]).toList());
+    }
+
+    @Test
+    @DisplayName("Should answer multi-gets and existence checks from a persistent index and reject duplicate IDs")
+    void idIndexLookupsAndDuplicates () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        assertTrue(new File(databaseFile.getAbsolutePath() + ".idx").isFile());
+
+        manager.deleteById("0001");
+        manager.addRecord(new String[]{"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"});
+        assertFalse(manager.containsId("0001"));
+        assertTrue(manager.containsId("0004"));
+
+        assertThrows(DatabaseManager.DuplicateIdException.class,
+                () -> manager.addRecord(new String[]{"0002", "Copy", "Vancouver", "British Columbia", "Park"}));
+        BatchResult added = manager.addRecords(List.of(
+                new String[]{"0003", "Copy", "Quebec City", "Quebec", "Historic Site"},
+                new String[]{"0005", "Peggy's Cove", "Halifax", "Nova Scotia", "Landmark"},
+                new String[]{"0005", "Copy", "Halifax", "Nova Scotia", "Landmark"}));
+        assertEquals(List.of("0003", "0005"), added.idsWith(BatchResult.Outcome.DUPLICATE));
+
+        // A second manager starts from the index file and catches up with the appended tail
+        DatabaseManager reopened = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        Map<String, String[]> found = reopened.getByIds(List.of("0005", "0001", "0002"));
+        assertEquals(List.of("0005", "0002"), List.copyOf(found.keySet()));
+        assertEquals("Peggy's Cove", found.get("0005")[1]);
+        assertEquals("Stanley Park", found.get("0002")[1]);
+        assertEquals(2, reopened.getDeadRecordCount());
+    }
+
+    @Test
+    @DisplayName("Should not append to an index file another manager has rewritten since")
+    void indexAppendChecksFileLength () throws Exception {
+        DatabaseManager first = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        first.deleteById("0001"); // Appends a removal to first's index log
+
+        // A second manager rebuilds the index (a shorter log) and appends to it
+        Files.delete(Path.of(databaseFile.getAbsolutePath() + ".idx"));
+        DatabaseManager second = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        second.addRecord(new String[]{"0004", "Niagara Falls", "Niagara Falls", "Ontario", "Natural Wonder"});
+
+        assertTrue(first.containsId("0004")); // first catches up and persists its index
+
+        PrintStream err = System.err;
+        ByteArrayOutputStream warnings = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(warnings, true, StandardCharsets.UTF_8));
+        try {
+            DatabaseManager reopened = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+            assertEquals(List.of("0002", "0003", "0004"), reopened.readAllRecords().stream().map(row -> row[0]).toList());
+        } finally {
+            System.setErr(err);
+        }
+        assertFalse(warnings.toString(StandardCharsets.UTF_8).contains("Rebuilding"), warnings.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should update a record in its slot and move it only when the new row is longer")
+    void updateRecordInPlace () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+        DatabaseManager other = new DatabaseManager(databaseFile);
+        long length = databaseFile.length();
+
+        manager.updateRecord("0002", new String[]{"0002", "Stanley Park", "Burnaby", "British Columbia", "Park"});
+        assertEquals(length, databaseFile.length(), "A shorter row should be written over its old slot");
+        List<String> lines = Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals("0002,Stanley Park,Burnaby,British Columbia,Park", lines.get(2));
+        assertEquals(List.of("", ""), lines.subList(3, 5), "The two spare bytes should become blank padding");
+        assertEquals("0003,Old Quebec,Quebec City,Quebec,Historic Site", lines.get(5));
+
+        String[] longer = {"0001", "CN Tower", "Toronto", "Ontario", "Landmark and Observation Deck"};
+        manager.updateRecord("0001", longer);
+        assertArrayEquals(longer, manager.getById("0001"));
+        assertArrayEquals(longer, other.getById("0001"));
+        assertEquals("Burnaby", other.getById("0002")[2]);
+        assertEquals(3, new DatabaseManager(databaseFile).readAllRecords().size());
+
+        assertThrows(DatabaseManager.RecordNotFoundException.class,
+                () -> manager.updateRecord("9999", new String[]{"9999", "Nowhere", "City", "Ontario", "Park"}));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.updateRecord("0003", new String[]{"0004", "Old Quebec", "Quebec City", "Quebec", "Historic Site"}));
+    }
+
+    @Test
+    @DisplayName("Should not move a re-added record's row in front of the tombstone of its earlier delete")
+    void movedRowStaysAfterTombstone () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        // Growing 0002 moves it to the end and frees its old line near the start of the file
+        manager.updateRecord("0002", new String[]{"0002", "Stanley Park", "Vancouver", "British Columbia", "Park and Seawall"});
+        manager.deleteById("0003");
+        manager.addRecord(new String[]{"0003", "Q", "Q", "Quebec", "Park"});
+
+        // Too long for its own slot, short enough for the freed one before the tombstone
+        String[] grown = {"0003", "Old Quebec", "Quebec City", "Quebec", "Fort"};
+        manager.updateRecord("0003", grown);
+
+        assertArrayEquals(grown, manager.getById("0003"));
+        DatabaseManager reopened = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        assertEquals(List.of("0001", "0002", "0003"), reopened.readAllRecords().stream().map(row -> row[0]).sorted().toList());
+        assertEquals("Old Quebec", new Filter(databaseFile).rows(Query.eq(LandmarkCatalog.ID_COLUMN, "0003")).get(0)[1]);
+    }
+
+    @Test
+    @DisplayName("Should not serve a stale catalog after an update that kept the file's length and timestamp")
+    void sameLengthUpdateRefreshesCatalog () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile);
+        Query toronto = Query.prefix(LandmarkCatalog.CITY_COLUMN, "Tor");
+        int[] reloads = {0};
+        try (DatabaseWatcher watcher = DatabaseWatcher.start(databaseFile, new DatabaseWatcher.Listener() {
+            @Override
+            public void rowsAppended (List<String[]> rows, Set<String> deletedIds) {
+            }
+
+            @Override
+            public void fileReplaced () {
+                reloads[0]++;
+            }
+        })) {
+            assertEquals("Toronto", manager.find(toronto).get(0)[2]); // Loads the catalog and writes its snapshot
+            long length = databaseFile.length();
+            long lastModified = databaseFile.lastModified();
+
+            manager.updateRecord("0001", new String[]{"0001", "CN Tower", "Torxnto", "Ontario", "Landmark"});
+            assertTrue(databaseFile.setLastModified(lastModified)); // As if within one timestamp tick
+            assertEquals(length, databaseFile.length());
+
+            assertEquals("Torxnto", manager.find(toronto).get(0)[2], "Filter catalog");
+            int hits = manager.getQueryCacheHits();
+            assertEquals("Torxnto", manager.find(toronto).get(0)[2], "Query cache");
+            assertEquals(hits + 1, manager.getQueryCacheHits());
+            assertEquals("Torxnto", new Filter(databaseFile).rows(toronto).get(0)[2], "Catalog snapshot");
+            watcher.checkForChanges();
+            assertTrue(reloads[0] > 0, "The watcher should report the update");
+        }
+    }
+
+    @Test
+    @DisplayName("Should catch up with another manager's in-place update before rewriting the file")
+    void writersCheckVersionStamp () throws Exception {
+        DatabaseManager first = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.REWRITE);
+        DatabaseManager second = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.REWRITE);
+        assertEquals(3, first.readAllRecords().size()); // Loads first's resident store
+
+        long before = first.getVersion();
+        second.updateRecord("0002", new String[]{"0002", "Stanley Park", "Vancouver", "British Columbia", "Trail"});
+        assertTrue(first.getVersion() > before, "Committed writes bump the shared stamp");
+
+        // The update kept the file's length; only the stamp tells first its store is stale
+        first.deleteById("0003");
+        assertEquals(List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Trail"
+        ), Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8));
+        assertEquals("Trail", second.getById("0002")[4]);
+    }
+
+    @Test
+    @DisplayName("Should stream records lazily and skip deleted ones")
+    void streamRecordsIsLazy () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        manager.deleteById("0001");
+
+        try (Stream<LandmarkRecord> records = manager.streamRecords()) {
+            assertEquals(List.of("Stanley Park"), records.limit(1).map(LandmarkRecord::getName).toList());
+        }
+        try (Stream<LandmarkRecord> records = manager.streamRecords()) {
+            assertEquals(2, records.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Should pack the file into compressed blocks, read it transparently and unpack it on the next write")
+    void packCompressesAndStaysReadable () throws Exception {
+        List<String> lines = new ArrayList<>(List.of("ID,Name,City,Province,Category"));
+        for (int i = 1; i <= 5000; i++) {
+            lines.add(String.format("%05d,Landmark %d,Toronto,Ontario,Park", i, i));
+        }
+        Files.write(databaseFile.toPath(), lines, StandardCharsets.UTF_8);
+        long plainLength = databaseFile.length();
+
+        System.setProperty(StorageConfig.COMPRESSION_BLOCK_SIZE, "4096");
+        try {
+            new DatabaseManager(databaseFile).pack();
+        } finally {
+            System.clearProperty(StorageConfig.COMPRESSION_BLOCK_SIZE);
+        }
+        assertTrue(databaseFile.length() * 5 < plainLength, "Packed " + databaseFile.length() + " of " + plainLength + " bytes");
+
+        DatabaseManager reader = new DatabaseManager(databaseFile);
+        assertTrue(reader.isPacked());
+        assertEquals("Landmark 4321", reader.getById("04321")[1]);
+        assertEquals(List.of("00001", "05000"), List.copyOf(reader.getByIds(List.of("00001", "05000")).keySet()));
+        assertEquals(5000, reader.readAllRecords().size());
+
+        reader.addRecord(new String[]{"05001", "Citadel", "Halifax", "Nova Scotia", "Historic Site"});
+        assertFalse(reader.isPacked());
+        lines.add("05001,Citadel,Halifax,Nova Scotia,Historic Site");
+        assertEquals(lines, Files.readAllLines(databaseFile.toPath(), StandardCharsets.UTF_8));
+        assertEquals("Landmark 17", reader.getById("00017")[1]);
+    }
+
+    @Test
+    @DisplayName("Should generate compact, increasing IDs and migrate legacy IDs in file order")
+    void compactIdsAndMigration () throws Exception {
+        DatabaseManager first = new DatabaseManager(databaseFile);
+        DatabaseManager second = new DatabaseManager(databaseFile);
+        String previous = "";
+        for (int i = 0; i < 5000; i++) {
+            String id = (i % 2 == 0 ? first : second).getNextID();
+            assertEquals(LandmarkId.LENGTH, id.length());
+            assertTrue(id.compareTo(previous) > 0, "IDs sort in the order they were generated");
+            assertEquals(id, LandmarkId.format(LandmarkId.parse(id)));
+            previous = id;
+        }
+        assertFalse(LandmarkId.isCompact("0001"));
+        assertFalse(LandmarkId.isCompact("0cq6j0t2g000a"), "Only the canonical upper-case form is compact");
+
+        String added = first.getNextID();
+        first.addRecord(new String[]{added, "Citadel", "Halifax", "Nova Scotia", "Historic Site"});
+        assertEquals("Citadel", second.getById(added)[1]);
+
+        Map<String, String> renamed = second.migrateLegacyIds();
+        assertEquals(List.of("0001", "0002", "0003"), List.copyOf(renamed.keySet()));
+        List<String> ids = first.readAllRecords().stream().map(row -> row[0]).toList();
+        assertEquals(List.of(renamed.get("0001"), renamed.get("0002"), renamed.get("0003"), added), ids);
+        assertTrue(renamed.get("0003").compareTo(renamed.get("0001")) > 0);
+        assertEquals("CN Tower", first.getById(renamed.get("0001"))[1]);
+        assertFalse(first.containsId("0001"));
+        assertTrue(second.migrateLegacyIds().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should serve repeated queries from the cache and drop only the entries a write affects")
+    void queryCacheInvalidation () throws Exception {
+        DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+        Query ontario = Query.forFilters("Ontario", null);
+        Query parks = Query.eq(LandmarkCatalog.CATEGORY_COLUMN, "Park");
+        assertEquals(parks, Query.in(LandmarkCatalog.CATEGORY_COLUMN, " PARK "), "Queries are normalized");
+
+        assertEquals(List.of("0001"), ids(manager.find(ontario)));
+        assertEquals(List.of("0002"), ids(manager.find(parks)));
+        assertEquals(List.of("0001"), ids(manager.find(ontario)));
+        assertEquals(List.of("0002"), ids(manager.find(Query.in(LandmarkCatalog.CATEGORY_COLUMN, "park"))));
+        assertEquals(2, manager.getQueryCacheHits());
+
+        // An Ontario museum can only change Ontario queries
+        manager.addRecord(new String[]{"0004", "Royal Ontario Museum", "Toronto", "ontario", "Museum"});
+        assertEquals(List.of("0002"), ids(manager.find(parks)));
+        assertEquals(3, manager.getQueryCacheHits());
+        assertEquals(List.of("0001", "0004"), ids(manager.find(ontario)));
+        assertEquals(3, manager.getQueryCacheHits());
+
+        manager.deleteById("0002");
+        assertEquals(List.of("0001", "0004"), ids(manager.find(ontario)));
+        assertEquals(4, manager.getQueryCacheHits());
+        assertEquals(List.of(), ids(manager.find(parks)));
+
+        // A write by another manager could have changed anything
+        new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG)
+                .addRecord(new String[]{"0005", "Algonquin", "Whitney", "Ontario", "Park"});
+        assertEquals(List.of("0001", "0004", "0005"), ids(manager.find(ontario)));
+        assertEquals(List.of("0005"), ids(manager.find(parks)));
+        assertEquals(4, manager.getQueryCacheHits());
+    }
+
+    private static List<String> ids (List<String[]> rows) {
+        return rows.stream().map(row -> row[0]).toList();
+    }
+}
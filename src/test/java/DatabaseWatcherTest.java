@@ -0,0 +1,69 @@
+import TourCatSystem.DatabaseManager;
+import TourCatSystem.DatabaseWatcher;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Should report appended rows from the tail only and fall back to a reload on rewrite")
+    void reportsTailAndRewrites () throws Exception {
+        File databaseFile = tempDir.resolve("watchDB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park"
+        ), StandardCharsets.UTF_8);
+
+        // The watcher thread may deliver some of the changes itself
+        List<String> appended = new CopyOnWriteArrayList<>();
+        List<Set<String>> deleted = new CopyOnWriteArrayList<>();
+        AtomicInteger reloads = new AtomicInteger();
+        try (DatabaseWatcher watcher = DatabaseWatcher.start(databaseFile, new DatabaseWatcher.Listener() {
+            @Override
+            public void rowsAppended (List<String[]> rows, Set<String> deletedIds) {
+                rows.forEach(row -> appended.add(row[0]));
+                deleted.add(deletedIds);
+            }
+
+            @Override
+            public void fileReplaced () {
+                reloads.incrementAndGet();
+            }
+        })) {
+            DatabaseManager manager = new DatabaseManager(databaseFile, DatabaseManager.StorageMode.APPEND_LOG);
+            manager.addRecord(new String[]{"0003", "Old Quebec", "Quebec City", "Quebec", "Historic Site"});
+            manager.deleteById("0001");
+            // A line still being written is held back until it is complete
+            Files.writeString(databaseFile.toPath(), "0004,Half", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            watcher.checkForChanges(); // Don't wait for the watcher thread
+            assertEquals(List.of("0003"), appended);
+            assertTrue(deleted.stream().anyMatch(ids -> ids.contains("0001")));
+
+            Files.writeString(databaseFile.toPath(), " Written,City,Ontario,Park\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            watcher.checkForChanges();
+            assertEquals(List.of("0003", "0004"), appended);
+            assertEquals(0, reloads.get());
+
+            manager.compact();
+            watcher.checkForChanges();
+            assertEquals(1, reloads.get());
+        }
+    }
+}
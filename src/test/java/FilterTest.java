@@ -0,0 +1,358 @@
+import TourCatGUI.Catalog.CatalogTableModel;
+import TourCatSystem.CatalogSnapshot;
+import TourCatSystem.Facets;
+import TourCatSystem.Filter;
+import TourCatSystem.Landmark;
+import TourCatSystem.LandmarkCatalog;
+import TourCatSystem.Query;
+import TourCatSystem.RowSet;
+import TourCatSystem.StorageConfig;
+import TourCatSystem.StringPool;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilterTest {
+
+    @TempDir
+    Path tempDir;
+
+    File databaseFile;
+
+    @BeforeEach
+    void setupTest () throws IOException {
+        databaseFile = tempDir.resolve("filterDB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park",
+                "0003,Niagara Falls,Niagara Falls,ontario,Waterfall",
+                "0004,Capilano Bridge,North Vancouver,BC,Park"
+        ), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should encode provinces as enum ordinals and filter by code, ignoring case")
+    void filtersOnEncodedColumns () throws IOException {
+        LandmarkCatalog catalog = CatalogSnapshot.load(databaseFile);
+        assertEquals(Landmark.PROVINCE.ONTARIO, catalog.getProvinceEnum(2));
+        assertEquals("Ontario", catalog.getProvince(2));
+        assertNull(catalog.getLandmark(3).getProvince(), "Names outside the enum keep their own code");
+        assertEquals("BC", catalog.getLandmark(3).getProvinceName());
+
+        Filter filter = new Filter(databaseFile);
+        filter.filterProvince("ONTARIO");
+        assertEquals(List.of("0001,CN Tower,Toronto,Ontario,Landmark", "0003,Niagara Falls,Niagara Falls,Ontario,Waterfall"),
+                filter.getResults());
+
+        filter.filterBoth("British Columbia", "park");
+        assertEquals(List.of("0002,Stanley Park,Vancouver,British Columbia,Park"), filter.getResults());
+
+        filter.filterType("Museum");
+        assertTrue(filter.getResults().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should walk the catalog with one flyweight and keep non-Latin-1 text through a snapshot")
+    void flyweightOverArena () throws IOException {
+        Files.writeString(databaseFile.toPath(), "0005,Château Frontenac,Québec,Quebec,Hotel\n0006,Ōtsu Garden,Vancouver,BC,Park\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        CatalogSnapshot.load(databaseFile); // Writes the snapshot
+        LandmarkCatalog catalog = CatalogSnapshot.load(databaseFile); // Reads it back
+
+        Landmark landmark = catalog.cursor();
+        CharSequence city = landmark.city();
+        StringBuilder cities = new StringBuilder();
+        while (landmark.next()) {
+            assertSame(city, landmark.city(), "The view is reused from row to row");
+            cities.append(city).append(';');
+        }
+        assertEquals("Toronto;Vancouver;Niagara Falls;North Vancouver;Québec;Vancouver;", cities.toString());
+        assertFalse(landmark.next());
+
+        assertEquals("Ōtsu Garden", landmark.moveTo(5).getName());
+        assertEquals(Landmark.PROVINCE.QUEBEC, landmark.moveTo(4).getProvince());
+        assertArrayEquals(new String[]{"0005", "Château Frontenac", "Québec", "Quebec", "Hotel"}, landmark.toRow());
+    }
+
+    @Test
+    @DisplayName("Should serve the same catalog from a direct buffer and from the mapped snapshot")
+    void offHeapCatalogs () throws IOException {
+        Files.writeString(databaseFile.toPath(), "0005,Château Frontenac,Québec,Quebec,Hotel\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        List<String> expected = rows(CatalogSnapshot.load(databaseFile));
+
+        for (LandmarkCatalog.Memory memory : List.of(LandmarkCatalog.Memory.OFF_HEAP, LandmarkCatalog.Memory.MAPPED)) {
+            System.setProperty(StorageConfig.CATALOG_MEMORY, memory.name());
+            try {
+                Files.deleteIfExists(CatalogSnapshot.snapshotFileFor(databaseFile).toPath());
+                assertEquals(expected, rows(CatalogSnapshot.load(databaseFile)), memory + ", freshly parsed");
+                assertEquals(expected, rows(CatalogSnapshot.load(databaseFile)), memory + ", from the snapshot");
+            } finally {
+                System.clearProperty(StorageConfig.CATALOG_MEMORY);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should share one instance per repeated City, Province and Category value and count the bytes saved")
+    void internsRepeatedValues () throws IOException {
+        Files.writeString(databaseFile.toPath(), "0005,Rogers Centre,Toronto,Ontario,Landmark\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        LandmarkCatalog catalog = CatalogSnapshot.load(databaseFile);
+        String[] first = catalog.getRow(0);
+        String[] last = catalog.getRow(4);
+        assertNotSame(first[LandmarkCatalog.CITY_COLUMN], last[LandmarkCatalog.CITY_COLUMN], "Each row decodes its own city");
+
+        StringPool pool = new StringPool();
+        for (int row = 0; row < catalog.getRowCount(); row++) {
+            pool.internColumns(catalog.getRow(row));
+        }
+        pool.internColumns(first);
+        pool.internColumns(last);
+        assertSame(first[LandmarkCatalog.CITY_COLUMN], last[LandmarkCatalog.CITY_COLUMN]);
+        assertSame(first[LandmarkCatalog.CATEGORY_COLUMN], last[LandmarkCatalog.CATEGORY_COLUMN]);
+        assertNotSame(first[LandmarkCatalog.NAME_COLUMN], last[LandmarkCatalog.NAME_COLUMN], "Names are not pooled");
+        assertEquals("Toronto", last[LandmarkCatalog.CITY_COLUMN]);
+
+        // Toronto is decoded again for row 4 and for both rows above; Province and Category already share dictionary entries
+        assertEquals(3 * 48, pool.savedBytes(), "A 7-character Latin-1 string takes 24 + 24 bytes");
+    }
+
+    @Test
+    @DisplayName("Should answer one- and two-value filters from bitmaps across many row chunks")
+    void bitmapFilters () throws IOException {
+        String[] provinces = {"Ontario", "Quebec", "ontario", "Yukon"};
+        String[] categories = {"Park", "Museum", "Landmark"};
+        List<String> lines = new ArrayList<>(List.of("ID,Name,City,Province,Category"));
+        for (int i = 0; i < 150_000; i++) {
+            // Ontario is dense in the middle chunk and sparse elsewhere, so both container kinds occur
+            String province = i >= 70_000 && i < 120_000 ? "Ontario" : provinces[(i * 7) % provinces.length];
+            lines.add(i + ",Place " + i + ",Town " + (i % 50) + "," + province + "," + categories[(i / 3) % categories.length]);
+        }
+        Files.write(databaseFile.toPath(), lines, StandardCharsets.UTF_8);
+
+        Filter filter = new Filter(databaseFile);
+        for (String province : new String[]{"ONTARIO", "Yukon", null}) {
+            for (String category : new String[]{"park", "Landmark", null}) {
+                List<String> expected = new ArrayList<>();
+                for (String line : lines.subList(1, lines.size())) {
+                    String[] row = line.split(",");
+                    if ((province == null || row[3].equalsIgnoreCase(province)) && (category == null || row[4].equalsIgnoreCase(category))) {
+                        expected.add(row[0]);
+                    }
+                }
+                List<String> actual = new ArrayList<>();
+                for (String[] row : filter.rowsMatching(province, category)) {
+                    actual.add(row[0]);
+                }
+                assertTrue(expected.equals(actual), province + " / " + category + ": expected " + expected.size() + " rows, got " + actual.size());
+            }
+        }
+
+        filter.filterBoth("Quebec", "Museum");
+        assertFalse(filter.getResults().isEmpty());
+        assertTrue(filter.getResults().stream().allMatch(line -> line.endsWith(",Quebec,Museum")));
+    }
+
+    @Test
+    @DisplayName("Should plan composed queries: smallest index lookup first, residual scan last")
+    void plannedQueries () throws IOException {
+        List<String> lines = List.of(
+                "ID,Name,City,Province,Category",
+                "1,CN Tower,Toronto,Ontario,Landmark",
+                "2,Royal Ontario Museum,Toronto,Ontario,Museum",
+                "3,Canadian War Museum,Ottawa,Ontario,Museum",
+                "4,Parliament Hill,Ottawa,Ontario,Landmark",
+                "5,Stanley Park,Vancouver,British Columbia,Park",
+                "6,Museum of Anthropology,Vancouver,British Columbia,Museum",
+                "7,Banff National Park,Banff,Alberta,Park",
+                "8,Royal Tyrrell Museum,Drumheller,Alberta,Museum",
+                "9,Old Quebec,Quebec City,Quebec,Landmark",
+                "10,Mount Royal Park,Montreal,Quebec,Park");
+        Files.write(databaseFile.toPath(), lines, StandardCharsets.UTF_8);
+        Filter filter = new Filter(databaseFile);
+
+        Query museumInOttawa = Query.and(Query.eq(LandmarkCatalog.CATEGORY_COLUMN, "museum"),
+                Query.eq(LandmarkCatalog.CITY_COLUMN, "ottawa"), Query.contains(LandmarkCatalog.NAME_COLUMN, "war"));
+        Query parksOutsideBc = Query.and(Query.eq(LandmarkCatalog.CATEGORY_COLUMN, "Park"),
+                Query.not(Query.eq(LandmarkCatalog.PROVINCE_COLUMN, "British Columbia")));
+        Query westOrEast = Query.or(Query.prefix(LandmarkCatalog.CITY_COLUMN, "van"),
+                Query.in(LandmarkCatalog.PROVINCE_COLUMN, "alberta", " QUEBEC "));
+        Query torontoOrRoyal = Query.or(Query.eq(LandmarkCatalog.CITY_COLUMN, "Toronto"), Query.prefix(LandmarkCatalog.NAME_COLUMN, "royal"));
+
+        assertEquals("index City = 'ottawa' (2 rows) AND index Category = 'museum' (4 rows) then scan Name CONTAINS 'war'",
+                filter.explain(museumInOttawa));
+        assertEquals("(index Category = 'Park' (3 rows) AND NOT index Province = 'British Columbia' (2 rows))", filter.explain(parksOutsideBc));
+        assertEquals("all 10 rows then scan City = 'Toronto' OR Name STARTS WITH 'royal'", filter.explain(torontoOrRoyal));
+
+        assertEquals(List.of("3"), ids(filter.rows(museumInOttawa)));
+        assertEquals(List.of("7", "10"), ids(filter.rows(parksOutsideBc)));
+        assertEquals(List.of("5", "6", "7", "8", "9", "10"), ids(filter.rows(westOrEast)));
+        assertEquals(List.of("1", "2", "8"), ids(filter.rows(torontoOrRoyal)));
+        for (Query query : List.of(museumInOttawa, parksOutsideBc, westOrEast, torontoOrRoyal, Query.not(westOrEast))) {
+            List<String> expected = new ArrayList<>();
+            for (String line : lines.subList(1, lines.size())) {
+                if (query.matches(line.split(","))) {
+                    expected.add(line.split(",")[0]);
+                }
+            }
+            assertEquals(expected, ids(filter.rows(query)), query.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Should return results as row numbers that a table shows straight from the catalog")
+    void rowIdResults () throws IOException {
+        Filter filter = new Filter(databaseFile);
+        RowSet parks = filter.rowIds(Query.search("park"));
+        assertArrayEquals(new int[]{1, 3}, parks.toArray());
+        assertTrue(parks.contains(3));
+        assertFalse(parks.contains(0));
+        assertEquals(List.of("0002", "0004"), ids(parks.toRows()));
+        assertSame(parks.catalog(), filter.rowIds(Query.search(" VANCOUVER ")).catalog(), "Unchanged file, same catalog");
+        assertEquals(4, filter.rowIds(Query.search(" ")).size());
+
+        CatalogTableModel model = new CatalogTableModel(parks.catalog().getHeader());
+        model.show(parks);
+        assertEquals(2, model.getRowCount());
+        assertEquals("Stanley Park", model.getValueAt(0, LandmarkCatalog.NAME_COLUMN));
+        assertEquals("North Vancouver", model.getValueAt(1, LandmarkCatalog.CITY_COLUMN));
+        model.addRow(new String[]{"0005", "Algonquin", "Whitney", "Ontario", "Park"});
+        model.addRow(new String[]{"0006", "Jasper", "Jasper", "Alberta", "Park"});
+        assertTrue(model.removeIds(Set.of("0002", "0006", "9999")));
+        assertEquals(List.of("0004", "0005"), List.of(model.getValueAt(0, 0), model.getValueAt(1, 0)));
+        assertEquals(2, model.getRowCount());
+        assertFalse(model.removeIds(Set.of("9999")));
+
+        RowSet wrapped = RowSet.of(parks.catalog().getHeader(), List.<String[]>of(new String[]{"0009", "Fundy", "Alma", "New Brunswick", "Park"}));
+        assertEquals(1, wrapped.size());
+        assertEquals("Fundy", wrapped.catalog().getName(wrapped.toArray()[0]));
+    }
+
+    @Test
+    @DisplayName("Should count every facet value against the other facets' selections")
+    void facetCounts () throws IOException {
+        String[] provinces = {"Ontario", "Quebec", "Alberta", "quebec "};
+        String[] categories = {"Park", "Museum", "park", "Landmark"};
+        List<String[]> rows = new ArrayList<>();
+        List<String> lines = new ArrayList<>(List.of("ID,Name,City,Province,Category"));
+        for (int i = 0; i < 100_000; i++) {
+            String[] row = {String.valueOf(i), "Place " + i, "Town " + (i % 40), provinces[(i / 7) % provinces.length], categories[(i * 3) % 11 % categories.length]};
+            rows.add(row);
+            lines.add(String.join(",", row));
+        }
+        Files.write(databaseFile.toPath(), lines, StandardCharsets.UTF_8);
+
+        Filter filter = new Filter(databaseFile);
+        Facets facets = new Facets(filter.rowIds(Query.all()));
+        facets.select(LandmarkCatalog.PROVINCE_COLUMN, List.of("Ontario", "Quebec"));
+        facets.select(LandmarkCatalog.CITY_COLUMN, List.of("Town 3", "Town 17", "Nowhere"));
+        assertFacets(facets, rows);
+        assertEquals(0, facets.counts(LandmarkCatalog.CITY_COLUMN).get("Nowhere"), "Selected values stay listed");
+        assertFalse(facets.counts(LandmarkCatalog.CATEGORY_COLUMN).containsKey("park "), "Case variants are one value");
+
+        facets.select(LandmarkCatalog.CATEGORY_COLUMN, List.of("PARK"));
+        facets.select(LandmarkCatalog.CITY_COLUMN, List.of());
+        assertFacets(facets, rows);
+
+        RowSet searched = filter.rowIds(Query.search("place 12"));
+        facets.setUniverse(searched);
+        assertFacets(facets, searched.toRows());
+
+        // Rows written since the universe was taken, e.g. reported by the watcher
+        List<String[]> remaining = new ArrayList<>(searched.toRows());
+        String[] deleted = remaining.remove(0);
+        List<String[]> added = List.of(new String[]{"200000", "Place 12a", "Town 3", "Quebec", "Park"},
+                new String[]{"200001", "Place 12b", "Town 99", "Ontario", "park"},
+                new String[]{"200002", "Place 12c", "Town 3", "Alberta", "Museum"});
+        facets.applyChanges(added, Set.of(deleted[0], "200002"));
+        assertFacets(facets, remaining, added.subList(0, 2));
+        facets.setUniverse(searched);
+        assertFacets(facets, searched.toRows());
+    }
+
+    @Test
+    @DisplayName("Should spell the province of an appended row the way the catalog stores it")
+    void appendedRowsMatchCatalogProvinces () throws IOException {
+        Filter filter = new Filter(databaseFile);
+        RowSet all = filter.rowIds(Query.all());
+        assertEquals("British Columbia", all.catalog().getProvince(1));
+
+        String[] appended = {"0005", "Butchart Gardens", "Victoria", " british_columbia", "Garden"};
+        String[] normalized = LandmarkCatalog.normalizeRow(appended);
+        assertArrayEquals(new String[]{"0005", "Butchart Gardens", "Victoria", "British Columbia", "Garden"}, normalized);
+        assertEquals(" british_columbia", appended[LandmarkCatalog.PROVINCE_COLUMN], "The given row is left alone");
+        assertEquals("BC", LandmarkCatalog.normalizeRow(all.catalog().getRow(3))[LandmarkCatalog.PROVINCE_COLUMN],
+                "Names outside the enum are kept");
+
+        Facets facets = new Facets(all);
+        facets.applyChanges(List.<String[]>of(normalized), Set.of());
+        Map<String, Integer> provinces = facets.counts(LandmarkCatalog.PROVINCE_COLUMN);
+        assertEquals(2, provinces.get("British Columbia"));
+        assertFalse(provinces.containsKey(" british_columbia"));
+        facets.select(LandmarkCatalog.PROVINCE_COLUMN, List.of("British Columbia"));
+        assertTrue(facets.query().matches(normalized));
+    }
+
+    // Compares the facets with counts made row by row
+    private static void assertFacets (Facets facets, List<String[]> rows) {
+        assertFacets(facets, rows, List.of());
+    }
+
+    // Added rows are counted, but not returned by rows()
+    private static void assertFacets (Facets facets, List<String[]> rows, List<String[]> added) {
+        int[] columns = {LandmarkCatalog.PROVINCE_COLUMN, LandmarkCatalog.CATEGORY_COLUMN, LandmarkCatalog.CITY_COLUMN};
+        List<String> expectedIds = new ArrayList<>();
+        for (String[] row : rows) {
+            if (facets.query().matches(row)) {
+                expectedIds.add(row[0]);
+            }
+        }
+        assertEquals(expectedIds, ids(facets.rows().toRows()));
+        List<String[]> universe = new ArrayList<>(rows);
+        universe.addAll(added);
+        for (int column : columns) {
+            Map<String, Integer> expected = new TreeMap<>();
+            for (String[] row : universe) {
+                boolean others = true;
+                for (int other : columns) {
+                    others &= other == column || facets.selected(other).isEmpty()
+                            || facets.selected(other).stream().anyMatch(value -> value.equalsIgnoreCase(row[other].trim()));
+                }
+                expected.merge(row[column].trim().toLowerCase(), others ? 1 : 0, Integer::sum);
+            }
+            Map<String, Integer> actual = new TreeMap<>();
+            facets.counts(column).forEach((value, count) -> {
+                if (count > 0 || expected.containsKey(value.toLowerCase())) actual.put(value.toLowerCase(), count);
+            });
+            assertEquals(expected, actual, "Counts of column " + column);
+        }
+    }
+
+    private static List<String> ids (List<String[]> rows) {
+        List<String> ids = new ArrayList<>();
+        rows.forEach(row -> ids.add(row[LandmarkCatalog.ID_COLUMN]));
+        return ids;
+    }
+
+    private static List<String> rows (LandmarkCatalog catalog) {
+        List<String> rows = new ArrayList<>();
+        Landmark landmark = catalog.cursor();
+        while (landmark.next()) {
+            rows.add(String.join(",", landmark.toRow()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,61 @@
+import TourCatSystem.BatchResult;
+import TourCatSystem.DatabaseManager;
+import TourCatSystem.H2LandmarkRepository;
+import TourCatSystem.LandmarkRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class H2LandmarkRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    File databaseFile;
+
+    @BeforeEach
+    void setupTest () throws IOException {
+        databaseFile = tempDir.resolve("h2DB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park",
+                "0003,Niagara Falls,Niagara Falls,ontario,Waterfall"
+        ), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should import the CSV once and then serve every operation from the embedded database")
+    void importsCsvAndPersists () throws Exception {
+        try (LandmarkRepository repository = new H2LandmarkRepository(databaseFile)) {
+            assertArrayEquals(new String[]{"ID", "Name", "City", "Province", "Category"}, repository.getHeader());
+            assertEquals(3, repository.readAllRecords().size());
+            assertEquals(List.of("0001", "0003"), repository.findRows(" ONTARIO", null).stream().map(row -> row[0]).toList());
+
+            repository.addRecord(new String[]{"0004", "Capilano Bridge", "North Vancouver", "British Columbia", "Park"});
+            assertThrows(DatabaseManager.DuplicateIdException.class,
+                    () -> repository.addRecord(new String[]{"0001", "Copy", "Toronto", "Ontario", "Landmark"}));
+            assertEquals(List.of("0002", "0004"), repository.findRows("british columbia", "PARK").stream().map(row -> row[0]).toList());
+
+            repository.updateRecord("0002", new String[]{"0002", "Stanley Park", "Vancouver", "British Columbia", "Garden"});
+            BatchResult deleted = repository.deleteByIds(List.of("0003", "9999"));
+            assertEquals(List.of("0003"), deleted.idsWith(BatchResult.Outcome.DELETED));
+        }
+
+        // The CSV is no longer touched; reopening finds the embedded state instead of importing again
+        Files.writeString(databaseFile.toPath(), "ID,Name,City,Province,Category\n", StandardCharsets.UTF_8);
+        try (LandmarkRepository repository = new H2LandmarkRepository(databaseFile)) {
+            assertEquals(List.of("0001", "0002", "0004"), repository.readAllRecords().stream().map(row -> row[0]).toList());
+            assertEquals("Garden", repository.getById("0002")[4]);
+            assertFalse(repository.containsId("0003"));
+        }
+    }
+}
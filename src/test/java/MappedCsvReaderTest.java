@@ -0,0 +1,132 @@
+import TourCatSystem.MappedCsvReader;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCsvReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File writeFile (String content) throws IOException {
+        Path path = tempDir.resolve("reader.csv");
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+        return path.toFile();
+    }
+
+    @Test
+    @DisplayName("Should tokenize quoted fields, CRLF endings and skip blank lines")
+    void tokenizesRows () throws IOException {
+        File file = writeFile("ID,Name,City,Province,Category\r\n"
+                + "0001,\"Parc \"\"Jean\"\", Drapeau\",Montréal,Quebec,Park\r\n"
+                + "\r\n"
+                + "0002,Signal Hill,St. John's,Newfoundland and Labrador,Historic Site\r\n");
+
+        MappedCsvReader reader = MappedCsvReader.open(file);
+        assertArrayEquals(new String[]{"ID", "Name", "City", "Province", "Category"}, reader.header());
+
+        List<String[]> rows = new ArrayList<>();
+        MappedCsvReader.Cursor cursor = reader.cursor();
+        while (cursor.next()) {
+            rows.add(cursor.toArray());
+        }
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[]{"0001", "Parc \"Jean\", Drapeau", "Montréal", "Quebec", "Park"}, rows.get(0));
+        assertEquals("Historic Site", rows.get(1)[4]);
+    }
+
+    @Test
+    @DisplayName("Should compare and search in place and hide tombstoned rows")
+    void comparesInPlaceAndMergesTombstones () throws IOException {
+        File file = writeFile("ID,Name,City,Province,Category\n"
+                + "0001,CN Tower,Toronto,Ontario,Landmark\n"
+                + "0002,Stanley Park,Vancouver,British Columbia,Park\n"
+                + "!0001,,,,\n"
+                + "0003,Rideau Canal,Ottawa, Ontario ,Waterway\n");
+
+        MappedCsvReader.Cursor cursor = MappedCsvReader.open(file).cursor();
+        List<String> ontario = new ArrayList<>();
+        while (cursor.next()) {
+            if (cursor.fieldEqualsIgnoreCase(3, "ONTARIO")) {
+                ontario.add(cursor.fieldString(0));
+            }
+        }
+        assertEquals(List.of("0003"), ontario, "Deleted 0001 must not be returned; whitespace is ignored");
+
+        cursor = MappedCsvReader.open(file).cursor();
+        assertTrue(cursor.next());
+        assertTrue(cursor.lineContainsIgnoreCase("stanley"));
+        assertFalse(cursor.lineContainsIgnoreCase("toronto"));
+    }
+
+    @Test
+    @DisplayName("Should parse large files in parallel with the same rows and order as a sequential scan")
+    void parallelParseMatchesSequential () throws IOException {
+        StringBuilder content = new StringBuilder("ID,Name,City,Province,Category\n");
+        for (int i = 0; i < 40_000; i++) {
+            String id = String.format("%06d", i);
+            // Quoted line breaks must never be taken for range boundaries
+            String name = i % 7 == 0 ? "\"Line one\nline \"\"two\"\"\"" : "Landmark " + i;
+            content.append(id).append(',').append(name).append(",City,Ontario,Park\n");
+            if (i % 1000 == 999) {
+                content.append('!').append(String.format("%06d", i - 500)).append(",,,,\n");
+            }
+        }
+        MappedCsvReader reader = MappedCsvReader.open(writeFile(content.toString()));
+
+        List<String[]> expected = new ArrayList<>();
+        MappedCsvReader.Cursor cursor = reader.cursor();
+        while (cursor.next()) {
+            expected.add(cursor.toArray());
+        }
+        List<String[]> parallel = reader.readAllRows();
+
+        assertEquals(40_000 - 40, expected.size());
+        assertEquals(expected.size(), parallel.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), parallel.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Should not take a stray quote inside an unquoted field for the start of a quoted one")
+    void parallelParseIgnoresStrayQuotes () throws IOException {
+        StringBuilder content = new StringBuilder("ID,Name,City,Province,Category\n");
+        for (int i = 0; i < 40_000; i++) {
+            String name;
+            if (i == 3) {
+                name = "Big 5\" Statue"; // Written unquoted, so the quote is just a character
+            } else if (i % 7 == 0) {
+                name = "\"Line one\nline two\"";
+            } else {
+                name = "Landmark " + i;
+            }
+            content.append(String.format("%06d", i)).append(',').append(name).append(",City,Ontario,Park\n");
+        }
+        MappedCsvReader reader = MappedCsvReader.open(writeFile(content.toString()));
+
+        List<String[]> expected = new ArrayList<>();
+        MappedCsvReader.Cursor cursor = reader.cursor();
+        while (cursor.next()) {
+            expected.add(cursor.toArray());
+        }
+        List<String[]> parallel = reader.readAllRows();
+
+        assertEquals(40_000, expected.size());
+        assertEquals("Big 5\" Statue", expected.get(3)[1]);
+        assertEquals(expected.size(), parallel.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), parallel.get(i));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import TourCatSystem.BatchResult;
+import TourCatSystem.DatabaseManager;
+import TourCatSystem.LandmarkRepository;
+import TourCatSystem.ShardedLandmarkRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedLandmarkRepositoryTest {
+
+    @TempDir
+    Path tempDir;
+
+    File databaseFile;
+
+    @BeforeEach
+    void setupTest () throws IOException {
+        databaseFile = tempDir.resolve("shardDB.csv").toFile();
+        Files.write(databaseFile.toPath(), List.of(
+                "ID,Name,City,Province,Category",
+                "0001,CN Tower,Toronto,Ontario,Landmark",
+                "0002,Stanley Park,Vancouver,British Columbia,Park",
+                "0003,Niagara Falls,Niagara Falls,ontario,Waterfall",
+                "0004,Capilano Bridge,North Vancouver,BC,Park"
+        ), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> ids (List<String[]> rows) {
+        return rows.stream().map(row -> row[0]).toList();
+    }
+
+    @Test
+    @DisplayName("Should split the CSV per province, query one shard per province and gather across shards")
+    void routesByProvince () throws Exception {
+        try (LandmarkRepository repository = new ShardedLandmarkRepository(databaseFile)) {
+            Path shards = tempDir.resolve("shardDB_shards");
+            assertEquals(3, Files.readAllLines(shards.resolve("ONTARIO.csv")).size(), "Header plus both Ontario rows");
+            assertEquals(2, Files.readAllLines(shards.resolve("OTHER.csv")).size(), "BC is not an enum province");
+
+            assertEquals(List.of("0001", "0003"), ids(repository.findRows("ONTARIO", null)));
+            assertEquals(List.of("0004"), ids(repository.findRows("bc", null)));
+            assertEquals(List.of("0002", "0004"), ids(repository.findRows(null, "park")), "Gathered in shard order");
+
+            repository.addRecord(new String[]{"0005", "Citadel", "Halifax", "Nova Scotia", "Historic Site"});
+            assertThrows(DatabaseManager.DuplicateIdException.class,
+                    () -> repository.addRecord(new String[]{"0002", "Copy", "Halifax", "Nova Scotia", "Park"}));
+
+            // Changing the province moves the record to the other shard
+            repository.updateRecord("0001", new String[]{"0001", "CN Tower", "Toronto", "Quebec", "Landmark"});
+            assertEquals(List.of("0003"), ids(repository.findRows("Ontario", null)));
+            assertEquals("Quebec", repository.getById("0001")[3]);
+
+            BatchResult deleted = repository.deleteByIds(List.of("0002", "0004", "9999"));
+            assertEquals(List.of("0002", "0004"), deleted.idsWith(BatchResult.Outcome.DELETED));
+            assertEquals(List.of("9999"), deleted.idsWith(BatchResult.Outcome.NOT_FOUND));
+        }
+
+        try (LandmarkRepository repository = new ShardedLandmarkRepository(databaseFile)) {
+            assertEquals(List.of("0001", "0003", "0005"), ids(repository.readAllRecords()).stream().sorted().toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Should accept an ID only once when sessions add it to different provinces at the same time")
+    void concurrentAddsOfOneIdToDifferentShards () throws Exception {
+        LandmarkRepository first = new ShardedLandmarkRepository(databaseFile);
+        LandmarkRepository second = new ShardedLandmarkRepository(databaseFile);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 50; i++) {
+                String id = String.format("1%03d", i);
+                Future<Boolean> ontario = pool.submit(() -> added(first, new String[]{id, "Race", "Ottawa", "Ontario", "Park"}));
+                Future<Boolean> quebec = pool.submit(() -> added(second, new String[]{id, "Race", "Montreal", "Quebec", "Park"}));
+                assertTrue(ontario.get() ^ quebec.get(), "Exactly one add of " + id + " should succeed");
+            }
+            assertEquals(54, first.readAllRecords().size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean added (LandmarkRepository repository, String[] row) throws IOException {
+        try {
+            repository.addRecord(row);
+            return true;
+        } catch (DatabaseManager.DuplicateIdException e) {
+            return false;
+        }
+    }
+}